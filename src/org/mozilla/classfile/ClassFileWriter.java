@@ -12,7 +12,13 @@ import java.io.OutputStream;
 import org.mozilla.javascript.ObjArray;
 import org.mozilla.javascript.UintMap;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * ClassFileWriter
@@ -61,6 +67,37 @@ public class ClassFileWriter {
         itsFlags = ACC_PUBLIC | ACC_SUPER;
     }
 
+    /**
+     * Construct a writer that holds the code of the method just stopped in
+     * cfw until its stack map is computed.
+     */
+    private ClassFileWriter(ClassFileWriter cfw) {
+        generatedClassName = cfw.generatedClassName;
+        itsConstantPool = new DeferredConstantPool(this, cfw.itsConstantPool);
+        itsThisClassIndex = cfw.itsThisClassIndex;
+        itsCurrentMethod = cfw.itsCurrentMethod;
+        itsMaxStack = cfw.itsMaxStack;
+        itsMaxLocals = cfw.itsMaxLocals;
+        itsCodeBuffer = Arrays.copyOf(cfw.itsCodeBuffer, cfw.itsCodeBufferTop);
+        itsCodeBufferTop = cfw.itsCodeBufferTop;
+        if (cfw.itsLabelTable != null) {
+            itsLabelTable = Arrays.copyOf(cfw.itsLabelTable,
+                                          cfw.itsLabelTableTop);
+            itsLabelTableTop = cfw.itsLabelTableTop;
+        }
+        itsExceptionTable = cfw.itsExceptionTable;
+        itsExceptionTableTop = cfw.itsExceptionTableTop;
+        if (cfw.itsLineNumberTable != null) {
+            itsLineNumberTable = Arrays.copyOf(cfw.itsLineNumberTable,
+                                               cfw.itsLineNumberTableTop);
+            itsLineNumberTableTop = cfw.itsLineNumberTableTop;
+        }
+        itsVarDescriptors = cfw.itsVarDescriptors;
+        itsSuperBlockStarts = cfw.itsSuperBlockStarts;
+        itsSuperBlockStartsTop = cfw.itsSuperBlockStartsTop;
+        itsJumpFroms = cfw.itsJumpFroms;
+    }
+
     public final String getClassName() {
         return generatedClassName;
     }
@@ -259,13 +296,41 @@ public class ClassFileWriter {
 
         itsMaxLocals = maxLocals;
 
-        StackMapTable stackMap = null;
-        if (GenerateStackMap) {
-            finalizeSuperBlockStarts();
-            stackMap = new StackMapTable();
-            stackMap.generate();
+        // Fail early on methods that are too large even without their
+        // stack map, which cannot be computed for them
+        getCodeAttributeLength(0);
+        if (itsDeferredMethods != null) {
+            itsDeferredMethods.add(new ClassFileWriter(this));
+        } else {
+            writeCodeAttribute(computeStackMap());
+        }
+
+        itsExceptionTable = null;
+        itsExceptionTableTop = 0;
+        itsLineNumberTableTop = 0;
+        itsCodeBufferTop = 0;
+        itsCurrentMethod = null;
+        itsMaxStack = 0;
+        itsStackTop = 0;
+        itsLabelTableTop = 0;
+        itsFixupTableTop = 0;
+        itsVarDescriptors = null;
+        itsSuperBlockStarts = null;
+        itsSuperBlockStartsTop = 0;
+        itsJumpFroms = null;
+    }
+
+    private StackMapTable computeStackMap() {
+        if (!GenerateStackMap) {
+            return null;
         }
+        finalizeSuperBlockStarts();
+        StackMapTable stackMap = new StackMapTable();
+        stackMap.generate();
+        return stackMap;
+    }
 
+    private int getCodeAttributeLength(int stackMapTableLength) {
         int lineNumberTableLength = 0;
         if (itsLineNumberTable != null) {
             // 6 bytes for the attribute header
@@ -282,14 +347,6 @@ public class ClassFileWriter {
             variableTableLength = 6 + 2 + (itsVarDescriptors.size() * 10);
         }
 
-        int stackMapTableLength = 0;
-        if (stackMap != null) {
-            int stackMapWriteSize = stackMap.computeWriteSize();
-            if (stackMapWriteSize > 0) {
-                stackMapTableLength = 6 + stackMapWriteSize;
-            }
-        }
-
         int attrLength = 2 +                    // attribute_name_index
             4 +                    // attribute_length
             2 +                    // max_stack
@@ -310,6 +367,19 @@ public class ClassFileWriter {
             throw new ClassFileFormatException(
                 "generated bytecode for method exceeds 64K limit.");
         }
+        return attrLength;
+    }
+
+    private void writeCodeAttribute(StackMapTable stackMap) {
+        int stackMapTableLength = 0;
+        if (stackMap != null) {
+            int stackMapWriteSize = stackMap.computeWriteSize();
+            if (stackMapWriteSize > 0) {
+                stackMapTableLength = 6 + stackMapWriteSize;
+            }
+        }
+
+        int attrLength = getCodeAttributeLength(stackMapTableLength);
         byte[] codeAttribute = new byte[attrLength];
         int index = 0;
         int codeAttrIndex = itsConstantPool.addUtf8("Code");
@@ -404,20 +474,79 @@ public class ClassFileWriter {
         }
 
         itsCurrentMethod.setCodeAttribute(codeAttribute);
+    }
 
-        itsExceptionTable = null;
-        itsExceptionTableTop = 0;
-        itsLineNumberTableTop = 0;
-        itsCodeBufferTop = 0;
-        itsCurrentMethod = null;
-        itsMaxStack = 0;
-        itsStackTop = 0;
-        itsLabelTableTop = 0;
-        itsFixupTableTop = 0;
-        itsVarDescriptors = null;
-        itsSuperBlockStarts = null;
-        itsSuperBlockStartsTop = 0;
-        itsJumpFroms = null;
+    /**
+     * Defer the stack maps of methods stopped from now on.
+     *
+     * Computing the stack map is the most expensive part of writing a
+     * method. Deferred stack maps are computed by
+     * {@link #finishMethods(ExecutorService)}, in parallel if it is given
+     * an executor, or else when the class is written. The class file does
+     * not depend on the executor or on the order in which the stack maps
+     * were computed.
+     */
+    public void deferStackMaps() {
+        if (itsDeferredMethods == null) {
+            itsDeferredMethods = new ObjArray();
+        }
+    }
+
+    /**
+     * Compute the deferred stack maps and complete the code of their
+     * methods.
+     *
+     * @param executor the executor to compute the stack maps with, or null
+     * to compute them on the calling thread
+     * @see #deferStackMaps()
+     */
+    public void finishMethods(ExecutorService executor) {
+        if (itsDeferredMethods == null || itsDeferredMethods.size() == 0) {
+            return;
+        }
+        final ClassFileWriter[] methods =
+            new ClassFileWriter[itsDeferredMethods.size()];
+        itsDeferredMethods.toArray(methods);
+        itsDeferredMethods.clear();
+
+        StackMapTable[] stackMaps = new StackMapTable[methods.length];
+        if (executor != null && GenerateStackMap && methods.length > 1) {
+            List<Callable<StackMapTable>> tasks =
+                new ArrayList<Callable<StackMapTable>>(methods.length);
+            for (final ClassFileWriter method : methods) {
+                tasks.add(new Callable<StackMapTable>() {
+                    public StackMapTable call() {
+                        return method.computeStackMap();
+                    }
+                });
+            }
+            try {
+                List<Future<StackMapTable>> results = executor.invokeAll(tasks);
+                for (int i = 0; i < methods.length; i++) {
+                    stackMaps[i] = results.get(i).get();
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        } else {
+            for (int i = 0; i < methods.length; i++) {
+                stackMaps[i] = methods[i].computeStackMap();
+            }
+        }
+
+        // Constants are added in method order
+        for (int i = 0; i < methods.length; i++) {
+            methods[i].writeCodeAttribute(stackMaps[i]);
+        }
     }
 
     /**
@@ -672,6 +801,19 @@ public class ClassFileWriter {
         add(ByteCode.LDC, itsConstantPool.addConstant(k));
     }
 
+    /**
+     * Generate the load constant bytecode for the given class. Class
+     * constants require class file version 49 or later.
+     *
+     * @param className the class name in dotted or slashed form, or the
+     *        descriptor of an array class
+     */
+    public void addLoadClassConstant(String className) {
+        if (MajorVersion < 49)
+            throw new IllegalStateException("class constants not supported");
+        add(ByteCode.LDC, itsConstantPool.addClass(className));
+    }
+
     /**
      * Add the given two-operand bytecode to the current method.
      *
@@ -2142,6 +2284,10 @@ public class ClassFileWriter {
                             push(TypeInfo.OBJECT("java/lang/String",
                                 itsConstantPool));
                             break;
+                        case ConstantPool.CONSTANT_Class:
+                            push(TypeInfo.OBJECT("java/lang/Class",
+                                itsConstantPool));
+                            break;
                         default:
                             throw new IllegalArgumentException(
                                 "bad const type " + constType);
@@ -2587,8 +2733,11 @@ public class ClassFileWriter {
         private int writeType(int type) {
             int tag = type & 0xFF;
             rawStackMap[rawStackMapTop++] = (byte) tag;
-            if (tag == TypeInfo.OBJECT_TAG ||
-                tag == TypeInfo.UNINITIALIZED_VAR_TAG) {
+            if (tag == TypeInfo.OBJECT_TAG) {
+                rawStackMapTop = putInt16(
+                    itsConstantPool.resolveIndex(type >>> 8), rawStackMap,
+                    rawStackMapTop);
+            } else if (tag == TypeInfo.UNINITIALIZED_VAR_TAG) {
                 rawStackMapTop = putInt16(type >>> 8, rawStackMap,
                     rawStackMapTop);
             }
@@ -2802,6 +2951,8 @@ public class ClassFileWriter {
      * Get the class file as array of bytesto the OutputStream.
      */
     public byte[] toByteArray() {
+        finishMethods(null);
+
         short bootstrapMethodsAttrNameIndex = 0;
         int attributeCount = 0;
 
@@ -4571,6 +4722,7 @@ public class ClassFileWriter {
     private long[] itsFixupTable;
     private int itsFixupTableTop;
     private ObjArray itsVarDescriptors;
+    private ObjArray itsDeferredMethods;
     private ObjArray itsBootstrapMethods;
     private int itsBootstrapMethodsLength = 0;
 
@@ -9,7 +9,7 @@ package org.mozilla.classfile;
 import org.mozilla.javascript.ObjToIntMap;
 import org.mozilla.javascript.UintMap;
 
-final class ConstantPool
+class ConstantPool
 {
   ConstantPool(ClassFileWriter cfw)
   {
@@ -267,6 +267,35 @@ final class ConstantPool
     return (short)theIndex;
   }
 
+  /**
+   * Returns the index of the class constant for className, or -1 if the
+   * pool has none. Unlike {@link #addClass(String)} this never modifies
+   * the pool.
+   */
+  int findClass(String className)
+  {
+    int theIndex = itsClassHash.get(className, -1);
+    if (theIndex == -1 && className.indexOf('.') > 0) {
+      theIndex = itsClassHash.get(ClassFileWriter.getSlashedForm(className),
+                                  -1);
+    }
+    return theIndex;
+  }
+
+  /**
+   * Returns the index to write to the class file for an index handed out
+   * by this pool.
+   */
+  int resolveIndex(int index)
+  {
+    return index;
+  }
+
+  int getTopIndex()
+  {
+    return itsTopIndex;
+  }
+
   short addFieldRef(String className, String fieldName, String fieldType)
   {
     FieldOrMethodRef ref = new FieldOrMethodRef(className, fieldName,
@@ -388,6 +417,12 @@ final class ConstantPool
 
   private void ensure(int howMuch)
   {
+    // Constants are referenced by 16 bit indices and long and double
+    // constants take two of them.
+    if (itsTopIndex >= 0xFFFF - 1) {
+      throw new ClassFileWriter.ClassFileFormatException(
+          "too many constants");
+    }
     if (itsTop + howMuch > itsPool.length) {
       int newCapacity = itsPool.length * 2;
       if (itsTop + howMuch > newCapacity) {
@@ -0,0 +1,98 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.classfile;
+
+import org.mozilla.javascript.ObjArray;
+import org.mozilla.javascript.ObjToIntMap;
+
+/**
+ * The constant pool seen by a method whose stack map is computed after the
+ * rest of its class was written, possibly on another thread. The class
+ * pool is only read while the stack map is computed: class constants it
+ * does not have yet get provisional indices above its last entry, and are
+ * added to it by {@link #resolveIndex(int)} when the stack map is written.
+ */
+final class DeferredConstantPool extends ConstantPool
+{
+  DeferredConstantPool(ClassFileWriter cfw, ConstantPool pool)
+  {
+    super(cfw);
+    this.pool = pool;
+  }
+
+  @Override
+  short addClass(String className)
+  {
+    int theIndex = pool.findClass(className);
+    if (theIndex == -1) {
+      String slashed = ClassFileWriter.getSlashedForm(className);
+      theIndex = itsProvisionalHash.get(slashed, -1);
+      if (theIndex == -1) {
+        if (itsFirstProvisional == 0) {
+          itsFirstProvisional = pool.getTopIndex();
+        }
+        theIndex = itsFirstProvisional + itsProvisionalNames.size();
+        if (theIndex > 0xFFFF) {
+          throw new ClassFileWriter.ClassFileFormatException(
+              "too many constants");
+        }
+        itsProvisionalHash.put(slashed, theIndex);
+        itsProvisionalNames.add(className);
+      }
+    }
+    return (short)theIndex;
+  }
+
+  @Override
+  short addUtf8(String k)
+  {
+    return pool.addUtf8(k);
+  }
+
+  @Override
+  int resolveIndex(int index)
+  {
+    if (isProvisional(index)) {
+      return 0xFFFF & pool.addClass(getProvisionalName(index));
+    }
+    return index;
+  }
+
+  @Override
+  Object getConstantData(int index)
+  {
+    if (isProvisional(index)) {
+      return getProvisionalName(index);
+    }
+    return pool.getConstantData(index);
+  }
+
+  @Override
+  byte getConstantType(int index)
+  {
+    if (isProvisional(index)) {
+      return CONSTANT_Class;
+    }
+    return pool.getConstantType(index);
+  }
+
+  private boolean isProvisional(int index)
+  {
+    return itsFirstProvisional != 0 && index >= itsFirstProvisional;
+  }
+
+  private String getProvisionalName(int index)
+  {
+    return (String) itsProvisionalNames.get(index - itsFirstProvisional);
+  }
+
+  private final ConstantPool pool;
+
+  private int itsFirstProvisional;
+  private ObjToIntMap itsProvisionalHash = new ObjToIntMap();
+  private ObjArray itsProvisionalNames = new ObjArray();
+}
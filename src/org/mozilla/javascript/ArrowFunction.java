@@ -64,6 +64,14 @@ public class ArrowFunction extends BaseFunction {
         return 0;
     }
 
+    @Override
+    protected int getNumericCompareOrder() {
+        if (targetFunction instanceof BaseFunction) {
+            return ((BaseFunction) targetFunction).getNumericCompareOrder();
+        }
+        return 0;
+    }
+
     @Override
     String decompile(int indent, int flags)
     {
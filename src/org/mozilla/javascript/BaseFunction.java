@@ -434,6 +434,13 @@ public class BaseFunction extends IdScriptableObject implements Function
 
     public int getLength() { return 0; }
 
+    /**
+     * Returns 1 if the function is written as {@code (a, b) => a - b},
+     * -1 if it is written as {@code (a, b) => b - a}, and 0 otherwise,
+     * so that numbers can be sorted without calling it.
+     */
+    protected int getNumericCompareOrder() { return 0; }
+
     public String getFunctionName() {
         return "";
     }
@@ -0,0 +1,112 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reader that decodes the bytes of a buffer, for example a memory-mapped
+ * source file, on demand.
+ * <p>
+ * Each {@link #read(char[], int, int)} decodes only as many bytes as fit
+ * into the caller's array, so passing this reader to
+ * {@link Context#compileReader(Reader, String, int, Object)} scans a large
+ * file through the parser's small sliding buffer without holding a decoded
+ * copy of the whole file. Malformed input is replaced as by
+ * {@link java.io.InputStreamReader}.
+ */
+public class ByteBufferReader extends Reader
+{
+    private ByteBuffer bytes;
+    private final CharsetDecoder decoder;
+    private boolean flushed;
+    // Holds the second half of a surrogate pair that did not fit
+    private CharBuffer pending;
+
+    /**
+     * Creates a reader over the remaining bytes of the buffer. The
+     * position of the given buffer is not changed.
+     *
+     * @param bytes the encoded characters
+     * @param charset the encoding of the bytes
+     */
+    public ByteBufferReader(ByteBuffer bytes, Charset charset)
+    {
+        this.bytes = bytes.duplicate();
+        this.decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len)
+        throws IOException
+    {
+        if (bytes == null) {
+            throw new IOException("Reader closed");
+        }
+        if (off < 0 || len < 0 || len > cbuf.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        if (pending != null) {
+            out.put(pending.get());
+            if (!pending.hasRemaining()) {
+                pending = null;
+            }
+        }
+        decode(out);
+        if (out.position() == off && !flushed) {
+            // A surrogate pair does not fit into a single char
+            pending = CharBuffer.allocate(2);
+            decode(pending);
+            pending.flip();
+            if (pending.hasRemaining()) {
+                out.put(pending.get());
+            }
+            if (!pending.hasRemaining()) {
+                pending = null;
+            }
+        }
+        int n = out.position() - off;
+        return n == 0 ? -1 : n;
+    }
+
+    private void decode(CharBuffer out)
+        throws IOException
+    {
+        if (flushed) {
+            return;
+        }
+        CoderResult result = decoder.decode(bytes, out, true);
+        if (result.isUnderflow()) {
+            result = decoder.flush(out);
+            if (result.isUnderflow()) {
+                flushed = true;
+            }
+        }
+        if (result.isError()) {
+            result.throwException();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        bytes = null;
+    }
+}
@@ -8,6 +8,7 @@ package org.mozilla.javascript;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.io.File;
 import java.io.Serializable;
 
 /**
@@ -26,6 +27,7 @@ public class ClassCache implements Serializable
     private transient Map<Class<?>,JavaMembers> classTable;
     private transient Map<JavaAdapter.JavaAdapterSignature,Class<?>> classAdapterCache;
     private transient Map<Class<?>,Object> interfaceAdapterCache;
+    private transient volatile File adapterCodeDirectory;
     private int generatedClassSerial;
     private Scriptable associatedScope;
 
@@ -123,6 +125,39 @@ public class ClassCache implements Serializable
         cachingIsEnabled = enabled;
     }
 
+    /**
+     * Returns the directory used to persist generated JavaAdapter classes,
+     * or null if generated classes are not persisted.
+     *
+     * @see #setAdapterCodeDirectory(File)
+     */
+    public final File getAdapterCodeDirectory()
+    {
+        return adapterCodeDirectory;
+    }
+
+    /**
+     * Set a directory where bytecode of generated JavaAdapter classes is
+     * stored and reloaded from.
+     * <p>
+     * Generating an adapter class for a new combination of super-class,
+     * interfaces and implemented functions is expensive. With a directory
+     * set, the generated code is written to a file named after a digest of
+     * the adapter signature and the engine version, and later JVM runs
+     * load it from there instead of generating it again. The stored
+     * signature is verified before the code is used.
+     * <p>
+     * The directory must only be writable by trusted code since the
+     * classes in it are loaded without further verification of their
+     * origin.
+     *
+     * @param dir the directory, or null to disable persistence
+     */
+    public void setAdapterCodeDirectory(File dir)
+    {
+        adapterCodeDirectory = dir;
+    }
+
     /**
      * @return a map from classes to associated JavaMembers objects
      */
@@ -6,6 +6,11 @@
 
 package org.mozilla.javascript;
 
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.mozilla.javascript.ast.AstRoot;
 import org.mozilla.javascript.ast.ScriptNode;
 import org.mozilla.javascript.ast.Jump;
 import org.mozilla.javascript.ast.FunctionNode;
@@ -46,6 +51,95 @@ class CodeGenerator extends Icode {
     // ECF_ or Expression Context Flags constants: for now only TAIL
     private static final int ECF_TAIL = 1 << 0;
 
+    /**
+     * Compiler settings of a function whose body was skipped by
+     * {@link IRFactory}, used to compile it from its raw source when
+     * it is first called.
+     */
+    static final class LazyFunction implements Serializable
+    {
+        private static final long serialVersionUID = -3316407285291467383L;
+
+        private static final int RESERVED_KEYWORD_AS_IDENTIFIER = 1 << 0;
+        private static final int MEMBER_EXPR_AS_FUNCTION_NAME = 1 << 1;
+        private static final int XML_AVAILABLE = 1 << 2;
+        private static final int GENERATING_SOURCE = 1 << 3;
+        private static final int STRICT_MODE = 1 << 4;
+        private static final int GENERATE_DEBUG_INFO = 1 << 5;
+        private static final int ALLOW_SHARP_COMMENTS = 1 << 6;
+        private static final int COMPRESSED_SOURCE = 1 << 7;
+
+        private final int lineno;
+        private final int flags;
+        private final Set<String> activationNames;
+
+        LazyFunction(CompilerEnvirons env, int lineno)
+        {
+            int flags = 0;
+            if (env.isReservedKeywordAsIdentifier())
+                flags |= RESERVED_KEYWORD_AS_IDENTIFIER;
+            if (env.isAllowMemberExprAsFunctionName())
+                flags |= MEMBER_EXPR_AS_FUNCTION_NAME;
+            if (env.isXmlAvailable()) flags |= XML_AVAILABLE;
+            if (env.isGeneratingSource()) flags |= GENERATING_SOURCE;
+            if (env.isStrictMode()) flags |= STRICT_MODE;
+            if (env.isGenerateDebugInfo()) flags |= GENERATE_DEBUG_INFO;
+            if (env.getAllowSharpComments()) flags |= ALLOW_SHARP_COMMENTS;
+            if (env.isCompressedSource()) flags |= COMPRESSED_SOURCE;
+            this.flags = flags;
+            this.lineno = lineno;
+            this.activationNames = env.activationNames == null
+                ? null : new HashSet<String>(env.activationNames);
+        }
+
+        /**
+         * Compiles the function from the raw source recorded in the stub.
+         * The source was already parsed once, so only warnings that were
+         * reported then can occur and they are not reported again.
+         */
+        InterpreterData compile(InterpreterData stub)
+        {
+            CompilerEnvirons env = new CompilerEnvirons();
+            env.setErrorReporter(DefaultErrorReporter.instance);
+            env.setLanguageVersion(stub.languageVersion);
+            env.setOptimizationLevel(-1);
+            env.setReservedKeywordAsIdentifier(
+                (flags & RESERVED_KEYWORD_AS_IDENTIFIER) != 0);
+            env.setAllowMemberExprAsFunctionName(
+                (flags & MEMBER_EXPR_AS_FUNCTION_NAME) != 0);
+            env.setXmlAvailable((flags & XML_AVAILABLE) != 0);
+            env.setGeneratingSource((flags & GENERATING_SOURCE) != 0);
+            env.setStrictMode((flags & STRICT_MODE) != 0);
+            env.setGenerateDebugInfo((flags & GENERATE_DEBUG_INFO) != 0);
+            env.setAllowSharpComments((flags & ALLOW_SHARP_COMMENTS) != 0);
+            env.setCompressedSource((flags & COMPRESSED_SOURCE) != 0);
+            env.setLazyFunctionCompilation(true);
+            env.activationNames = activationNames;
+
+            String source = stub.rawSource.substring(stub.rawSourceStart,
+                                                     stub.rawSourceEnd);
+            if (stub.itsFunctionType == FunctionNode.FUNCTION_EXPRESSION) {
+                source = "(" + source + ")";
+            }
+            Parser p = new Parser(env, DefaultErrorReporter.instance);
+            p.setDefaultUseStrictDirective(stub.isStrict);
+            AstRoot ast = p.parse(source, stub.itsSourceFile, lineno);
+            IRFactory irf = new IRFactory(env, DefaultErrorReporter.instance);
+            // Compile this function now, but keep its own nested
+            // functions lazy
+            irf.setLazyFunctionSource(source, 1);
+            ScriptNode tree = irf.transformTree(ast);
+            InterpreterData script = new CodeGenerator().compile(
+                env, tree, tree.getEncodedSource(), false);
+            if (script.itsNestedFunctions == null
+                || script.itsNestedFunctions.length != 1)
+            {
+                throw Kit.codeBug();
+            }
+            return script.itsNestedFunctions[0];
+        }
+    }
+
     public InterpreterData compile(CompilerEnvirons compilerEnv,
                                    ScriptNode tree,
                                    String encodedSource,
@@ -71,10 +165,16 @@ class CodeGenerator extends Icode {
             scriptOrFn = tree;
         }
 
+        byte[] compressedSource = null;
+        if (encodedSource != null && compilerEnv.isCompressedSource()) {
+            compressedSource = Interpreter.compressSource(encodedSource);
+            encodedSource = null;
+        }
         itsData = new InterpreterData(compilerEnv.getLanguageVersion(),
                                       scriptOrFn.getSourceName(),
                                       encodedSource,
                                       scriptOrFn.isInStrictMode());
+        itsData.compressedSource = compressedSource;
         itsData.topLevel = true;
 
         if (returnFunction) {
@@ -93,6 +193,7 @@ class CodeGenerator extends Icode {
 
         itsData.itsFunctionType = theFunction.getFunctionType();
         itsData.itsNeedsActivation = theFunction.requiresActivation();
+        itsData.itsNumericCompareOrder = theFunction.getNumericCompareOrder();
         if (theFunction.getFunctionName() != null) {
             itsData.itsName = theFunction.getName();
         }
@@ -120,6 +221,10 @@ class CodeGenerator extends Icode {
             addToken(Token.RETURN_RESULT);
         }
 
+        iCodeTop = new IcodeOptimizer(itsData, iCodeTop, exceptionTableTop,
+                                      compilerEnv.isGenerateDebugInfo())
+                       .optimize();
+
         if (itsData.itsICode.length != iCodeTop) {
             // Make itsData.itsICode length exactly iCodeTop to save memory
             // and catch bugs with jumps beyond icode as early as possible
@@ -170,6 +275,11 @@ class CodeGenerator extends Icode {
         itsData.encodedSourceStart = scriptOrFn.getEncodedSourceStart();
         itsData.encodedSourceEnd = scriptOrFn.getEncodedSourceEnd();
 
+        itsData.rawSource = scriptOrFn.getRawSource();
+        itsData.rawSourceStart = scriptOrFn.getRawSourceStart();
+        itsData.rawSourceEnd = scriptOrFn.getRawSourceEnd();
+        itsData.rawBodyStart = scriptOrFn.getRawBodyStart();
+
         if (literalIds.size() != 0) {
             itsData.literalIds = literalIds.toArray();
         }
@@ -190,6 +300,11 @@ class CodeGenerator extends Icode {
             gen.scriptOrFn = fn;
             gen.itsData = new InterpreterData(itsData);
             gen.generateFunctionICode();
+            if (fn.isLazy()) {
+                // The generated code is a placeholder for the empty body
+                gen.itsData.lazyFunction = new LazyFunction(compilerEnv,
+                                                            fn.getBaseLineno());
+            }
             array[i] = gen.itsData;
         }
         itsData.itsNestedFunctions = array;
@@ -0,0 +1,518 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * Cache of compiled scripts shared by the contexts of a
+ * {@link ContextFactory}.
+ * <p>
+ * When installed with
+ * {@link ContextFactory#setCompiledScriptCache(CompiledScriptCache)},
+ * {@link Context#compileString(String, String, int, Object)},
+ * {@link Context#compileReader(java.io.Reader, String, int, Object)},
+ * {@link Context#compileFunction(Scriptable, String, String, int, Object)}
+ * and the evaluate methods built on them look up the compiled code
+ * before parsing. Entries are keyed by a digest of the source together with
+ * the source name, the starting line number, the security domain and the
+ * compiler settings of the context (language version, optimization level,
+ * strict mode, debug information and the other settings of
+ * {@link CompilerEnvirons}). Scripts are shared as is, while functions
+ * keep their compiled code and get a new function object for each
+ * requested scope.
+ * <p>
+ * Compilation warnings are only reported when the code is compiled, not
+ * on later cache hits. Nothing is cached while a debugger is set.
+ * The least recently used entries are evicted when the cache holds more
+ * than its maximum number of entries.
+ * <p>
+ * If a code directory is set with {@link #setCodeDirectory(File)}, the
+ * generated code is also stored there and reused across JVM restarts:
+ * class files generated by the optimizer, or the serialized interpreter
+ * code at optimization level -1. Code loaded from the directory runs
+ * with the permissions of the scripts it was compiled from, so the
+ * directory must be trusted.
+ */
+public final class CompiledScriptCache
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Create a cache holding at most {@code maxEntries} compiled scripts
+     * and functions.
+     */
+    public CompiledScriptCache(int maxEntries)
+    {
+        if (maxEntries <= 0) throw new IllegalArgumentException();
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<Key,Object>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key,Object> eldest)
+            {
+                if (size() > CompiledScriptCache.this.maxEntries) {
+                    ++evictions;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of compilations answered from the cache.
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns the number of compilations not found in the cache.
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries evicted to honor the size limit.
+     */
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * Returns the directory where generated code is persisted, or null.
+     */
+    public File getCodeDirectory()
+    {
+        return codeDirectory;
+    }
+
+    /**
+     * Set the directory where generated code is stored and looked up when
+     * a script is not in memory. Files are named after a digest of the
+     * source, the compiler settings, the Rhino version and the storage
+     * format, so files of other Rhino versions are ignored. Storing and
+     * loading is best effort: I/O errors and unusable files just cause the
+     * script to be compiled.
+     * <p>
+     * The stored code is loaded without verifying where it came from, so
+     * the directory must be writable only by the application. Anyone able
+     * to write to it can make scripts run code of their choice. Serialized
+     * interpreter code is only read if it consists of the classes the
+     * interpreter itself stores.
+     *
+     * @param dir the directory, created on first store, or null to
+     *        disable persistent code
+     */
+    public void setCodeDirectory(File dir)
+    {
+        this.codeDirectory = dir;
+    }
+
+    synchronized Object get(Key key)
+    {
+        Object value = entries.get(key);
+        if (value != null) {
+            ++hits;
+        } else {
+            ++misses;
+        }
+        return value;
+    }
+
+    synchronized void put(Key key, Object value)
+    {
+        entries.put(key, value);
+    }
+
+    /**
+     * Loads code stored by {@link #storeCode} for the given key and
+     * compiler. Returns null if there is no usable stored code.
+     */
+    Object loadCode(Context cx, Key key, Evaluator compiler)
+    {
+        File dir = codeDirectory;
+        if (dir == null) {
+            return null;
+        }
+        String signature = getCodeSignature(cx, key, compiler);
+        File file = getCodeFile(dir, signature);
+        if (!file.isFile()) {
+            return null;
+        }
+        int kind;
+        String className = null;
+        byte[] code;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+            if (!signature.equals(in.readUTF())) {
+                return null;
+            }
+            kind = in.readByte();
+            if (kind == CLASS_CODE) {
+                className = in.readUTF();
+            } else if (kind != INTERPRETER_CODE) {
+                return null;
+            }
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            code = new byte[length];
+            in.readFully(code);
+            CRC32 crc = new CRC32();
+            crc.update(code);
+            if (in.readLong() != crc.getValue()) {
+                return null;
+            }
+        } catch (IOException ex) {
+            return null;
+        } catch (SecurityException ex) {
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    // ignore
+                }
+            }
+        }
+        if (kind == CLASS_CODE) {
+            return new Object[] { className, code };
+        }
+        try {
+            ObjectInputStream oin = new CodeInputStream(
+                new ByteArrayInputStream(code));
+            Object data = oin.readObject();
+            return data instanceof InterpreterData ? data : null;
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores code produced by the compiler in the code directory. The file
+     * is written under a temporary name first so concurrent readers never
+     * see partially written code.
+     */
+    void storeCode(Context cx, Key key, Evaluator compiler, Object bytecode)
+    {
+        File dir = codeDirectory;
+        if (dir == null) {
+            return;
+        }
+        File tmp = null;
+        try {
+            int kind;
+            String className = null;
+            byte[] code;
+            if (bytecode instanceof InterpreterData) {
+                kind = INTERPRETER_CODE;
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream oout = new ObjectOutputStream(bytes);
+                oout.writeObject(bytecode);
+                oout.close();
+                code = bytes.toByteArray();
+            } else if (bytecode instanceof Object[]
+                       && ((Object[]) bytecode).length == 2
+                       && ((Object[]) bytecode)[0] instanceof String
+                       && ((Object[]) bytecode)[1] instanceof byte[])
+            {
+                kind = CLASS_CODE;
+                className = (String) ((Object[]) bytecode)[0];
+                code = (byte[]) ((Object[]) bytecode)[1];
+            } else {
+                return;
+            }
+            String signature = getCodeSignature(cx, key, compiler);
+            File file = getCodeFile(dir, signature);
+            dir.mkdirs();
+            tmp = File.createTempFile("script", ".tmp", dir);
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeUTF(signature);
+                out.writeByte(kind);
+                if (kind == CLASS_CODE) {
+                    out.writeUTF(className);
+                }
+                out.writeInt(code.length);
+                out.write(code);
+                CRC32 crc = new CRC32();
+                crc.update(code);
+                out.writeLong(crc.getValue());
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                tmp.renameTo(file);
+            }
+        } catch (IOException ex) {
+            // ignore
+        } catch (SecurityException ex) {
+            // ignore
+        } finally {
+            if (tmp != null && tmp.exists()) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Object input stream that only resolves the classes serialized
+     * interpreter code consists of.
+     */
+    private static final class CodeInputStream extends ObjectInputStream
+    {
+        CodeInputStream(InputStream in) throws IOException
+        {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc)
+            throws IOException, ClassNotFoundException
+        {
+            if (!INTERPRETER_CODE_CLASSES.contains(desc.getName())) {
+                throw new InvalidClassException(desc.getName(),
+                    "not allowed in interpreter code");
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces)
+            throws IOException
+        {
+            throw new InvalidClassException("proxy",
+                "not allowed in interpreter code");
+        }
+    }
+
+    private static String getCodeSignature(Context cx, Key key,
+                                           Evaluator compiler)
+    {
+        return CODE_FORMAT + "|" + cx.getImplementationVersion() + "|"
+               + compiler.getClass().getName() + "|" + key.toStableString();
+    }
+
+    private static File getCodeFile(File dir, String signature)
+    {
+        StringBuilder sb = new StringBuilder("script-");
+        appendHex(sb, digest(signature));
+        return new File(dir, sb.append(".code").toString());
+    }
+
+    private static StringBuilder appendHex(StringBuilder sb, byte[] bytes)
+    {
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb;
+    }
+
+    static Key createKey(String source, String sourceName, int lineno,
+                         CompilerEnvirons compilerEnv, boolean defaultStrict,
+                         boolean returnFunction, Object securityDomain,
+                         ClassLoader loader)
+    {
+        int flags = 0;
+        if (compilerEnv.isGenerateDebugInfo()) flags |= 1 << 0;
+        if (compilerEnv.isReservedKeywordAsIdentifier()) flags |= 1 << 1;
+        if (compilerEnv.isAllowMemberExprAsFunctionName()) flags |= 1 << 2;
+        if (compilerEnv.isXmlAvailable()) flags |= 1 << 3;
+        if (compilerEnv.isGeneratingSource()) flags |= 1 << 4;
+        if (compilerEnv.isStrictMode()) flags |= 1 << 5;
+        if (compilerEnv.reportWarningAsError()) flags |= 1 << 6;
+        if (compilerEnv.isGenerateObserverCount()) flags |= 1 << 7;
+        if (compilerEnv.getAllowSharpComments()) flags |= 1 << 8;
+        if (defaultStrict) flags |= 1 << 9;
+        if (returnFunction) flags |= 1 << 10;
+        if (compilerEnv.isLazyFunctionCompilation()) flags |= 1 << 11;
+        if (compilerEnv.isCompressedSource()) flags |= 1 << 12;
+        List<Object> settings = Arrays.<Object>asList(
+            Integer.valueOf(compilerEnv.getLanguageVersion()),
+            Integer.valueOf(compilerEnv.getOptimizationLevel()),
+            Integer.valueOf(flags),
+            compilerEnv.getActivationNames() == null
+                ? null
+                : new HashSet<String>(compilerEnv.getActivationNames()),
+            new HashMap<String,Class<?>>(compilerEnv.getHostBindings()));
+        return new Key(digest(source), source.length(), sourceName, lineno,
+                       settings, securityDomain, loader);
+    }
+
+    private static byte[] digest(String source)
+    {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(
+                source.getBytes(UTF8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static final class Key
+    {
+        Key(byte[] digest, int length, String sourceName, int lineno,
+            List<Object> settings, Object securityDomain, ClassLoader loader)
+        {
+            this.digest = digest;
+            this.length = length;
+            this.sourceName = sourceName;
+            this.lineno = lineno;
+            this.settings = settings;
+            this.securityDomain = securityDomain;
+            this.loader = loader;
+            this.hash = Arrays.hashCode(digest) ^ settings.hashCode();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        /**
+         * Returns a description of the key without the security domain and
+         * class loader that is the same in every JVM.
+         */
+        @SuppressWarnings("unchecked")
+        String toStableString()
+        {
+            StringBuilder sb = new StringBuilder();
+            appendHex(sb, digest).append('|').append(length);
+            sb.append('|').append(settings.get(0));
+            sb.append('|').append(settings.get(1));
+            sb.append('|').append(settings.get(2));
+            Object names = settings.get(3);
+            if (names != null) {
+                sb.append('|').append(new TreeSet<String>((HashSet<String>) names));
+            }
+            Map<String,Class<?>> bindings = new TreeMap<String,Class<?>>(
+                (HashMap<String,Class<?>>) settings.get(4));
+            for (Map.Entry<String,Class<?>> e : bindings.entrySet()) {
+                sb.append('|').append(e.getKey()).append('=')
+                  .append(e.getValue().getName());
+            }
+            sb.append('|').append(lineno).append('|').append(sourceName);
+            return sb.toString();
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash
+                && length == other.length
+                && lineno == other.lineno
+                && securityDomain == other.securityDomain
+                && loader == other.loader
+                && Arrays.equals(digest, other.digest)
+                && sourceName.equals(other.sourceName)
+                && settings.equals(other.settings);
+        }
+
+        private final byte[] digest;
+        private final int length;
+        private final String sourceName;
+        private final int lineno;
+        private final List<Object> settings;
+        private final Object securityDomain;
+        private final ClassLoader loader;
+        private final int hash;
+    }
+
+    private static final HashSet<String> INTERPRETER_CODE_CLASSES
+        = new HashSet<String>(Arrays.asList(
+            InterpreterData.class.getName(),
+            InterpreterData[].class.getName(),
+            CodeGenerator.LazyFunction.class.getName(),
+            UintMap.class.getName(),
+            // Regular expression literals compiled by the default RegExpProxy
+            "org.mozilla.javascript.regexp.RECompiled",
+            "org.mozilla.javascript.regexp.RECharSet",
+            "[Lorg.mozilla.javascript.regexp.RECharSet;",
+            String.class.getName(),
+            String[].class.getName(),
+            Object[].class.getName(),
+            Number.class.getName(),
+            Integer.class.getName(),
+            Double.class.getName(),
+            HashSet.class.getName(),
+            boolean[].class.getName(),
+            byte[].class.getName(),
+            char[].class.getName(),
+            int[].class.getName(),
+            double[].class.getName()));
+
+    private static final int CODE_FORMAT = 1;
+    private static final int CLASS_CODE = 1;
+    private static final int INTERPRETER_CODE = 2;
+
+    private final int maxEntries;
+    private final LinkedHashMap<Key,Object> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private volatile File codeDirectory;
+}
@@ -6,6 +6,9 @@
 
 package org.mozilla.javascript;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import org.mozilla.javascript.ast.ErrorCollector;
@@ -48,9 +51,17 @@ public class CompilerEnvirons
 
         generatingSource = cx.isGeneratingSource();
         activationNames = cx.activationNames;
+        if (cx.hostBindings != null) {
+            hostBindings = new LinkedHashMap<String,Class<?>>(cx.hostBindings);
+        }
 
         // Observer code generation in compiled code :
         generateObserverCount = cx.generateObserverCount;
+
+        lazyFunctionCompilation
+            = cx.hasFeature(Context.FEATURE_LAZY_FUNCTION_COMPILATION)
+              && cx.getDebugger() == null;
+        compressedSource = cx.hasFeature(Context.FEATURE_COMPRESSED_SOURCE);
     }
 
     public final ErrorReporter getErrorReporter()
@@ -244,6 +255,86 @@ public class CompilerEnvirons
         this.activationNames = activationNames;
     }
 
+    /**
+     * Declare that the top-level variable {@code name} holds a Java object
+     * of the given type.
+     * <p>
+     * When compiling to JVM bytecode, calls of the form
+     * {@code name.method(args)} where {@code type} has exactly one public
+     * instance method named {@code method}, taking as many parameters as
+     * there are arguments, are compiled to a direct call of that method.
+     * The direct call is guarded by a check that the variable holds the
+     * standard wrapper of an instance of exactly {@code type} (or of any
+     * implementation if {@code type} is an interface); otherwise the call
+     * goes through the usual property lookup. Arguments are converted with
+     * {@link Context#jsToJava(Object, Class)} and the result is wrapped
+     * with the {@link WrapFactory} of the context, as for reflected calls.
+     * <p>
+     * The type and the types in the method signature must be visible to the
+     * application class loader of the context running the compiled script.
+     * The declaration has no effect on interpreted code.
+     *
+     * @param name the name of the top-level variable
+     * @param type a public class or interface, or null to remove the
+     *        declaration
+     */
+    public void declareHostBinding(String name, Class<?> type)
+    {
+        if (name == null) throw new IllegalArgumentException();
+        if (type == null) {
+            if (hostBindings != null) {
+                hostBindings.remove(name);
+            }
+            return;
+        }
+        if (hostBindings == null) {
+            hostBindings = new LinkedHashMap<String,Class<?>>();
+        }
+        hostBindings.put(name, type);
+    }
+
+    /**
+     * Returns the host bindings declared with
+     * {@link #declareHostBinding(String, Class)}.
+     */
+    public Map<String,Class<?>> getHostBindings()
+    {
+        if (hostBindings == null) {
+            return Collections.emptyMap();
+        }
+        return Collections.unmodifiableMap(hostBindings);
+    }
+
+    /**
+     * Returns true if the bodies of nested functions are compiled when the
+     * functions are first called. Only applies to interpreted code.
+     * @see Context#FEATURE_LAZY_FUNCTION_COMPILATION
+     */
+    public boolean isLazyFunctionCompilation()
+    {
+        return lazyFunctionCompilation;
+    }
+
+    public void setLazyFunctionCompilation(boolean flag)
+    {
+        lazyFunctionCompilation = flag;
+    }
+
+    /**
+     * Returns true if the encoded source of interpreted code is kept
+     * compressed.
+     * @see Context#FEATURE_COMPRESSED_SOURCE
+     */
+    public boolean isCompressedSource()
+    {
+        return compressedSource;
+    }
+
+    public void setCompressedSource(boolean flag)
+    {
+        compressedSource = flag;
+    }
+
     /**
      * Mozilla sources use the C preprocessor.
      */
@@ -291,5 +382,8 @@ public class CompilerEnvirons
     private boolean warnTrailingComma;
     private boolean ideMode;
     private boolean allowSharpComments;
+    private boolean lazyFunctionCompilation;
+    private boolean compressedSource;
     Set<String> activationNames;
+    private Map<String,Class<?>> hostBindings;
 }
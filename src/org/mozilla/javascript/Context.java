@@ -22,6 +22,7 @@ import java.net.URL;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
@@ -327,6 +328,40 @@ public class Context
      */
     public static final int FEATURE_THREAD_SAFE_OBJECTS = 17;
 
+    /**
+     * If set, then instances of <code>java.util.Map</code> are wrapped as
+     * {@link NativeJavaMap} so that scripts can read and write their entries
+     * as properties, e.g. <code>map.key</code> or <code>map["key"]</code>.
+     * Entries shadow Java methods and fields with the same name.
+     * By default {@link #hasFeature(int)} returns false.
+     * @since 1.7.8
+     */
+    public static final int FEATURE_ENABLE_JAVA_MAP_ACCESS = 18;
+
+    /**
+     * If set, interpreted code (optimization level -1) compiles the bodies
+     * of nested functions only when they are first called. Scripts are
+     * still fully parsed, so syntax errors are reported at compile time.
+     * With this feature, <code>Function.prototype.toString</code> returns
+     * the original source text instead of decompiled source.
+     * The feature has no effect while a debugger is set.
+     * By default {@link #hasFeature(int)} returns false.
+     * @since 1.7.8
+     */
+    public static final int FEATURE_LAZY_FUNCTION_COMPILATION = 19;
+
+    /**
+     * If set, interpreted code (optimization level -1) keeps the encoded
+     * source used by <code>Function.prototype.toString</code> compressed,
+     * and decompresses it only when a function is converted to a string.
+     * This saves most of the memory the source of loaded scripts takes,
+     * at the cost of slower <code>toString</code> calls. To drop the
+     * source entirely use {@link #setGeneratingSource(boolean)} instead.
+     * By default {@link #hasFeature(int)} returns false.
+     * @since 1.7.8
+     */
+    public static final int FEATURE_COMPRESSED_SOURCE = 20;
+
     public static final String languageVersionProperty = "language version";
     public static final String errorReporterProperty   = "error reporter";
 
@@ -1444,7 +1479,8 @@ public class Context
      * Compiles the source in the given reader.
      * <p>
      * Returns a script that may later be executed.
-     * Will consume all the source in the reader.
+     * Will consume all the source in the reader. Use a
+     * {@link ByteBufferReader} to compile a memory-mapped file in chunks.
      *
      * @param in the input reader
      * @param sourceName a string describing the source, such as a filename
@@ -1497,6 +1533,44 @@ public class Context
                              securityDomain);
     }
 
+    /**
+     * Compiles the source in the given character sequence.
+     * <p>
+     * Returns a script that may later be executed. Unlike
+     * {@link #compileString(String, String, int, Object)} the characters
+     * are scanned in place, so a {@link java.nio.CharBuffer} wrapping an
+     * array or holding a decoded file is not copied into a string first.
+     * The sequence must not be modified while it is compiled.
+     *
+     * @param source the source characters
+     * @param sourceName a string describing the source, such as a filename
+     * @param lineno the starting line number for reporting errors. Use
+     *        0 if the line number is unknown.
+     * @param securityDomain an arbitrary object that specifies security
+     *        information about the origin or owner of the script. For
+     *        implementations that don't care about security, this value
+     *        may be null.
+     * @return a script that may later be executed
+     * @see #compileReader(Reader, String, int, Object)
+     * @see ByteBufferReader
+     */
+    public final Script compileSource(CharSequence source,
+                                      String sourceName, int lineno,
+                                      Object securityDomain)
+    {
+        if (lineno < 0) {
+            // For compatibility IllegalArgumentException can not be thrown here
+            lineno = 0;
+        }
+        try {
+            return (Script) compileImpl(null, null, source, sourceName, lineno,
+                                        securityDomain, false, null, null);
+        } catch (IOException ex) {
+            // Should not happen when dealing with source as characters
+            throw new RuntimeException();
+        }
+    }
+
     final Script compileString(String source,
                                Evaluator compiler,
                                ErrorReporter compilationErrorReporter,
@@ -2304,6 +2378,9 @@ public class Context
      * @see #FEATURE_STRICT_MODE
      * @see #FEATURE_WARNING_AS_ERROR
      * @see #FEATURE_ENHANCED_JAVA_ACCESS
+     * @see #FEATURE_ENABLE_JAVA_MAP_ACCESS
+     * @see #FEATURE_LAZY_FUNCTION_COMPILATION
+     * @see #FEATURE_COMPRESSED_SOURCE
      */
     public boolean hasFeature(int featureIndex)
     {
@@ -2477,7 +2554,7 @@ public class Context
     }
 
     private Object compileImpl(Scriptable scope,
-                               Reader sourceReader, String sourceString,
+                               Reader sourceReader, CharSequence sourceText,
                                String sourceName, int lineno,
                                Object securityDomain, boolean returnFunction,
                                Evaluator compiler,
@@ -2492,8 +2569,8 @@ public class Context
                 "securityDomain should be null if setSecurityController() was never called");
         }
 
-        // One of sourceReader or sourceString has to be null
-        if (!(sourceReader == null ^ sourceString == null)) Kit.codeBug();
+        // One of sourceReader or sourceText has to be null
+        if (!(sourceReader == null ^ sourceText == null)) Kit.codeBug();
         // scope should be given if and only if compiling function
         if (!(scope == null ^ returnFunction)) Kit.codeBug();
 
@@ -2503,54 +2580,89 @@ public class Context
             compilationErrorReporter = compilerEnv.getErrorReporter();
         }
 
-        if (debugger != null) {
+        CompiledScriptCache cache = null;
+        CompiledScriptCache.Key cacheKey = null;
+        if (debugger == null && compiler == null) {
+            cache = factory.getCompiledScriptCache();
+        }
+        boolean lazyFunctions = compilerEnv.isLazyFunctionCompilation()
+            && compilerEnv.getOptimizationLevel() < 0
+            && (compiler == null || compiler instanceof Interpreter);
+        String sourceString = null;
+        if (debugger != null || cache != null || lazyFunctions) {
             if (sourceReader != null) {
-                sourceString = Kit.readReader(sourceReader);
+                sourceText = Kit.readReader(sourceReader);
                 sourceReader = null;
             }
+            sourceString = sourceText.toString();
+        }
+        Object bytecode = null;
+        if (cache != null) {
+            cacheKey = CompiledScriptCache.createKey(sourceString, sourceName,
+                lineno, compilerEnv, isStrictMode(), returnFunction,
+                securityDomain, getApplicationClassLoader());
+            Object cached = cache.get(cacheKey);
+            if (cached != null) {
+                if (returnFunction) {
+                    return createCompiledObject(createCompiler(), scope,
+                        cached, securityDomain, true);
+                }
+                return cached;
+            }
+            compiler = createCompiler();
+            bytecode = cache.loadCode(this, cacheKey, compiler);
         }
 
-        Parser p = new Parser(compilerEnv, compilationErrorReporter);
-        if (returnFunction) {
-            p.calledByCompileFunction = true;
-        }
-        if (isStrictMode()) {
-            p.setDefaultUseStrictDirective(true);
-        }
-        AstRoot ast;
-        if (sourceString != null) {
-            ast = p.parse(sourceString, sourceName, lineno);
-        } else {
-            ast = p.parse(sourceReader, sourceName, lineno);
-        }
-        if (returnFunction) {
-            // parser no longer adds function to script node
-            if (!(ast.getFirstChild() != null
-                  && ast.getFirstChild().getType() == Token.FUNCTION))
-            {
-                // XXX: the check just looks for the first child
-                // and allows for more nodes after it for compatibility
-                // with sources like function() {};;;
-                throw new IllegalArgumentException(
-                    "compileFunction only accepts source with single JS function: "+sourceString);
+        if (bytecode == null) {
+            Parser p = new Parser(compilerEnv, compilationErrorReporter);
+            if (returnFunction) {
+                p.calledByCompileFunction = true;
+            }
+            if (isStrictMode()) {
+                p.setDefaultUseStrictDirective(true);
+            }
+            AstRoot ast;
+            if (sourceText != null) {
+                ast = p.parse(sourceText, sourceName, lineno);
+            } else {
+                ast = p.parse(sourceReader, sourceName, lineno);
+            }
+            if (returnFunction) {
+                // parser no longer adds function to script node
+                if (!(ast.getFirstChild() != null
+                      && ast.getFirstChild().getType() == Token.FUNCTION))
+                {
+                    // XXX: the check just looks for the first child
+                    // and allows for more nodes after it for compatibility
+                    // with sources like function() {};;;
+                    throw new IllegalArgumentException(
+                        "compileFunction only accepts source with single JS function: "+sourceText);
+                }
             }
-        }
 
-        IRFactory irf = new IRFactory(compilerEnv, compilationErrorReporter);
-        ScriptNode tree = irf.transformTree(ast);
+            IRFactory irf = new IRFactory(compilerEnv, compilationErrorReporter);
+            if (lazyFunctions) {
+                // The function compiled by compileFunction is not lazy
+                irf.setLazyFunctionSource(sourceString, returnFunction ? 1 : 0);
+            }
+            ScriptNode tree = irf.transformTree(ast);
 
-        // discard everything but the IR tree
-        p = null;
-        ast = null;
-        irf = null;
+            // discard everything but the IR tree
+            p = null;
+            ast = null;
+            irf = null;
 
-        if (compiler == null) {
-            compiler = createCompiler();
-        }
+            if (compiler == null) {
+                compiler = createCompiler();
+            }
 
-        Object bytecode = compiler.compile(compilerEnv,
-                                           tree, tree.getEncodedSource(),
-                                           returnFunction);
+            bytecode = compiler.compile(compilerEnv,
+                                        tree, tree.getEncodedSource(),
+                                        returnFunction);
+            if (cache != null) {
+                cache.storeCode(this, cacheKey, compiler, bytecode);
+            }
+        }
         if (debugger != null) {
             if (sourceString == null) Kit.codeBug();
             if (bytecode instanceof DebuggableScript) {
@@ -2561,16 +2673,37 @@ public class Context
             }
         }
 
-        Object result;
-        if (returnFunction) {
-            result = compiler.createFunctionObject(this, scope, bytecode, securityDomain);
-        } else {
-            result = compiler.createScriptObject(bytecode, securityDomain);
+        Object result = createCompiledObject(compiler, scope, bytecode,
+                                             securityDomain, returnFunction);
+        if (cache != null) {
+            // Functions are bound to their scope, so only their code
+            // can be shared
+            cache.put(cacheKey, returnFunction ? bytecode : result);
         }
-
         return result;
     }
 
+    private Object createCompiledObject(Evaluator compiler, Scriptable scope,
+                                        Object bytecode, Object securityDomain,
+                                        boolean returnFunction)
+    {
+        if (bytecode instanceof InterpreterData) {
+            // Interpreter only accepts the code it compiled last, while
+            // cached code may come from another compilation
+            InterpreterData idata = (InterpreterData)bytecode;
+            if (returnFunction) {
+                return InterpretedFunction.createFunction(this, scope, idata,
+                                                          securityDomain);
+            }
+            return InterpretedFunction.createScript(idata, securityDomain);
+        }
+        if (returnFunction) {
+            return compiler.createFunctionObject(this, scope, bytecode,
+                                                 securityDomain);
+        }
+        return compiler.createScriptObject(bytecode, securityDomain);
+    }
+
     private static void notifyDebugger_r(Context cx, DebuggableScript dscript,
                                          String debugSource)
     {
@@ -2703,6 +2836,29 @@ public class Context
             activationNames.remove(name);
     }
 
+    /**
+     * Declare that the top-level variable {@code name} holds a Java object
+     * of the given type in scripts compiled by this context.
+     *
+     * @param name the name of the top-level variable
+     * @param type the Java type of the variable, or null to remove the
+     *        declaration
+     * @see CompilerEnvirons#declareHostBinding(String, Class)
+     */
+    public void declareHostBinding(String name, Class<?> type)
+    {
+        if (sealed) onSealedMutation();
+        if (name == null) throw new IllegalArgumentException();
+        if (type == null) {
+            if (hostBindings != null)
+                hostBindings.remove(name);
+            return;
+        }
+        if (hostBindings == null)
+            hostBindings = new LinkedHashMap<String,Class<?>>();
+        hostBindings.put(name, type);
+    }
+
     public final boolean isStrictMode() {
         return isTopLevelStrict || (currentActivationCall != null && currentActivationCall.isStrict);
     }
@@ -2754,6 +2910,12 @@ public class Context
      */
     Set<String> activationNames;
 
+    /**
+     * Java types of top-level variables declared with
+     * {@link #declareHostBinding(String, Class)}.
+     */
+    Map<String,Class<?>> hostBindings;
+
     // For the interpreter to store the last frame for error reports etc.
     Object lastInterpreterFrame;
 
@@ -2774,6 +2936,15 @@ public class Context
     // It can be used to return the second Scriptable result from function
     Scriptable scratchScriptable;
 
+    // Recent conversions of non-integral numbers to strings,
+    // see ScriptRuntime.numberToString
+    long[] numberStringKeys;
+    String[] numberStringValues;
+
+    // Builder reused by string building builtins,
+    // see ScriptRuntime.takeStringBuilder
+    StringBuilder cachedStringBuilder;
+
     // Generate an observer count on compiled code
     public boolean generateObserverCount = false;
 
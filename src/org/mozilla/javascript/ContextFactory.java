@@ -118,6 +118,7 @@ public class ContextFactory
     private volatile Object listeners;
     private boolean disabledListening;
     private ClassLoader applicationClassLoader;
+    private volatile CompiledScriptCache compiledScriptCache;
 
     /**
      * Listener of {@link Context} creation and release events.
@@ -291,6 +292,15 @@ public class ContextFactory
 
           case Context.FEATURE_THREAD_SAFE_OBJECTS:
               return false;
+
+          case Context.FEATURE_ENABLE_JAVA_MAP_ACCESS:
+              return false;
+
+          case Context.FEATURE_LAZY_FUNCTION_COMPILATION:
+              return false;
+
+          case Context.FEATURE_COMPRESSED_SOURCE:
+              return false;
         }
         // It is a bug to call the method with unknown featureIndex
         throw new IllegalArgumentException(String.valueOf(featureIndex));
@@ -388,6 +398,30 @@ public class ContextFactory
         this.applicationClassLoader = loader;
     }
 
+    /**
+     * Returns the cache of compiled scripts used by contexts of this
+     * factory, or null if compiled scripts are not cached.
+     *
+     * @see #setCompiledScriptCache(CompiledScriptCache)
+     */
+    public final CompiledScriptCache getCompiledScriptCache()
+    {
+        return compiledScriptCache;
+    }
+
+    /**
+     * Set the cache used by contexts of this factory to reuse scripts and
+     * functions compiled from the same source with the same settings.
+     *
+     * @param cache the cache, or null to disable caching
+     * @see CompiledScriptCache
+     */
+    public final void setCompiledScriptCache(CompiledScriptCache cache)
+    {
+        checkNotSealed();
+        this.compiledScriptCache = cache;
+    }
+
     /**
      * Execute top call to script or function.
      * When the runtime is about to execute a script or function that will
@@ -73,8 +73,27 @@ public class Decompiler
     // the last RC of object literals in case of function expressions
     private static final int FUNCTION_END = Token.LAST_TOKEN + 1;
 
+    public Decompiler()
+    {
+        this(true);
+    }
+
+    /**
+     * @param recordSource false for a decompiler that discards everything
+     *        added to it, when no encoded source is generated
+     */
+    Decompiler(boolean recordSource)
+    {
+        if (recordSource) {
+            sourceBuffer = new char[128];
+        }
+    }
+
     String getEncodedSource()
     {
+        if (sourceBuffer == null) {
+            return null;
+        }
         return sourceToString(0);
     }
 
@@ -190,6 +209,9 @@ public class Decompiler
 
     private void appendString(String str)
     {
+        if (sourceBuffer == null) {
+            return;
+        }
         int L = str.length();
         int lengthEncodingSize = 1;
         if (L >= 0x8000) {
@@ -213,6 +235,9 @@ public class Decompiler
 
     private void append(char c)
     {
+        if (sourceBuffer == null) {
+            return;
+        }
         if (sourceTop == sourceBuffer.length) {
             increaseSourceCapacity(sourceTop + 1);
         }
@@ -888,7 +913,8 @@ public class Decompiler
         return offset;
     }
 
-    private char[] sourceBuffer = new char[128];
+    // null if the source is not recorded
+    private char[] sourceBuffer;
 
 // Per script/function source buffer top: parent source does not include a
 // nested functions source and uses function index as a reference instead.
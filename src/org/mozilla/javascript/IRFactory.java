@@ -87,7 +87,12 @@ public final class IRFactory extends Parser
     private static final int ALWAYS_TRUE_BOOLEAN = 1;
     private static final int ALWAYS_FALSE_BOOLEAN = -1;
 
-    private Decompiler decompiler = new Decompiler();
+    private Decompiler decompiler;
+
+    // Source text of the tree when compiling with lazy function compilation
+    private String rawSource;
+    // Nesting level from which function bodies are left to lazy compilation
+    private int lazyFunctionNesting;
 
     public IRFactory() {
         super();
@@ -99,6 +104,23 @@ public final class IRFactory extends Parser
 
     public IRFactory(CompilerEnvirons env, ErrorReporter errorReporter) {
         super(env, errorReporter);
+        decompiler = new Decompiler(env.isGeneratingSource());
+    }
+
+    /**
+     * Enables lazy compilation of function bodies for the interpreter.
+     * Functions nested at least {@code nesting} levels deep whose bodies
+     * can be compiled on their own are transformed with an empty body
+     * and marked with {@link FunctionNode#isLazy}. Scripts and functions
+     * record their range in {@code source}, from which lazy functions
+     * are compiled when they are first called.
+     * @param source the source text the tree was parsed from
+     * @param nesting the function nesting level from which bodies are
+     *        not transformed
+     */
+    void setLazyFunctionSource(String source, int nesting) {
+        rawSource = source;
+        lazyFunctionNesting = nesting;
     }
 
     /**
@@ -115,6 +137,9 @@ public final class IRFactory extends Parser
             System.out.println(root.debugPrint());
         }
         ScriptNode script = (ScriptNode)transform(root);
+        if (rawSource != null) {
+            script.setRawSource(rawSource, 0, 0, rawSource.length());
+        }
 
         int sourceEndOffset = decompiler.getCurrentOffset();
         script.setEncodedSourceBounds(sourceStartOffset,
@@ -588,8 +613,22 @@ public final class IRFactory extends Parser
             fn.removeProp(Node.DESTRUCTURING_PARAMS);
 
             int lineno = fn.getBody().getLineno();
+            if (rawSource != null) {
+                int fnStart = fn.getAbsolutePosition();
+                fn.setRawSource(rawSource, fnStart,
+                                fn.getBody().getAbsolutePosition(),
+                                fnStart + fn.getLength());
+            }
+            fn.setNumericCompareOrder(getNumericCompareOrder(fn));
+            boolean lazy = isLazyFunction(fn, destructuring);
             ++nestingOfFunction;  // only for body, not params
-            Node body = transform(fn.getBody());
+            Node body;
+            if (lazy) {
+                fn.setIsLazy();
+                body = new Node(Token.BLOCK);
+            } else {
+                body = transform(fn.getBody());
+            }
 
             if (!fn.isExpressionClosure()) {
                 decompiler.addToken(Token.RC);
@@ -623,6 +662,58 @@ public final class IRFactory extends Parser
         }
     }
 
+    private boolean isLazyFunction(FunctionNode fn, Node destructuring) {
+        return rawSource != null
+            && nestingOfFunction >= lazyFunctionNesting
+            && destructuring == null
+            && !fn.isGenerator()
+            && !fn.isExpressionClosure()
+            && !fn.isMethod()
+            && fn.getMemberExprNode() == null
+            && fn.getFunctionType() != FunctionNode.ARROW_FUNCTION;
+    }
+
+    /**
+     * Returns 1 if the body of the function only returns its first
+     * parameter minus its second one, -1 if it returns the second minus the
+     * first, and 0 otherwise. Array.prototype.sort compares numbers without
+     * calling such functions.
+     */
+    private static int getNumericCompareOrder(FunctionNode fn) {
+        List<AstNode> params = fn.getParams();
+        if (params.size() != 2 || !(params.get(0) instanceof Name)
+            || !(params.get(1) instanceof Name)) {
+            return 0;
+        }
+        Node statement = fn.getBody().getFirstChild();
+        if (!(statement instanceof ReturnStatement)
+            || statement.getNext() != null) {
+            return 0;
+        }
+        AstNode value = ((ReturnStatement) statement).getReturnValue();
+        if (!(value instanceof InfixExpression)
+            || value.getType() != Token.SUB) {
+            return 0;
+        }
+        AstNode left = ((InfixExpression) value).getLeft();
+        AstNode right = ((InfixExpression) value).getRight();
+        if (!(left instanceof Name) || !(right instanceof Name)) {
+            return 0;
+        }
+        String a = ((Name) params.get(0)).getIdentifier();
+        String b = ((Name) params.get(1)).getIdentifier();
+        String l = ((Name) left).getIdentifier();
+        String r = ((Name) right).getIdentifier();
+        if (a.equals(b)) {
+            return 0;
+        } else if (a.equals(l) && b.equals(r)) {
+            return 1;
+        } else if (a.equals(r) && b.equals(l)) {
+            return -1;
+        }
+        return 0;
+    }
+
     private Node transformFunctionCall(FunctionCall node) {
         Node call = createCallOrNew(Token.CALL, transform(node.getTarget()));
         call.setLineno(node.getLineno());
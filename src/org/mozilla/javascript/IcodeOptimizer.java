@@ -0,0 +1,391 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+/**
+ * Peephole pass over the icode of a script or function, run by
+ * {@link CodeGenerator} once all its jumps are resolved.
+ * <p>
+ * Jumps to a GOTO are threaded to the final target, a GOTO to a return
+ * becomes the return itself and a conditional jump on a constant, as in
+ * <code>while (true)</code>, becomes a GOTO or nothing. GOTOs to the next
+ * instruction, unreachable code and line markers directly followed by
+ * another line marker are dropped. The remaining code is then compacted, with jump
+ * offsets and the exception table updated to the new positions.
+ */
+final class IcodeOptimizer extends Icode
+{
+    // Bits of flags[pc]
+    private static final int START = 1 << 0;
+    private static final int LIVE = 1 << 1;
+    private static final int DROP = 1 << 2;
+    private static final int INLINE_RETURN = 1 << 3;
+    private static final int TARGET = 1 << 4;
+    private static final int AS_GOTO = 1 << 5;
+
+    // Bound on GOTO chains followed from a single jump
+    private static final int MAX_THREADING = 8;
+
+    private final InterpreterData itsData;
+    private final byte[] iCode;
+    private final int iCodeTop;
+    private final int exceptionTableTop;
+    private final boolean keepLines;
+
+    private byte[] flags;
+    private int[] targets;
+
+    /**
+     * @param keepLines if true, every line marker is kept so a debugger
+     *        sees each line change and can stop on any of them
+     */
+    IcodeOptimizer(InterpreterData data, int iCodeTop,
+                   int exceptionTableTop, boolean keepLines)
+    {
+        this.itsData = data;
+        this.iCode = data.itsICode;
+        this.iCodeTop = iCodeTop;
+        this.exceptionTableTop = exceptionTableTop;
+        this.keepLines = keepLines;
+    }
+
+    /**
+     * Optimizes the icode, replacing {@link InterpreterData#itsICode}
+     * when it changes.
+     * @return the new length of the icode
+     */
+    int optimize()
+    {
+        flags = new byte[iCodeTop + 1];
+        targets = new int[iCodeTop + 1];
+
+        markTargets();
+        boolean changed = foldConditions();
+        changed |= threadJumps();
+        markReachable();
+        changed |= dropInstructions();
+        keepEmptyLoops();
+        if (!changed) {
+            return iCodeTop;
+        }
+        return compact();
+    }
+
+    private void markTargets()
+    {
+        for (int pc = 0; pc < iCodeTop;
+             pc += Interpreter.bytecodeSpan(iCode[pc]))
+        {
+            flags[pc] |= START;
+            if (isJump(iCode[pc])) {
+                flags[getTarget(pc)] |= TARGET;
+            }
+        }
+        int[] exceptionTable = itsData.itsExceptionTable;
+        for (int i = 0; i != exceptionTableTop;
+             i += Interpreter.EXCEPTION_SLOT_SIZE)
+        {
+            flags[exceptionTable[i + Interpreter.EXCEPTION_HANDLER_SLOT]]
+                |= TARGET;
+        }
+    }
+
+    /**
+     * Replaces TRUE or FALSE followed by IFEQ or IFNE with a GOTO when
+     * the jump is always taken and drops both when it never is.
+     */
+    private boolean foldConditions()
+    {
+        boolean changed = false;
+        for (int pc = 0; pc < iCodeTop; pc++) {
+            int op = iCode[pc];
+            if ((flags[pc] & START) == 0
+                || (op != Token.TRUE && op != Token.FALSE))
+            {
+                continue;
+            }
+            int jumpPC = pc + 1;
+            int jumpOp = iCode[jumpPC];
+            if ((flags[jumpPC] & TARGET) != 0
+                || (jumpOp != Token.IFEQ && jumpOp != Token.IFNE))
+            {
+                continue;
+            }
+            // IFEQ jumps when the value is true, IFNE when it is false
+            flags[pc] |= DROP;
+            if ((op == Token.TRUE) == (jumpOp == Token.IFEQ)) {
+                flags[jumpPC] |= AS_GOTO;
+            } else {
+                flags[jumpPC] |= DROP;
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean threadJumps()
+    {
+        boolean changed = false;
+        for (int pc = 0; pc < iCodeTop;
+             pc += Interpreter.bytecodeSpan(iCode[pc]))
+        {
+            int op = iCode[pc];
+            if (!isJump(op) || (flags[pc] & DROP) != 0) {
+                continue;
+            }
+            int original = getTarget(pc);
+            int target = original;
+            for (int i = 0; i != MAX_THREADING; i++) {
+                if (!isGoto(target)) {
+                    break;
+                }
+                int next = getTarget(target);
+                if (next == pc) {
+                    // Jump would target itself
+                    break;
+                }
+                target = next;
+            }
+            targets[pc] = target;
+            if (target != original) {
+                changed = true;
+            }
+            if (isGoto(pc) && isReturn(iCode[target])) {
+                flags[pc] |= INLINE_RETURN;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private void markReachable()
+    {
+        int[] exceptionTable = itsData.itsExceptionTable;
+        int[] work = new int[iCodeTop + 1
+                             + exceptionTableTop
+                               / Interpreter.EXCEPTION_SLOT_SIZE];
+        int workTop = 0;
+        work[workTop++] = 0;
+        for (int i = 0; i != exceptionTableTop;
+             i += Interpreter.EXCEPTION_SLOT_SIZE)
+        {
+            work[workTop++] =
+                exceptionTable[i + Interpreter.EXCEPTION_HANDLER_SLOT];
+        }
+        while (workTop != 0) {
+            int pc = work[--workTop];
+            while (pc < iCodeTop && (flags[pc] & LIVE) == 0) {
+                flags[pc] |= LIVE;
+                int f = flags[pc];
+                int op = iCode[pc];
+                if ((f & INLINE_RETURN) != 0) {
+                    break;
+                }
+                if (isJump(op) && (f & DROP) == 0) {
+                    work[workTop++] = targets[pc];
+                }
+                if (endsFlow(op) || (f & AS_GOTO) != 0) {
+                    break;
+                }
+                pc += Interpreter.bytecodeSpan(op);
+            }
+        }
+    }
+
+    private boolean dropInstructions()
+    {
+        boolean changed = false;
+        // nextKept[pc] is the first kept instruction at or after pc
+        int[] nextKept = new int[iCodeTop + 1];
+        int next = iCodeTop;
+        nextKept[iCodeTop] = iCodeTop;
+        for (int pc = iCodeTop - 1; pc >= 0; pc--) {
+            int f = flags[pc];
+            if ((f & START) == 0) {
+                continue;
+            }
+            int op = iCode[pc];
+            boolean drop;
+            if ((f & (DROP | LIVE)) != LIVE) {
+                drop = true;
+            } else if (isGoto(pc) && (f & INLINE_RETURN) == 0) {
+                int target = targets[pc];
+                drop = target > pc && nextKept[target] == next;
+            } else if (op == Icode_LINE && !keepLines) {
+                drop = next != iCodeTop && iCode[next] == Icode_LINE;
+            } else {
+                drop = false;
+            }
+            if (drop) {
+                flags[pc] |= DROP;
+                changed = true;
+            } else {
+                next = pc;
+            }
+            nextKept[pc] = next;
+        }
+        return changed;
+    }
+
+    /**
+     * Restores the conditional jump of a folded condition that would
+     * otherwise become a GOTO to itself, as in <code>while (true);</code>:
+     * jump offsets can not be 0, so the constant and the conditional jump
+     * stay in the code.
+     */
+    private void keepEmptyLoops()
+    {
+        for (int pc = 0; pc < iCodeTop;
+             pc += Interpreter.bytecodeSpan(iCode[pc]))
+        {
+            if ((flags[pc] & (AS_GOTO | DROP)) != AS_GOTO
+                || targets[pc] > pc)
+            {
+                continue;
+            }
+            boolean empty = true;
+            for (int i = targets[pc]; i != pc; i++) {
+                if ((flags[i] & (START | DROP)) == START) {
+                    empty = false;
+                    break;
+                }
+            }
+            if (empty) {
+                // The TRUE or FALSE folded with the jump precedes it
+                flags[pc] &= ~AS_GOTO;
+                flags[pc - 1] &= ~DROP;
+            }
+        }
+    }
+
+    private int compact()
+    {
+        // newPC[pc] is the new position of the instruction at pc or, for
+        // a dropped one, of the first kept instruction after it
+        int[] newPC = new int[iCodeTop + 1];
+        int newTop = 0;
+        for (int pc = 0; pc < iCodeTop; pc++) {
+            int f = flags[pc];
+            if ((f & START) == 0) {
+                continue;
+            }
+            newPC[pc] = newTop;
+            if ((f & DROP) == 0) {
+                newTop += (f & INLINE_RETURN) != 0
+                          ? 1 : Interpreter.bytecodeSpan(iCode[pc]);
+            }
+        }
+        newPC[iCodeTop] = newTop;
+
+        byte[] array = new byte[newTop];
+        itsData.longJumps = null;
+        for (int pc = 0; pc < iCodeTop; pc++) {
+            int f = flags[pc];
+            if ((f & START) == 0 || (f & DROP) != 0) {
+                continue;
+            }
+            int to = newPC[pc];
+            if ((f & INLINE_RETURN) != 0) {
+                array[to] = iCode[targets[pc]];
+                continue;
+            }
+            int op = iCode[pc];
+            System.arraycopy(iCode, pc, array, to,
+                             Interpreter.bytecodeSpan(op));
+            if ((f & AS_GOTO) != 0) {
+                array[to] = (byte)Token.GOTO;
+            }
+            if (isJump(op)) {
+                resolveGoto(array, to, newPC[targets[pc]]);
+            }
+        }
+
+        int[] table = itsData.itsExceptionTable;
+        for (int i = 0; i != exceptionTableTop;
+             i += Interpreter.EXCEPTION_SLOT_SIZE)
+        {
+            int slot = i + Interpreter.EXCEPTION_TRY_START_SLOT;
+            table[slot] = newPC[table[slot]];
+            slot = i + Interpreter.EXCEPTION_TRY_END_SLOT;
+            table[slot] = newPC[table[slot]];
+            slot = i + Interpreter.EXCEPTION_HANDLER_SLOT;
+            table[slot] = newPC[table[slot]];
+        }
+
+        itsData.itsICode = array;
+        return newTop;
+    }
+
+    private int getTarget(int pc)
+    {
+        int offset = Interpreter.getShort(iCode, pc + 1);
+        if (offset == 0) {
+            return itsData.longJumps.getExistingInt(pc + 1);
+        }
+        return pc + offset;
+    }
+
+    private void resolveGoto(byte[] array, int fromPC, int jumpPC)
+    {
+        int offset = jumpPC - fromPC;
+        if (0 <= offset && offset <= 2) throw Kit.codeBug();
+        int offsetSite = fromPC + 1;
+        if (offset != (short)offset) {
+            if (itsData.longJumps == null) {
+                itsData.longJumps = new UintMap();
+            }
+            itsData.longJumps.put(offsetSite, jumpPC);
+            offset = 0;
+        }
+        array[offsetSite] = (byte)(offset >> 8);
+        array[offsetSite + 1] = (byte)offset;
+    }
+
+    private boolean isGoto(int pc)
+    {
+        return iCode[pc] == Token.GOTO || (flags[pc] & AS_GOTO) != 0;
+    }
+
+    private static boolean isJump(int op)
+    {
+        switch (op) {
+          case Token.GOTO:
+          case Token.IFEQ:
+          case Token.IFNE:
+          case Icode_IFEQ_POP:
+          case Icode_GOSUB:
+          case Icode_LEAVEDQ:
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isReturn(int op)
+    {
+        return op == Token.RETURN || op == Token.RETURN_RESULT
+               || op == Icode_RETUNDEF;
+    }
+
+    /**
+     * Returns true if the instruction never continues with the next one.
+     */
+    private static boolean endsFlow(int op)
+    {
+        switch (op) {
+          case Token.GOTO:
+          case Token.RETURN:
+          case Token.RETURN_RESULT:
+          case Icode_RETUNDEF:
+          case Token.THROW:
+          case Token.RETHROW:
+          case Icode_RETSUB:
+          case Icode_GENERATOR_END:
+            return true;
+        }
+        return false;
+    }
+}
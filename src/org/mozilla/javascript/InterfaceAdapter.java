@@ -6,15 +6,35 @@
 
 package org.mozilla.javascript;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.mozilla.classfile.ByteCode;
+import org.mozilla.classfile.ClassFileWriter;
 
 /**
  * Adapter to use JS function as implementation of Java interfaces with
  * single method or multiple methods with the same signature.
+ * <p>
+ * Whenever possible the adapter generates a class implementing the
+ * interface directly, so that calls from Java reach the JS function without
+ * going through {@link java.lang.reflect.Proxy} and reflective dispatch.
+ * If the class can not be generated, for example for non-public interfaces
+ * or on VMs without bytecode generation, the adapter falls back to
+ * {@link VMBridge#newInterfaceProxy}.
  */
 public class InterfaceAdapter
 {
     private final Object proxyHelper;
+    private final Constructor<?> adapterCtor;
+    private final Method[] methods;
+    private final Method[] defaultMethods;
+    private final ConcurrentMap<BitSet,InterfaceAdapter> defaultMethodAdapters;
 
     /**
      * Make glue object implementing interface cl that will
@@ -34,11 +54,11 @@ public class InterfaceAdapter
         adapter = (InterfaceAdapter)cache.getInterfaceAdapter(cl);
         ContextFactory cf = cx.getFactory();
         if (adapter == null) {
-            Method[] methods = cl.getMethods();
+            Method[] methods = getInstanceMethods(cl, false);
             if ( object instanceof Callable) {
                 // Check if interface can be implemented by a single function.
-                // We allow this if the interface has only one method or multiple 
-                // methods with the same name (in which case they'd result in 
+                // We allow this if the interface has only one method or multiple
+                // methods with the same name (in which case they'd result in
                 // the same function to be invoked anyway).
                 int length = methods.length;
                 if (length == 0) {
@@ -56,18 +76,432 @@ public class InterfaceAdapter
                     }
                 }
             }
-            adapter = new InterfaceAdapter(cf, cl);
+            adapter = new InterfaceAdapter(cf, cl, methods,
+                                           getInstanceMethods(cl, true),
+                                           cache);
             cache.cacheInterfaceAdapter(cl, adapter);
         }
+        if (!(object instanceof Callable)) {
+            adapter = adapter.withDefaultMethods(cf, cl, object, cache);
+        }
+        if (adapter.adapterCtor != null) {
+            try {
+                return adapter.adapterCtor.newInstance(
+                    adapter, cf, object, topScope);
+            } catch (Exception ex) {
+                throw Context.throwAsScriptRuntimeEx(ex);
+            }
+        }
         return VMBridge.instance.newInterfaceProxy(
             adapter.proxyHelper, cf, adapter, object, topScope);
     }
 
-    private InterfaceAdapter(ContextFactory cf, Class<?> cl)
+    private InterfaceAdapter(ContextFactory cf, Class<?> cl,
+                             Method[] methods, Method[] defaultMethods,
+                             ClassCache cache)
+    {
+        this.methods = methods;
+        this.defaultMethods = defaultMethods;
+        this.defaultMethodAdapters = defaultMethods.length == 0
+            ? null
+            : new ConcurrentHashMap<BitSet,InterfaceAdapter>(4, 0.75f, 1);
+        this.adapterCtor = createAdapterCtor(cl, methods, cache);
+        if (adapterCtor == null) {
+            this.proxyHelper
+                = VMBridge.instance.getInterfaceProxyHelper(
+                    cf, new Class[] { cl });
+        } else {
+            this.proxyHelper = null;
+        }
+    }
+
+    /**
+     * Returns the adapter to use for a JS object implementing the interface.
+     * Default methods the object defines as properties must reach the JS
+     * implementation, so they get their own adapter class; the others keep
+     * the implementation from the interface.
+     */
+    private InterfaceAdapter withDefaultMethods(ContextFactory cf,
+                                                Class<?> cl,
+                                                ScriptableObject object,
+                                                ClassCache cache)
+    {
+        if (adapterCtor == null || defaultMethods.length == 0) {
+            // The reflection proxy forwards default methods as well.
+            return this;
+        }
+        BitSet defined = null;
+        for (int i = 0; i != defaultMethods.length; ++i) {
+            if (ScriptableObject.hasProperty(object,
+                                             defaultMethods[i].getName()))
+            {
+                if (defined == null) {
+                    defined = new BitSet(defaultMethods.length);
+                }
+                defined.set(i);
+            }
+        }
+        if (defined == null) {
+            return this;
+        }
+        InterfaceAdapter adapter = defaultMethodAdapters.get(defined);
+        if (adapter == null) {
+            Method[] all = new Method[methods.length + defined.cardinality()];
+            System.arraycopy(methods, 0, all, 0, methods.length);
+            int n = methods.length;
+            for (int i = defined.nextSetBit(0); i >= 0;
+                 i = defined.nextSetBit(i + 1))
+            {
+                all[n++] = defaultMethods[i];
+            }
+            adapter = new InterfaceAdapter(cf, cl, all, new Method[0], cache);
+            InterfaceAdapter existing
+                = defaultMethodAdapters.putIfAbsent(defined, adapter);
+            if (existing != null) {
+                adapter = existing;
+            }
+        }
+        return adapter;
+    }
+
+    /**
+     * Returns the instance methods of the interface that are not
+     * redeclarations of public methods of <tt>java.lang.Object</tt>:
+     * the default methods if <tt>defaults</tt> is true, otherwise the
+     * abstract methods a JS implementation has to provide.
+     */
+    private static Method[] getInstanceMethods(Class<?> cl, boolean defaults)
+    {
+        Method[] all = cl.getMethods();
+        ArrayList<Method> list = new ArrayList<Method>(all.length);
+        for (Method method : all) {
+            int mods = method.getModifiers();
+            if (Modifier.isStatic(mods)
+                || VMBridge.instance.isDefaultMethod(method) != defaults
+                || isObjectMethod(method))
+            {
+                continue;
+            }
+            list.add(method);
+        }
+        return list.toArray(new Method[list.size()]);
+    }
+
+    private static boolean isObjectMethod(Method method)
+    {
+        try {
+            Object.class.getMethod(method.getName(),
+                                   method.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+
+    private static Constructor<?> createAdapterCtor(Class<?> cl,
+                                                    Method[] methods,
+                                                    ClassCache cache)
+    {
+        // Bytecode generation won't work on Dalvik VM, and generated classes
+        // can not implement interfaces that are not accessible to them.
+        if ("Dalvik".equals(System.getProperty("java.vm.name"))
+            || !Modifier.isPublic(cl.getModifiers()))
+        {
+            return null;
+        }
+        try {
+            String adapterName = "iadapter" + cache.newClassSerialNumber();
+            byte[] code = createAdapterCode(adapterName, cl, methods);
+            Class<?> adapterClass
+                = JavaAdapter.loadAdapterClass(adapterName, code);
+            if (!cl.isAssignableFrom(adapterClass)) {
+                // The class loader used for generated classes resolved
+                // a different interface with the same name.
+                return null;
+            }
+            return adapterClass.getConstructor(InterfaceAdapter.class,
+                                               ContextFactory.class,
+                                               Object.class,
+                                               Scriptable.class);
+        } catch (LinkageError ex) {
+            return null;
+        } catch (SecurityException ex) {
+            return null;
+        } catch (NoSuchMethodException ex) {
+            // Should not happen
+            throw Kit.initCause(new IllegalStateException(), ex);
+        }
+    }
+
+    private static byte[] createAdapterCode(String adapterName,
+                                            Class<?> cl, Method[] methods)
+    {
+        ClassFileWriter cfw = new ClassFileWriter(adapterName,
+                                                  "java.lang.Object",
+                                                  "<interface adapter>");
+        cfw.addInterface(cl.getName());
+        short fieldFlags = (short) (ClassFileWriter.ACC_PRIVATE |
+                                    ClassFileWriter.ACC_FINAL);
+        cfw.addField("adapter", ADAPTER_SIG, fieldFlags);
+        cfw.addField("factory", FACTORY_SIG, fieldFlags);
+        cfw.addField("target", "Ljava/lang/Object;", fieldFlags);
+        cfw.addField("topScope", SCRIPTABLE_SIG, fieldFlags);
+
+        generateCtor(cfw, adapterName);
+        generateObjectMethods(cfw, adapterName);
+
+        ObjToIntMap generated = new ObjToIntMap();
+        for (int i = 0; i != methods.length; ++i) {
+            Method method = methods[i];
+            Class<?>[] argTypes = method.getParameterTypes();
+            StringBuilder sb = new StringBuilder();
+            int paramsEnd = JavaAdapter.appendMethodSignature(
+                argTypes, method.getReturnType(), sb);
+            String methodSignature = sb.toString();
+            String methodKey = method.getName() + methodSignature;
+            if (generated.has(methodKey)) {
+                continue;
+            }
+            generated.put(methodKey, i);
+            generateMethod(cfw, adapterName, method, methodSignature,
+                           paramsEnd, i);
+        }
+        return cfw.toByteArray();
+    }
+
+    private static void generateCtor(ClassFileWriter cfw, String adapterName)
+    {
+        cfw.startMethod("<init>",
+                        "(" + ADAPTER_SIG + FACTORY_SIG
+                        + "Ljava/lang/Object;" + SCRIPTABLE_SIG + ")V",
+                        ClassFileWriter.ACC_PUBLIC);
+        cfw.add(ByteCode.ALOAD_0);
+        cfw.addInvoke(ByteCode.INVOKESPECIAL, "java/lang/Object",
+                      "<init>", "()V");
+        cfw.add(ByteCode.ALOAD_0);
+        cfw.add(ByteCode.ALOAD_1);
+        cfw.add(ByteCode.PUTFIELD, adapterName, "adapter", ADAPTER_SIG);
+        cfw.add(ByteCode.ALOAD_0);
+        cfw.add(ByteCode.ALOAD_2);
+        cfw.add(ByteCode.PUTFIELD, adapterName, "factory", FACTORY_SIG);
+        cfw.add(ByteCode.ALOAD_0);
+        cfw.add(ByteCode.ALOAD_3);
+        cfw.add(ByteCode.PUTFIELD, adapterName, "target",
+                "Ljava/lang/Object;");
+        cfw.add(ByteCode.ALOAD_0);
+        cfw.add(ByteCode.ALOAD, 4);
+        cfw.add(ByteCode.PUTFIELD, adapterName, "topScope", SCRIPTABLE_SIG);
+        cfw.add(ByteCode.RETURN);
+        cfw.stopMethod((short)5);
+    }
+
+    /**
+     * Generates equals, hashCode and toString with the same semantics
+     * the reflection proxy uses for them.
+     */
+    private static void generateObjectMethods(ClassFileWriter cfw,
+                                              String adapterName)
+    {
+        cfw.startMethod("equals", "(Ljava/lang/Object;)Z",
+                        ClassFileWriter.ACC_PUBLIC);
+        int notEqual = cfw.acquireLabel();
+        cfw.add(ByteCode.ALOAD_0);
+        cfw.add(ByteCode.ALOAD_1);
+        cfw.add(ByteCode.IF_ACMPNE, notEqual);
+        cfw.add(ByteCode.ICONST_1);
+        cfw.add(ByteCode.IRETURN);
+        cfw.markLabel(notEqual);
+        cfw.add(ByteCode.ICONST_0);
+        cfw.add(ByteCode.IRETURN);
+        cfw.stopMethod((short)2);
+
+        cfw.startMethod("hashCode", "()I", ClassFileWriter.ACC_PUBLIC);
+        cfw.add(ByteCode.ALOAD_0);
+        cfw.add(ByteCode.GETFIELD, adapterName, "target",
+                "Ljava/lang/Object;");
+        cfw.addInvoke(ByteCode.INVOKEVIRTUAL, "java/lang/Object",
+                      "hashCode", "()I");
+        cfw.add(ByteCode.IRETURN);
+        cfw.stopMethod((short)1);
+
+        cfw.startMethod("toString", "()Ljava/lang/String;",
+                        ClassFileWriter.ACC_PUBLIC);
+        cfw.add(ByteCode.NEW, "java/lang/StringBuilder");
+        cfw.add(ByteCode.DUP);
+        cfw.addPush("Proxy[");
+        cfw.addInvoke(ByteCode.INVOKESPECIAL, "java/lang/StringBuilder",
+                      "<init>", "(Ljava/lang/String;)V");
+        cfw.add(ByteCode.ALOAD_0);
+        cfw.add(ByteCode.GETFIELD, adapterName, "target",
+                "Ljava/lang/Object;");
+        cfw.addInvoke(ByteCode.INVOKEVIRTUAL, "java/lang/Object",
+                      "toString", "()Ljava/lang/String;");
+        cfw.addInvoke(ByteCode.INVOKEVIRTUAL, "java/lang/StringBuilder",
+                      "append",
+                      "(Ljava/lang/String;)Ljava/lang/StringBuilder;");
+        cfw.addPush("]");
+        cfw.addInvoke(ByteCode.INVOKEVIRTUAL, "java/lang/StringBuilder",
+                      "append",
+                      "(Ljava/lang/String;)Ljava/lang/StringBuilder;");
+        cfw.addInvoke(ByteCode.INVOKEVIRTUAL, "java/lang/StringBuilder",
+                      "toString", "()Ljava/lang/String;");
+        cfw.add(ByteCode.ARETURN);
+        cfw.stopMethod((short)1);
+    }
+
+    private static void generateMethod(ClassFileWriter cfw,
+                                       String adapterName, Method method,
+                                       String methodSignature,
+                                       int paramsEnd, int methodIndex)
+    {
+        cfw.startMethod(method.getName(), methodSignature,
+                        ClassFileWriter.ACC_PUBLIC);
+
+        cfw.add(ByteCode.ALOAD_0);
+        cfw.add(ByteCode.GETFIELD, adapterName, "adapter", ADAPTER_SIG);
+        cfw.add(ByteCode.ALOAD_0);
+        cfw.add(ByteCode.GETFIELD, adapterName, "factory", FACTORY_SIG);
+        cfw.add(ByteCode.ALOAD_0);
+        cfw.add(ByteCode.GETFIELD, adapterName, "target",
+                "Ljava/lang/Object;");
+        cfw.add(ByteCode.ALOAD_0);
+        cfw.add(ByteCode.GETFIELD, adapterName, "topScope", SCRIPTABLE_SIG);
+        cfw.add(ByteCode.ALOAD_0);
+        cfw.addPush(methodIndex);
+
+        Class<?>[] argTypes = method.getParameterTypes();
+        if (argTypes.length == 0) {
+            cfw.add(ByteCode.ACONST_NULL);
+        } else {
+            cfw.addPush(argTypes.length);
+            cfw.add(ByteCode.ANEWARRAY, "java/lang/Object");
+            int paramOffset = 1;
+            for (int i = 0; i != argTypes.length; ++i) {
+                cfw.add(ByteCode.DUP);
+                cfw.addPush(i);
+                paramOffset += generateBoxArg(cfw, paramOffset, argTypes[i]);
+                cfw.add(ByteCode.AASTORE);
+            }
+        }
+
+        cfw.addInvoke(ByteCode.INVOKEVIRTUAL,
+                      "org/mozilla/javascript/InterfaceAdapter",
+                      "invoke",
+                      "(" + FACTORY_SIG
+                      + "Ljava/lang/Object;"
+                      + SCRIPTABLE_SIG
+                      + "Ljava/lang/Object;"
+                      + "I"
+                      + "[Ljava/lang/Object;"
+                      + ")Ljava/lang/Object;");
+
+        generateUnboxResult(cfw, method.getReturnType());
+        cfw.stopMethod((short)paramsEnd);
+    }
+
+    /**
+     * Generates code to box Java argument the same way reflection does for
+     * {@link java.lang.reflect.InvocationHandler}, leaving the boxed object
+     * on the top of the stack.
+     */
+    private static int generateBoxArg(ClassFileWriter cfw, int paramOffset,
+                                      Class<?> argType)
+    {
+        if (!argType.isPrimitive()) {
+            cfw.addALoad(paramOffset);
+            return 1;
+        }
+        String boxName;
+        String sig;
+        int size = 1;
+        if (argType == Boolean.TYPE) {
+            cfw.addILoad(paramOffset);
+            boxName = "java/lang/Boolean";
+            sig = "(Z)";
+        } else if (argType == Character.TYPE) {
+            cfw.addILoad(paramOffset);
+            boxName = "java/lang/Character";
+            sig = "(C)";
+        } else if (argType == Byte.TYPE) {
+            cfw.addILoad(paramOffset);
+            boxName = "java/lang/Byte";
+            sig = "(B)";
+        } else if (argType == Short.TYPE) {
+            cfw.addILoad(paramOffset);
+            boxName = "java/lang/Short";
+            sig = "(S)";
+        } else if (argType == Integer.TYPE) {
+            cfw.addILoad(paramOffset);
+            boxName = "java/lang/Integer";
+            sig = "(I)";
+        } else if (argType == Long.TYPE) {
+            cfw.addLLoad(paramOffset);
+            boxName = "java/lang/Long";
+            sig = "(J)";
+            size = 2;
+        } else if (argType == Float.TYPE) {
+            cfw.addFLoad(paramOffset);
+            boxName = "java/lang/Float";
+            sig = "(F)";
+        } else if (argType == Double.TYPE) {
+            cfw.addDLoad(paramOffset);
+            boxName = "java/lang/Double";
+            sig = "(D)";
+            size = 2;
+        } else {
+            throw Kit.codeBug();
+        }
+        cfw.addInvoke(ByteCode.INVOKESTATIC, boxName, "valueOf",
+                      sig + "L" + boxName + ";");
+        return size;
+    }
+
+    /**
+     * Generates code to convert the already coerced result of
+     * {@link #invoke(ContextFactory, Object, Scriptable, Object, int,
+     * Object[])} to the return type and the appropriate RETURN bytecode.
+     */
+    private static void generateUnboxResult(ClassFileWriter cfw,
+                                            Class<?> retType)
     {
-        this.proxyHelper
-            = VMBridge.instance.getInterfaceProxyHelper(
-                cf, new Class[] { cl });
+        if (retType == Void.TYPE) {
+            cfw.add(ByteCode.POP);
+            cfw.add(ByteCode.RETURN);
+        } else if (retType == Boolean.TYPE) {
+            cfw.add(ByteCode.CHECKCAST, "java/lang/Boolean");
+            cfw.addInvoke(ByteCode.INVOKEVIRTUAL, "java/lang/Boolean",
+                          "booleanValue", "()Z");
+            cfw.add(ByteCode.IRETURN);
+        } else if (retType == Character.TYPE) {
+            cfw.add(ByteCode.CHECKCAST, "java/lang/Character");
+            cfw.addInvoke(ByteCode.INVOKEVIRTUAL, "java/lang/Character",
+                          "charValue", "()C");
+            cfw.add(ByteCode.IRETURN);
+        } else if (retType.isPrimitive()) {
+            cfw.add(ByteCode.CHECKCAST, "java/lang/Number");
+            if (retType == Long.TYPE) {
+                cfw.addInvoke(ByteCode.INVOKEVIRTUAL, "java/lang/Number",
+                              "longValue", "()J");
+                cfw.add(ByteCode.LRETURN);
+            } else if (retType == Float.TYPE) {
+                cfw.addInvoke(ByteCode.INVOKEVIRTUAL, "java/lang/Number",
+                              "floatValue", "()F");
+                cfw.add(ByteCode.FRETURN);
+            } else if (retType == Double.TYPE) {
+                cfw.addInvoke(ByteCode.INVOKEVIRTUAL, "java/lang/Number",
+                              "doubleValue", "()D");
+                cfw.add(ByteCode.DRETURN);
+            } else {
+                String name = retType.getName();
+                cfw.addInvoke(ByteCode.INVOKEVIRTUAL, "java/lang/Number",
+                              name + "Value",
+                              "()" + Character.toUpperCase(name.charAt(0)));
+                cfw.add(ByteCode.IRETURN);
+            }
+        } else {
+            cfw.add(ByteCode.CHECKCAST, retType.getName());
+            cfw.add(ByteCode.ARETURN);
+        }
     }
 
     public Object invoke(ContextFactory cf,
@@ -86,6 +520,26 @@ public class InterfaceAdapter
         return cf.call(action);
     }
 
+    /**
+     * Entry point for generated adapter classes. Unlike the reflection
+     * proxy path this avoids creating a new {@link ContextAction} when
+     * a Context is already associated with the current thread.
+     */
+    public Object invoke(ContextFactory cf,
+                         Object target,
+                         Scriptable topScope,
+                         Object thisObject,
+                         int methodIndex,
+                         Object[] args)
+    {
+        Method method = methods[methodIndex];
+        Context cx = Context.getCurrentContext();
+        if (cx != null) {
+            return invokeImpl(cx, target, topScope, thisObject, method, args);
+        }
+        return invoke(cf, target, topScope, thisObject, method, args);
+    }
+
     Object invokeImpl(Context cx,
                       Object target,
                       Scriptable topScope,
@@ -143,4 +597,11 @@ public class InterfaceAdapter
         }
         return result;
     }
+
+    private static final String ADAPTER_SIG =
+        "Lorg/mozilla/javascript/InterfaceAdapter;";
+    private static final String FACTORY_SIG =
+        "Lorg/mozilla/javascript/ContextFactory;";
+    private static final String SCRIPTABLE_SIG =
+        "Lorg/mozilla/javascript/Scriptable;";
 }
@@ -6,6 +6,7 @@
 
 package org.mozilla.javascript;
 
+import org.mozilla.javascript.ast.FunctionNode;
 import org.mozilla.javascript.debug.DebuggableScript;
 
 final class InterpretedFunction extends NativeFunction implements Script
@@ -134,6 +135,32 @@ final class InterpretedFunction extends NativeFunction implements Script
         return Interpreter.getEncodedSource(idata);
     }
 
+    @Override
+    String decompileRawSource(int flags)
+    {
+        InterpreterData data = idata;
+        if (data.rawSource == null
+            || (data.encodedSource == null && data.compressedSource == null))
+        {
+            // Source is not retained unless generating source
+            return null;
+        }
+        if ((flags & Decompiler.ONLY_BODY_FLAG) != 0
+            && data.itsFunctionType != 0)
+        {
+            return data.rawSource.substring(data.rawBodyStart + 1,
+                                            data.rawSourceEnd - 1);
+        }
+        String source = data.rawSource.substring(data.rawSourceStart,
+                                                 data.rawSourceEnd);
+        if ((flags & Decompiler.TO_SOURCE_FLAG) != 0
+            && data.itsFunctionType == FunctionNode.FUNCTION_EXPRESSION)
+        {
+            source = "(" + source + ")";
+        }
+        return source;
+    }
+
     @Override
     public DebuggableScript getDebuggableView()
     {
@@ -159,21 +186,30 @@ final class InterpretedFunction extends NativeFunction implements Script
         return idata.argCount;
     }
 
+    @Override
+    protected int getNumericCompareOrder()
+    {
+        return idata.itsNumericCompareOrder;
+    }
+
     @Override
     protected int getParamAndVarCount()
     {
+        idata.ensureCompiled();
         return idata.argNames.length;
     }
 
     @Override
     protected String getParamOrVarName(int index)
     {
+        idata.ensureCompiled();
         return idata.argNames[index];
     }
 
     @Override
     protected boolean getParamOrVarConst(int index)
     {
+        idata.ensureCompiled();
         return idata.argIsConst[index];
     }
 }
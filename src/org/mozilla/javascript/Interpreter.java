@@ -6,10 +6,14 @@
 
 package org.mozilla.javascript;
 
+import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.io.Serializable;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import org.mozilla.javascript.ast.FunctionNode;
 import org.mozilla.javascript.ast.ScriptNode;
@@ -221,7 +225,7 @@ public final class Interpreter extends Icode implements Evaluator
                                                   staticSecurityDomain);
     }
 
-    private static int getShort(byte[] iCode, int pc) {
+    static int getShort(byte[] iCode, int pc) {
         return (iCode[pc] << 8) | (iCode[pc + 1] & 0xFF);
     }
 
@@ -488,7 +492,7 @@ public final class Interpreter extends Icode implements Evaluator
         out.flush();
     }
 
-    private static int bytecodeSpan(int bytecode)
+    static int bytecodeSpan(int bytecode)
     {
         switch (bytecode) {
             case Token.THROW :
@@ -774,12 +778,95 @@ public final class Interpreter extends Icode implements Evaluator
     static String getEncodedSource(InterpreterData idata)
     {
         if (idata.encodedSource == null) {
-            return null;
+            if (idata.compressedSource == null) {
+                return null;
+            }
+            return inflateSource(idata.compressedSource,
+                                 idata.encodedSourceEnd)
+                .substring(idata.encodedSourceStart);
         }
         return idata.encodedSource.substring(idata.encodedSourceStart,
                                              idata.encodedSourceEnd);
     }
 
+    /**
+     * Compresses an encoded source. Characters below 0xFF, which make up
+     * nearly all of it, take a single byte before compression, and others
+     * 0xFF followed by two bytes.
+     */
+    static byte[] compressSource(String encodedSource)
+    {
+        int length = encodedSource.length();
+        byte[] bytes = new byte[length * 3];
+        int n = 0;
+        for (int i = 0; i != length; ++i) {
+            char c = encodedSource.charAt(i);
+            if (c < 0xFF) {
+                bytes[n++] = (byte) c;
+            } else {
+                bytes[n++] = (byte) 0xFF;
+                bytes[n++] = (byte) (c >>> 8);
+                bytes[n++] = (byte) c;
+            }
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes, 0, n);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(n / 4 + 16);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Returns the first {@code length} characters of the encoded source
+     * that {@link #compressSource(String)} compressed.
+     */
+    static String inflateSource(byte[] compressedSource, int length)
+    {
+        char[] chars = new char[length];
+        byte[] buffer = new byte[4096];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressedSource);
+            int i = 0, pending = 0, highByte = 0;
+            while (i != length) {
+                int count = inflater.inflate(buffer);
+                if (count == 0) {
+                    // the source is shorter than length
+                    throw Kit.codeBug();
+                }
+                for (int k = 0; k != count && i != length; ++k) {
+                    int b = buffer[k] & 0xFF;
+                    if (pending == 0) {
+                        if (b == 0xFF) {
+                            pending = 2;
+                        } else {
+                            chars[i++] = (char) b;
+                        }
+                    } else if (pending == 2) {
+                        highByte = b;
+                        pending = 1;
+                    } else {
+                        chars[i++] = (char) ((highByte << 8) | b);
+                        pending = 0;
+                    }
+                }
+            }
+        } catch (DataFormatException e) {
+            throw Kit.initCause(new IllegalStateException(), e);
+        } finally {
+            inflater.end();
+        }
+        return new String(chars);
+    }
+
     private static void initFunction(Context cx, Scriptable scope,
                                      InterpretedFunction parent, int index)
     {
@@ -2733,6 +2820,7 @@ switch (op) {
                                   CallFrame parentFrame, CallFrame frame)
     {
         InterpreterData idata = fnOrScript.idata;
+        idata.ensureCompiled();
 
         boolean useActivation = idata.itsNeedsActivation;
         DebugFrame debuggerFrame = null;
@@ -34,6 +34,7 @@ final class InterpreterData implements Serializable, DebuggableScript
         this.languageVersion = parent.languageVersion;
         this.itsSourceFile = parent.itsSourceFile;
         this.encodedSource = parent.encodedSource;
+        this.compressedSource = parent.compressedSource;
         this.isStrict = parent.isStrict;
         init();
     }
@@ -48,6 +49,7 @@ final class InterpreterData implements Serializable, DebuggableScript
     String itsSourceFile;
     boolean itsNeedsActivation;
     int itsFunctionType;
+    int itsNumericCompareOrder;
 
     String[] itsStringTable;
     double[] itsDoubleTable;
@@ -73,6 +75,9 @@ final class InterpreterData implements Serializable, DebuggableScript
     String encodedSource;
     int encodedSourceStart;
     int encodedSourceEnd;
+    // encodedSource compressed by Interpreter.compressSource() when
+    // compiled with FEATURE_COMPRESSED_SOURCE, encodedSource is null then
+    byte[] compressedSource;
 
     int languageVersion;
 
@@ -89,6 +94,65 @@ final class InterpreterData implements Serializable, DebuggableScript
 
     boolean evalScriptFlag; // true if script corresponds to eval() code
 
+    // Source text the code was compiled from when compiled with lazy
+    // function compilation, null otherwise
+    String rawSource;
+    int rawSourceStart;
+    int rawSourceEnd;
+    int rawBodyStart;
+
+    // Non-null while this is a stub for a function whose body has not
+    // been compiled yet
+    volatile CodeGenerator.LazyFunction lazyFunction;
+
+    /**
+     * Compiles the body of this function if it was deferred until the
+     * first call.
+     */
+    void ensureCompiled()
+    {
+        if (lazyFunction != null) {
+            compileLazily();
+        }
+    }
+
+    private synchronized void compileLazily()
+    {
+        CodeGenerator.LazyFunction lazy = lazyFunction;
+        if (lazy == null) {
+            return;
+        }
+        InterpreterData data = lazy.compile(this);
+        itsNeedsActivation = data.itsNeedsActivation;
+        itsStringTable = data.itsStringTable;
+        itsDoubleTable = data.itsDoubleTable;
+        itsNestedFunctions = data.itsNestedFunctions;
+        if (itsNestedFunctions != null) {
+            for (InterpreterData nested : itsNestedFunctions) {
+                nested.parentData = this;
+            }
+        }
+        itsRegExpLiterals = data.itsRegExpLiterals;
+        itsICode = data.itsICode;
+        itsExceptionTable = data.itsExceptionTable;
+        itsMaxVars = data.itsMaxVars;
+        itsMaxLocals = data.itsMaxLocals;
+        itsMaxStack = data.itsMaxStack;
+        itsMaxFrameArray = data.itsMaxFrameArray;
+        argNames = data.argNames;
+        argIsConst = data.argIsConst;
+        argCount = data.argCount;
+        itsMaxCalleeArgs = data.itsMaxCalleeArgs;
+        encodedSource = data.encodedSource;
+        compressedSource = data.compressedSource;
+        encodedSourceStart = data.encodedSourceStart;
+        encodedSourceEnd = data.encodedSourceEnd;
+        literalIds = data.literalIds;
+        longJumps = data.longJumps;
+        firstLinePC = data.firstLinePC;
+        lazyFunction = null;
+    }
+
     public boolean isTopLevel()
     {
         return topLevel;
@@ -111,16 +175,19 @@ final class InterpreterData implements Serializable, DebuggableScript
 
     public int getParamAndVarCount()
     {
+        ensureCompiled();
         return argNames.length;
     }
 
     public String getParamOrVarName(int index)
     {
+        ensureCompiled();
         return argNames[index];
     }
 
     public boolean getParamOrVarConst(int index)
     {
+        ensureCompiled();
         return argIsConst[index];
     }
 
@@ -136,16 +203,19 @@ final class InterpreterData implements Serializable, DebuggableScript
 
     public int[] getLineNumbers()
     {
+        ensureCompiled();
         return Interpreter.getLineNumbers(this);
     }
 
     public int getFunctionCount()
     {
+        ensureCompiled();
         return (itsNestedFunctions == null) ? 0 : itsNestedFunctions.length;
     }
 
     public DebuggableScript getFunction(int index)
     {
+        ensureCompiled();
         return itsNestedFunctions[index];
     }
 
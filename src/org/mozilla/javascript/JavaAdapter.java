@@ -64,6 +64,31 @@ public final class JavaAdapter implements IdFunctionCall
         {
             return (superClass.hashCode() + Arrays.hashCode(interfaces)) ^ names.size();
         }
+
+        /**
+         * Returns a description of the signature that, unlike
+         * {@link #hashCode()}, is stable across JVM runs. Function names
+         * are sorted so the result does not depend on property order.
+         */
+        String toStableString()
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append(superClass.getName());
+            for (Class<?> c : interfaces) {
+                sb.append(',').append(c.getName());
+            }
+            Object[] keys = names.getKeys();
+            String[] sorted = new String[keys.length];
+            for (int i = 0; i != keys.length; ++i) {
+                sorted[i] = (String)keys[i];
+            }
+            Arrays.sort(sorted);
+            for (String name : sorted) {
+                sb.append(';').append(name).append('/')
+                  .append(names.get(name, 0));
+            }
+            return sb.toString();
+        }
     }
 
     public static void init(Context cx, Scriptable scope, boolean sealed)
@@ -326,11 +351,20 @@ public final class JavaAdapter implements IdFunctionCall
         sig = new JavaAdapterSignature(superClass, interfaces, names);
         Class<?> adapterClass = generated.get(sig);
         if (adapterClass == null) {
-            String adapterName = "adapter" + cache.newClassSerialNumber();
-            byte[] code = createAdapterCode(names, adapterName,
-                                            superClass, interfaces, null);
-
-            adapterClass = loadAdapterClass(adapterName, code);
+            File codeDir = cache.getAdapterCodeDirectory();
+            if (codeDir != null) {
+                adapterClass = loadCachedAdapterClass(codeDir, sig);
+            }
+            if (adapterClass == null) {
+                String adapterName = "adapter" + cache.newClassSerialNumber();
+                byte[] code = createAdapterCode(names, adapterName,
+                                                superClass, interfaces, null);
+
+                adapterClass = loadAdapterClass(adapterName, code);
+                if (codeDir != null) {
+                    storeCachedAdapterCode(codeDir, sig, adapterName, code);
+                }
+            }
             if (cache.isCachingEnabled()) {
                 generated.put(sig, adapterClass);
             }
@@ -338,6 +372,184 @@ public final class JavaAdapter implements IdFunctionCall
         return adapterClass;
     }
 
+    /**
+     * Returns the file used to store the generated code for the given
+     * signature in the adapter code directory. The file name is a digest
+     * of the signature and the engine version, so it is the same for
+     * every JVM run.
+     */
+    private static File getCachedAdapterFile(File codeDir,
+                                             String stableSignature)
+    {
+        return new File(codeDir,
+                        "adapter-" + digest(stableSignature) + ".class");
+    }
+
+    /**
+     * Returns the hex encoded SHA-1 digest of the UTF-8 bytes of the string.
+     */
+    private static String digest(String s)
+    {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw Kit.initCause(new IllegalStateException(), ex);
+        }
+        byte[] digest;
+        try {
+            digest = md.digest(s.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException ex) {
+            throw Kit.initCause(new IllegalStateException(), ex);
+        }
+        StringBuilder sb = new StringBuilder(2 * digest.length);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a digest of the constructors and methods of the superclass
+     * and interfaces the generated code is based on. Class names alone
+     * do not identify the code, as a newer version of a library may add
+     * abstract methods or change signatures without renaming anything.
+     */
+    private static String getMembersDigest(JavaAdapterSignature sig)
+    {
+        ArrayList<String> members = new ArrayList<String>();
+        for (Constructor<?> ctor : sig.superClass.getDeclaredConstructors()) {
+            int mod = ctor.getModifiers();
+            if (Modifier.isPublic(mod) || Modifier.isProtected(mod)) {
+                StringBuilder sb = new StringBuilder("<init>");
+                appendMethodSignature(ctor.getParameterTypes(), Void.TYPE, sb);
+                members.add(sb.toString());
+            }
+        }
+        for (Method method : getOverridableMethods(sig.superClass)) {
+            members.add(getMemberKey(method));
+        }
+        for (Class<?> intf : sig.interfaces) {
+            for (Method method : intf.getMethods()) {
+                members.add(intf.getName() + '.' + getMemberKey(method));
+            }
+        }
+        Collections.sort(members);
+        StringBuilder sb = new StringBuilder();
+        for (String member : members) {
+            sb.append(member).append(';');
+        }
+        return digest(sb.toString());
+    }
+
+    private static String getMemberKey(Method method)
+    {
+        return method.getName()
+               + getMethodSignature(method, method.getParameterTypes())
+               + '/' + method.getModifiers();
+    }
+
+    private static String getCacheSignature(JavaAdapterSignature sig)
+    {
+        String version = Context.getContext().getImplementationVersion();
+        return ADAPTER_CODE_FORMAT + "|" + version + "|"
+               + sig.toStableString() + "|" + getMembersDigest(sig);
+    }
+
+    /**
+     * Loads adapter class previously stored by
+     * {@link #storeCachedAdapterCode}. Returns null if there is no stored
+     * code for the signature, the stored signature does not match or the
+     * code can not be read or defined.
+     */
+    private static Class<?> loadCachedAdapterClass(File codeDir,
+                                                   JavaAdapterSignature sig)
+    {
+        String cacheSig = getCacheSignature(sig);
+        File file = getCachedAdapterFile(codeDir, cacheSig);
+        if (!file.isFile()) {
+            return null;
+        }
+        String adapterName;
+        byte[] code;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+            if (!cacheSig.equals(in.readUTF())) {
+                return null;
+            }
+            adapterName = in.readUTF();
+            code = new byte[in.readInt()];
+            in.readFully(code);
+        } catch (IOException ex) {
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    // ignore
+                }
+            }
+        }
+        Class<?> adapterClass;
+        try {
+            adapterClass = loadAdapterClass(adapterName, code);
+        } catch (LinkageError ex) {
+            return null;
+        }
+        if (adapterClass.getSuperclass() != sig.superClass
+            || !Arrays.equals(adapterClass.getInterfaces(), sig.interfaces))
+        {
+            return null;
+        }
+        return adapterClass;
+    }
+
+    /**
+     * Stores generated adapter code in the adapter code directory. The
+     * cache is only an optimization, so I/O errors are ignored. The file
+     * is written under a temporary name first so concurrent readers never
+     * see partially written code.
+     */
+    private static void storeCachedAdapterCode(File codeDir,
+                                               JavaAdapterSignature sig,
+                                               String adapterName,
+                                               byte[] code)
+    {
+        String cacheSig = getCacheSignature(sig);
+        File file = getCachedAdapterFile(codeDir, cacheSig);
+        File tmp = null;
+        try {
+            codeDir.mkdirs();
+            tmp = File.createTempFile("adapter", ".tmp", codeDir);
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeUTF(cacheSig);
+                out.writeUTF(adapterName);
+                out.writeInt(code.length);
+                out.write(code);
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                tmp.renameTo(file);
+            }
+        } catch (IOException ex) {
+            // ignore
+        } catch (SecurityException ex) {
+            // ignore
+        } finally {
+            if (tmp != null && tmp.exists()) {
+                tmp.delete();
+            }
+        }
+    }
+
     public static byte[] createAdapterCode(ObjToIntMap functionNames,
                                            String adapterName,
                                            Class<?> superClass,
@@ -1190,6 +1402,13 @@ public final class JavaAdapter implements IdFunctionCall
         return array;
     }
 
+    /**
+     * Version of the adapter code file format and of the code generated
+     * by {@link #createAdapterCode}. Increment when either changes so
+     * stale adapter code directories are ignored.
+     */
+    private static final int ADAPTER_CODE_FORMAT = 1;
+
     private static final Object FTAG = "JavaAdapter";
     private static final int Id_JavaAdapter = 1;
 }
@@ -0,0 +1,131 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * Cache of wrappers created by {@link WrapFactory} for Java objects, looked
+ * up by identity of the wrapped object, its top-level scope and static type.
+ * <p>
+ * The cache only holds weak references to the wrappers. Since a wrapper
+ * strongly refers to the Java object it wraps, neither the wrapper nor the
+ * Java object is kept alive by the cache. Entries of collected wrappers are
+ * purged on subsequent updates. Lookups do not allocate.
+ *
+ * @see WrapFactory#setJavaObjectCacheEnabled(boolean)
+ */
+final class JavaObjectWrapperCache
+{
+    private static final class Entry extends WeakReference<Scriptable>
+    {
+        Entry(Scriptable wrapper, int hash, Scriptable topScope,
+              Class<?> staticType, ReferenceQueue<Scriptable> queue)
+        {
+            super(wrapper, queue);
+            this.hash = hash;
+            this.topScope = topScope;
+            this.staticType = staticType;
+        }
+
+        final int hash;
+        final Scriptable topScope;
+        final Class<?> staticType;
+        Entry next;
+    }
+
+    synchronized Scriptable get(Object javaObject, Scriptable topScope,
+                                Class<?> staticType)
+    {
+        int hash = System.identityHashCode(javaObject);
+        for (Entry e = table[hash & (table.length - 1)]; e != null;
+             e = e.next)
+        {
+            if (e.hash == hash && e.topScope == topScope
+                && e.staticType == staticType)
+            {
+                Scriptable wrapper = e.get();
+                if (wrapper instanceof Wrapper
+                    && ((Wrapper) wrapper).unwrap() == javaObject)
+                {
+                    ++hits;
+                    return wrapper;
+                }
+            }
+        }
+        ++misses;
+        return null;
+    }
+
+    synchronized void put(Object javaObject, Scriptable topScope,
+                          Class<?> staticType, Scriptable wrapper)
+    {
+        expungeStaleEntries();
+        if (size >= table.length * 3 / 4) {
+            resize(table.length * 2);
+        }
+        int hash = System.identityHashCode(javaObject);
+        int index = hash & (table.length - 1);
+        Entry e = new Entry(wrapper, hash, topScope, staticType, queue);
+        e.next = table[index];
+        table[index] = e;
+        ++size;
+    }
+
+    synchronized long getHits()
+    {
+        return hits;
+    }
+
+    synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    private void expungeStaleEntries()
+    {
+        for (Object ref; (ref = queue.poll()) != null; ) {
+            Entry stale = (Entry) ref;
+            int index = stale.hash & (table.length - 1);
+            Entry prev = null;
+            for (Entry e = table[index]; e != null; prev = e, e = e.next) {
+                if (e == stale) {
+                    if (prev == null) {
+                        table[index] = e.next;
+                    } else {
+                        prev.next = e.next;
+                    }
+                    --size;
+                    break;
+                }
+            }
+        }
+    }
+
+    private void resize(int newCapacity)
+    {
+        Entry[] newTable = new Entry[newCapacity];
+        for (Entry head : table) {
+            for (Entry e = head; e != null; ) {
+                Entry next = e.next;
+                int index = e.hash & (newCapacity - 1);
+                e.next = newTable[index];
+                newTable[index] = e;
+                e = next;
+            }
+        }
+        table = newTable;
+    }
+
+    private final ReferenceQueue<Scriptable> queue =
+        new ReferenceQueue<Scriptable>();
+    private Entry[] table = new Entry[16];
+    private int size;
+    private long hits;
+    private long misses;
+}
@@ -10,6 +10,7 @@ import org.mozilla.javascript.regexp.NativeRegExp;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
@@ -353,23 +354,102 @@ public class NativeArray extends IdScriptableObject implements List
     @Override
     public Object get(int index, Scriptable start)
     {
+        if (sparse != null && 0 <= index) {
+            Object value = getSparseElem(index);
+            if (value != NOT_FOUND)
+                return value;
+        }
         if (!denseOnly && isGetterOrSetter(null, index, false))
             return super.get(index, start);
-        if (dense != null && 0 <= index && index < dense.length)
-            return dense[index];
+        if (dense != null && 0 <= index && index < dense.length - denseStart)
+            return dense[denseStart + index];
         return super.get(index, start);
     }
 
     @Override
     public boolean has(int index, Scriptable start)
     {
+        if (sparse != null && 0 <= index && getSparseElem(index) != NOT_FOUND)
+            return true;
         if (!denseOnly && isGetterOrSetter(null, index, false))
             return super.has(index, start);
-        if (dense != null && 0 <= index && index < dense.length)
-            return dense[index] != NOT_FOUND;
+        if (dense != null && 0 <= index && index < dense.length - denseStart)
+            return dense[denseStart + index] != NOT_FOUND;
         return super.has(index, start);
     }
 
+    private Object getSparseElem(int index)
+    {
+        Object value = sparse.getObject(index);
+        if (value == null && !sparse.has(index)) {
+            return NOT_FOUND;
+        }
+        return value;
+    }
+
+    /**
+     * Stores an element out of the dense storage unless a slot exists for
+     * the index, which then keeps its attributes, or the element would be
+     * a new property of an array that is not extensible.
+     * @return false if the element is left to the slots
+     */
+    private boolean putSparseElem(int index, Object value)
+    {
+        if (sparse == null) {
+            if (!isExtensible() || super.has(index, this)) {
+                return false;
+            }
+            sparse = new UintMap();
+        } else if (!sparse.has(index)) {
+            if (!isExtensible() || super.has(index, this)) {
+                return false;
+            }
+            sparseIndexes = null;
+        }
+        sparse.put(index, value);
+        return true;
+    }
+
+    private boolean removeSparseElem(int index)
+    {
+        if (!sparse.has(index)) {
+            return false;
+        }
+        sparse.remove(index);
+        sparseIndexes = null;
+        return true;
+    }
+
+    /**
+     * Removes the sparse elements at or above index.
+     */
+    private void removeSparseElems(long index)
+    {
+        int[] indexes = getSparseIndexes();
+        int i = indexes.length;
+        while (i > 0 && indexes[i - 1] >= index) {
+            sparse.remove(indexes[--i]);
+        }
+        if (i != indexes.length) {
+            sparseIndexes = Arrays.copyOf(indexes, i);
+        }
+    }
+
+    /**
+     * Returns the indexes of the sparse elements in ascending order. The
+     * result is kept until elements are added or removed.
+     */
+    private int[] getSparseIndexes()
+    {
+        int[] indexes = sparseIndexes;
+        if (indexes == null) {
+            indexes = sparse.getKeys();
+            Arrays.sort(indexes);
+            sparseIndexes = indexes;
+        }
+        return indexes;
+    }
+
     private static long toArrayIndex(Object id) {
         if (id instanceof String) {
             return toArrayIndex((String)id);
@@ -423,21 +503,55 @@ public class NativeArray extends IdScriptableObject implements List
 
     private boolean ensureCapacity(int capacity)
     {
-        if (capacity > dense.length) {
+        int used = dense.length - denseStart;
+        if (capacity > used) {
             if (capacity > MAX_PRE_GROW_SIZE) {
                 denseOnly = false;
                 return false;
             }
-            capacity = Math.max(capacity, (int)(dense.length * GROW_FACTOR));
+            if (denseStart != 0 && capacity <= dense.length / 2) {
+                // Reuse the space freed by shift, which leaves at least
+                // half of the array free for the following pushes
+                System.arraycopy(dense, denseStart, dense, 0, used);
+                Arrays.fill(dense, used, dense.length, Scriptable.NOT_FOUND);
+                denseStart = 0;
+                return true;
+            }
+            capacity = Math.max(capacity, (int)(used * GROW_FACTOR));
             Object[] newDense = new Object[capacity];
-            System.arraycopy(dense, 0, newDense, 0, dense.length);
-            Arrays.fill(newDense, dense.length, newDense.length,
+            System.arraycopy(dense, denseStart, newDense, 0, used);
+            Arrays.fill(newDense, used, newDense.length,
                         Scriptable.NOT_FOUND);
             dense = newDense;
+            denseStart = 0;
         }
         return true;
     }
 
+    /**
+     * Makes room for count elements in front of the first element, so that
+     * denseStart is at least count. The room left beyond the new elements
+     * grows with the array, which makes repeated unshift cheap.
+     */
+    private boolean ensureFrontCapacity(int count)
+    {
+        if (denseStart >= count) {
+            return true;
+        }
+        int used = dense.length - denseStart;
+        int gap = count + Math.max(DEFAULT_INITIAL_CAPACITY, (int)length / 2);
+        if (used > MAX_PRE_GROW_SIZE - gap) {
+            denseOnly = false;
+            return false;
+        }
+        Object[] newDense = new Object[gap + used];
+        Arrays.fill(newDense, 0, gap, Scriptable.NOT_FOUND);
+        System.arraycopy(dense, denseStart, newDense, gap, used);
+        dense = newDense;
+        denseStart = gap;
+        return true;
+    }
+
     @Override
     public void put(int index, Scriptable start, Object value)
     {
@@ -446,21 +560,31 @@ public class NativeArray extends IdScriptableObject implements List
         {
             if (!isExtensible() && this.length <= index) {
                 return;
-            } else if (index < dense.length) {
-                dense[index] = value;
+            } else if (index < dense.length - denseStart) {
+                dense[denseStart + index] = value;
                 if (this.length <= index)
                     this.length = (long)index + 1;
                 return;
-            } else if (denseOnly && index < dense.length * GROW_FACTOR &&
+            } else if (denseOnly &&
+                       index < (dense.length - denseStart) * GROW_FACTOR &&
                        ensureCapacity(index+1))
             {
-                dense[index] = value;
+                dense[denseStart + index] = value;
                 this.length = (long)index + 1;
                 return;
             } else {
                 denseOnly = false;
             }
         }
+        if (start == this && !isSealed() && 0 <= index &&
+            (dense == null || index >= dense.length - denseStart) &&
+            putSparseElem(index, value))
+        {
+            if ((lengthAttr & READONLY) == 0 && this.length <= index) {
+                this.length = (long)index + 1;
+            }
+            return;
+        }
         super.put(index, start, value);
         if (start == this && (lengthAttr & READONLY) == 0) {
             // only set the array length if given an array index (ECMA 15.4.0)
@@ -474,11 +598,13 @@ public class NativeArray extends IdScriptableObject implements List
     @Override
     public void delete(int index)
     {
-        if (dense != null && 0 <= index && index < dense.length &&
+        if (dense != null && 0 <= index && index < dense.length - denseStart &&
             !isSealed() && (denseOnly || !isGetterOrSetter(null, index, true)))
         {
-            dense[index] = NOT_FOUND;
-        } else {
+            dense[denseStart + index] = NOT_FOUND;
+        } else if (sparse == null || index < 0 || isSealed() ||
+                   !removeSparseElem(index))
+        {
             super.delete(index);
         }
     }
@@ -487,8 +613,26 @@ public class NativeArray extends IdScriptableObject implements List
     public Object[] getIds(boolean nonEnumerable, boolean getSymbols)
     {
         Object[] superIds = super.getIds(nonEnumerable, getSymbols);
+        if (sparse != null && !sparse.isEmpty()) {
+            // Sparse elements come after any dense ones
+            int[] indexes = getSparseIndexes();
+            Object[] ids = new Object[indexes.length + superIds.length];
+            for (int i = 0; i != indexes.length; ++i) {
+                ids[i] = Integer.valueOf(indexes[i]);
+            }
+            System.arraycopy(superIds, 0, ids, indexes.length,
+                             superIds.length);
+            for (Object id : superIds) {
+                if (isIndexId(id)) {
+                    // Put indexes of properties with attributes in order
+                    Arrays.sort(ids, INDEX_COMPARATOR);
+                    break;
+                }
+            }
+            superIds = ids;
+        }
         if (dense == null) { return superIds; }
-        int N = dense.length;
+        int N = dense.length - denseStart;
         long currentLength = length;
         if (N > currentLength) {
             N = (int)currentLength;
@@ -500,7 +644,7 @@ public class NativeArray extends IdScriptableObject implements List
         int presentCount = 0;
         for (int i = 0; i != N; ++i) {
             // Replace existing elements by their indexes
-            if (dense[i] != NOT_FOUND) {
+            if (dense[denseStart + i] != NOT_FOUND) {
                 ids[presentCount] = Integer.valueOf(i);
                 ++presentCount;
             }
@@ -515,6 +659,30 @@ public class NativeArray extends IdScriptableObject implements List
         return ids;
     }
 
+    private static boolean isIndexId(Object id)
+    {
+        return id instanceof Integer && ((Integer) id).intValue() >= 0;
+    }
+
+    /**
+     * Orders array indexes first, ascending, and keeps the order of other
+     * ids, among them negative integers, which are no array indexes.
+     */
+    private static final Comparator<Object> INDEX_COMPARATOR =
+        new Comparator<Object>() {
+            @Override
+            public int compare(Object o1, Object o2)
+            {
+                if (isIndexId(o1)) {
+                    if (isIndexId(o2)) {
+                        return ((Integer) o1).compareTo((Integer) o2);
+                    }
+                    return -1;
+                }
+                return isIndexId(o2) ? 1 : 0;
+            }
+        };
+
     public Integer[] getIndexIds() {
       Object[] ids = getIds();
       java.util.List<Integer> indices = new java.util.ArrayList<Integer>(ids.length);
@@ -552,8 +720,11 @@ public class NativeArray extends IdScriptableObject implements List
 
     @Override
     public int getAttributes(int index) {
-        if (dense != null && index >= 0 && index < dense.length
-                && dense[index] != NOT_FOUND) {
+        if (sparse != null && index >= 0 && getSparseElem(index) != NOT_FOUND) {
+            return EMPTY;
+        }
+        if (dense != null && index >= 0 && index < dense.length - denseStart
+                && dense[denseStart + index] != NOT_FOUND) {
             return EMPTY;
         }
         return super.getAttributes(index);
@@ -563,8 +734,16 @@ public class NativeArray extends IdScriptableObject implements List
     protected ScriptableObject getOwnPropertyDescriptor(Context cx, Object id) {
       if (dense != null) {
         int index = toDenseIndex(id);
-        if (0 <= index && index < dense.length && dense[index] != NOT_FOUND) {
-          Object value = dense[index];
+        if (0 <= index && index < dense.length - denseStart
+            && dense[denseStart + index] != NOT_FOUND) {
+          Object value = dense[denseStart + index];
+          return defaultIndexPropertyDescriptor(value);
+        }
+      }
+      if (sparse != null) {
+        int index = toDenseIndex(id);
+        Object value = index >= 0 ? getSparseElem(index) : NOT_FOUND;
+        if (value != NOT_FOUND) {
           return defaultIndexPropertyDescriptor(value);
         }
       }
@@ -577,11 +756,13 @@ public class NativeArray extends IdScriptableObject implements List
                                      boolean checkValid) {
       if (dense != null) {
         Object[] values = dense;
+        int start = denseStart;
         dense = null;
+        denseStart = 0;
         denseOnly = false;
-        for (int i = 0; i < values.length; i++) {
-          if (values[i] != NOT_FOUND) {
-            put(i, this, values[i]);
+        for (int i = 0; i < values.length - start; i++) {
+          if (values[start + i] != NOT_FOUND) {
+            put(i, this, values[start + i]);
           }
         }
       }
@@ -589,6 +770,14 @@ public class NativeArray extends IdScriptableObject implements List
       if (index >= length) {
         length = index + 1;
       }
+      if (sparse != null && 0 <= index && index < Integer.MAX_VALUE) {
+        // The property gets attributes, which only slots can hold
+        Object value = getSparseElem((int) index);
+        if (value != NOT_FOUND) {
+          removeSparseElem((int) index);
+          super.put((int) index, this, value);
+        }
+      }
       super.defineOwnProperty(cx, id, desc, checkValid);
     }
 
@@ -667,7 +856,8 @@ public class NativeArray extends IdScriptableObject implements List
         if (denseOnly) {
             if (longVal < length) {
                 // downcast okay because denseOnly
-                Arrays.fill(dense, (int) longVal, dense.length, NOT_FOUND);
+                Arrays.fill(dense, denseStart + (int) longVal, dense.length,
+                            NOT_FOUND);
                 length = longVal;
                 return;
             } else if (longVal < MAX_PRE_GROW_SIZE &&
@@ -681,6 +871,9 @@ public class NativeArray extends IdScriptableObject implements List
             }
         }
         if (longVal < length) {
+            if (sparse != null) {
+                removeSparseElems(longVal);
+            }
             // remove all properties between longVal and length
             if (length - longVal > 0x1000) {
                 // assume that the representation is sparse
@@ -775,6 +968,65 @@ public class NativeArray extends IdScriptableObject implements List
         }
     }
 
+    /**
+     * Returns the element at index if it is held in the dense storage of
+     * an array whose numeric properties all are, NOT_FOUND otherwise.
+     * The result stays valid when callbacks change the array between
+     * calls, as the storage is checked each time.
+     */
+    private Object getDenseElem(long index)
+    {
+        if (denseOnly && index < dense.length - denseStart) {
+            return dense[denseStart + (int) index];
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Returns a copy of the elements from begin to end of an array whose
+     * numeric properties all are in the dense storage, or null for other
+     * arrays. Missing elements are looked up on the prototype chain and
+     * are NOT_FOUND when absent there as well.
+     */
+    Object[] getDenseElements(int begin, int end)
+    {
+        if (!denseOnly || end > length) {
+            return null;
+        }
+        Object[] elements = new Object[end - begin];
+        System.arraycopy(dense, denseStart + begin, elements, 0, end - begin);
+        for (int i = 0; i != elements.length; i++) {
+            if (elements[i] == NOT_FOUND) {
+                elements[i] = ScriptableObject.getProperty(this, begin + i);
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Same as defineElem, but stores directly into the dense storage of
+     * an array when it has room for the index.
+     */
+    private static void defineDenseElem(Context cx, Scriptable target,
+                                        long index, Object value)
+    {
+        if (target instanceof NativeArray) {
+            NativeArray na = (NativeArray) target;
+            if (na.denseOnly && !na.isSealed() && na.isExtensible() &&
+                (index < na.dense.length - na.denseStart ||
+                 (index == na.length && index < Integer.MAX_VALUE &&
+                  na.ensureCapacity((int) index + 1))))
+            {
+                na.dense[na.denseStart + (int) index] = value;
+                if (na.length <= index) {
+                    na.length = index + 1;
+                }
+                return;
+            }
+        }
+        defineElem(cx, target, index, value);
+    }
+
     private static void setElem(Context cx, Scriptable target, long index,
                                 Object value)
     {
@@ -806,7 +1058,7 @@ public class NativeArray extends IdScriptableObject implements List
 
         long length = getLengthProperty(cx, thisObj);
 
-        StringBuilder result = new StringBuilder(256);
+        StringBuilder result = ScriptRuntime.takeStringBuilder(cx);
 
         // whether to return '4,unquoted,5' or '[4, "quoted", 5]'
         String separator;
@@ -889,7 +1141,7 @@ public class NativeArray extends IdScriptableObject implements List
             else
                 result.append(']');
         }
-        return result.toString();
+        return ScriptRuntime.releaseStringBuilder(cx, result);
     }
 
     /**
@@ -911,13 +1163,13 @@ public class NativeArray extends IdScriptableObject implements List
         if (thisObj instanceof NativeArray) {
             NativeArray na = (NativeArray) thisObj;
             if (na.denseOnly) {
-                StringBuilder sb = new StringBuilder();
+                StringBuilder sb = ScriptRuntime.takeStringBuilder(cx);
                 for (int i = 0; i < length; i++) {
                     if (i != 0) {
                         sb.append(separator);
                     }
-                    if (i < na.dense.length) {
-                        Object temp = na.dense[i];
+                    if (i < na.dense.length - na.denseStart) {
+                        Object temp = na.dense[na.denseStart + i];
                         if (temp != null && temp != Undefined.instance &&
                             temp != Scriptable.NOT_FOUND)
                         {
@@ -925,7 +1177,7 @@ public class NativeArray extends IdScriptableObject implements List
                         }
                     }
                 }
-                return sb.toString();
+                return ScriptRuntime.releaseStringBuilder(cx, sb);
             }
         }
         if (length == 0) {
@@ -942,7 +1194,8 @@ public class NativeArray extends IdScriptableObject implements List
             }
         }
         total_size += (length - 1) * separator.length();
-        StringBuilder sb = new StringBuilder(total_size);
+        StringBuilder sb = ScriptRuntime.takeStringBuilder(cx);
+        sb.ensureCapacity(total_size);
         for (int i = 0; i != length; i++) {
             if (i != 0) {
                 sb.append(separator);
@@ -953,7 +1206,7 @@ public class NativeArray extends IdScriptableObject implements List
                 sb.append(str);
             }
         }
-        return sb.toString();
+        return ScriptRuntime.releaseStringBuilder(cx, sb);
     }
 
     /**
@@ -965,7 +1218,8 @@ public class NativeArray extends IdScriptableObject implements List
         if (thisObj instanceof NativeArray) {
             NativeArray na = (NativeArray) thisObj;
             if (na.denseOnly) {
-                for (int i=0, j=((int)na.length)-1; i < j; i++,j--) {
+                int start = na.denseStart;
+                for (int i=start, j=start+((int)na.length)-1; i < j; i++,j--) {
                     Object temp = na.dense[i];
                     na.dense[i] = na.dense[j];
                     na.dense[j] = temp;
@@ -992,31 +1246,12 @@ public class NativeArray extends IdScriptableObject implements List
     private static Scriptable js_sort(final Context cx, final Scriptable scope,
             final Scriptable thisObj, final Object[] args)
     {
-        final Comparator<Object> comparator;
+        Callable jsCompareFunction = null;
+        Scriptable funThis = null;
         if (args.length > 0 && Undefined.instance != args[0]) {
-            final Callable jsCompareFunction = ScriptRuntime
-                    .getValueFunctionAndThis(args[0], cx);
-            final Scriptable funThis = ScriptRuntime.lastStoredScriptable(cx);
-            final Object[] cmpBuf = new Object[2]; // Buffer for cmp arguments
-            comparator = new ElementComparator(
-                new Comparator<Object>() {
-                  public int compare(final Object x, final Object y) {
-                    // This comparator is invoked only for non-undefined objects
-                    cmpBuf[0] = x;
-                    cmpBuf[1] = y;
-                    Object ret = jsCompareFunction.call(cx, scope, funThis,
-                        cmpBuf);
-                    final double d = ScriptRuntime.toNumber(ret);
-                    if (d < 0) {
-                      return -1;
-                    } else if (d > 0) {
-                      return +1;
-                    }
-                    return 0; // ??? double and 0???
-                  }
-                });
-        } else {
-            comparator = DEFAULT_COMPARATOR;
+            jsCompareFunction = ScriptRuntime.getValueFunctionAndThis(args[0],
+                                                                      cx);
+            funThis = ScriptRuntime.lastStoredScriptable(cx);
         }
 
         long llength = getLengthProperty(cx, thisObj);
@@ -1025,16 +1260,74 @@ public class NativeArray extends IdScriptableObject implements List
             throw Context.reportRuntimeError1(
                 "msg.arraylength.too.big", String.valueOf(llength));
         }
-        // copy the JS array into a working array, so it can be
-        // sorted cheaply.
-        final Object[] working = new Object[length];
+        // Copy the JS array into a working array, so it can be sorted
+        // cheaply. As per ECMA 22.1.3.25.1 undefined values go after all
+        // others and missing elements go to the very end, so only the
+        // remaining values are sorted.
+        NativeArray na = thisObj instanceof NativeArray
+                         ? (NativeArray) thisObj : null;
+        Object[] working = new Object[length];
+        int count = 0;
+        int undefinedCount = 0;
+        boolean allNumbers = true;
+        boolean allStrings = true;
         for (int i = 0; i != length; ++i) {
-            working[i] = getRawElem(thisObj, i);
+            Object elem = na != null ? na.getDenseElem(i) : NOT_FOUND;
+            if (elem == NOT_FOUND) {
+                elem = getRawElem(thisObj, i);
+            }
+            if (elem == Undefined.instance) {
+                undefinedCount++;
+            } else if (elem != NOT_FOUND) {
+                allNumbers &= elem instanceof Number;
+                allStrings &= elem instanceof String;
+                working[count++] = elem;
+            }
+        }
+        Object[] values = count == length
+                          ? working : Arrays.copyOf(working, count);
+
+        if (jsCompareFunction != null) {
+            Comparator<Object> comparator = null;
+            if (allNumbers && count >= MIN_NUMERIC_SORT_LENGTH) {
+                comparator = getNumericComparator(jsCompareFunction);
+            }
+            if (comparator == null) {
+                comparator = new FunctionComparator(cx, scope,
+                                                    jsCompareFunction,
+                                                    funThis);
+            }
+            Sorting.mergeSort(values, comparator);
+        } else if (allStrings) {
+            Sorting.mergeSort(values, STRING_COMPARATOR);
+        } else {
+            // Convert each value to its string key once, rather than at
+            // every comparison
+            Object[] keyed = new Object[count];
+            for (int i = 0; i != count; ++i) {
+                keyed[i] = new KeyedElement(
+                    ScriptRuntime.toString(values[i]), values[i]);
+            }
+            Sorting.mergeSort(keyed, KEYED_COMPARATOR);
+            for (int i = 0; i != count; ++i) {
+                values[i] = ((KeyedElement) keyed[i]).value;
+            }
         }
 
-        Sorting.hybridSort(working, comparator);
+        if (values != working) {
+            System.arraycopy(values, 0, working, 0, count);
+            Arrays.fill(working, count, count + undefinedCount,
+                        Undefined.instance);
+            Arrays.fill(working, count + undefinedCount, length, NOT_FOUND);
+        }
 
         // copy the working array back into thisObj
+        if (na != null && na.denseOnly && !na.isSealed() &&
+            na.length >= length)
+        {
+            System.arraycopy(working, 0, na.dense, na.denseStart, length);
+            return thisObj;
+        }
         for (int i = 0; i < length; ++i) {
             setRawElem(cx, thisObj, i, working[i]);
         }
@@ -1042,6 +1335,25 @@ public class NativeArray extends IdScriptableObject implements List
         return thisObj;
     }
 
+    /**
+     * Returns a comparator of numbers giving the same results as the
+     * given compare function when it is written as <code>(a, b) =&gt; a -
+     * b</code> or <code>(a, b) =&gt; b - a</code>, null otherwise.
+     */
+    private static Comparator<Object> getNumericComparator(Callable function)
+    {
+        if (!(function instanceof BaseFunction)) {
+            return null;
+        }
+        switch (((BaseFunction) function).getNumericCompareOrder()) {
+          case 1:
+            return NUMBER_COMPARATOR;
+          case -1:
+            return Collections.reverseOrder(NUMBER_COMPARATOR);
+        }
+        return null;
+    }
+
     private static Object js_push(Context cx, Scriptable thisObj,
                                   Object[] args)
     {
@@ -1051,7 +1363,7 @@ public class NativeArray extends IdScriptableObject implements List
                 na.ensureCapacity((int) na.length + args.length))
             {
                 for (int i = 0; i < args.length; i++) {
-                    na.dense[(int)na.length++] = args[i];
+                    na.dense[na.denseStart + (int)na.length++] = args[i];
                 }
                 return ScriptRuntime.wrapNumber(na.length);
             }
@@ -1086,8 +1398,9 @@ public class NativeArray extends IdScriptableObject implements List
             NativeArray na = (NativeArray) thisObj;
             if (na.denseOnly && na.length > 0) {
                 na.length--;
-                result = na.dense[(int)na.length];
-                na.dense[(int)na.length] = NOT_FOUND;
+                int index = na.denseStart + (int)na.length;
+                result = na.dense[index];
+                na.dense[index] = NOT_FOUND;
                 return result;
             }
         }
@@ -1118,9 +1431,11 @@ public class NativeArray extends IdScriptableObject implements List
             NativeArray na = (NativeArray) thisObj;
             if (na.denseOnly && na.length > 0) {
                 na.length--;
-                Object result = na.dense[0];
-                System.arraycopy(na.dense, 1, na.dense, 0, (int)na.length);
-                na.dense[(int)na.length] = NOT_FOUND;
+                Object result = na.dense[na.denseStart];
+                na.dense[na.denseStart] = NOT_FOUND;
+                // Elements past the length are all NOT_FOUND, so an empty
+                // array can start over at the front of its storage
+                na.denseStart = na.length == 0 ? 0 : na.denseStart + 1;
                 return result == NOT_FOUND ? Undefined.instance : result;
             }
         }
@@ -1158,14 +1473,12 @@ public class NativeArray extends IdScriptableObject implements List
     {
         if (thisObj instanceof NativeArray) {
             NativeArray na = (NativeArray) thisObj;
-            if (na.denseOnly &&
-                na.ensureCapacity((int)na.length + args.length))
+            if (na.denseOnly && na.length + args.length < Integer.MAX_VALUE &&
+                na.ensureFrontCapacity(args.length))
             {
-                System.arraycopy(na.dense, 0, na.dense, args.length,
-                                 (int) na.length);
-                for (int i = 0; i < args.length; i++) {
-                    na.dense[i] = args[i];
-                }
+                na.denseStart -= args.length;
+                System.arraycopy(args, 0, na.dense, na.denseStart,
+                                 args.length);
                 na.length += args.length;
                 return ScriptRuntime.wrapNumber(na.length);
             }
@@ -1253,7 +1566,8 @@ public class NativeArray extends IdScriptableObject implements List
                 if (denseMode) {
                     int intLen = (int) (end - begin);
                     Object[] copy = new Object[intLen];
-                    System.arraycopy(na.dense, (int) begin, copy, 0, intLen);
+                    System.arraycopy(na.dense, na.denseStart + (int) begin,
+                                     copy, 0, intLen);
                     result = cx.newArray(scope, copy);
                 } else {
                     Scriptable resultArray = cx.newArray(scope, 0);
@@ -1279,17 +1593,40 @@ public class NativeArray extends IdScriptableObject implements List
 
         /* Find the direction (up or down) to copy and make way for argv. */
         long delta = argc - count;
+        if (denseMode && length + delta < Integer.MAX_VALUE &&
+            na.denseOnly && begin < length - end &&
+            (delta <= 0 || na.ensureFrontCapacity((int) delta)))
+        {
+            // Fewer elements before the hole than after it: move those
+            int start = na.denseStart;
+            int newStart = (int) (start - delta);
+            System.arraycopy(na.dense, start, na.dense, newStart,
+                             (int) begin);
+            if (argc > 0) {
+                System.arraycopy(args, 2, na.dense, newStart + (int) begin,
+                                 argc);
+            }
+            if (delta < 0) {
+                Arrays.fill(na.dense, start, newStart, NOT_FOUND);
+            }
+            na.denseStart = newStart;
+            na.length = length + delta;
+            return result;
+        }
         if (denseMode && length + delta < Integer.MAX_VALUE &&
             na.ensureCapacity((int) (length + delta)))
         {
-            System.arraycopy(na.dense, (int) end, na.dense,
-                             (int) (begin + argc), (int) (length - end));
+            int start = na.denseStart;
+            System.arraycopy(na.dense, start + (int) end, na.dense,
+                             start + (int) (begin + argc),
+                             (int) (length - end));
             if (argc > 0) {
-                System.arraycopy(args, 2, na.dense, (int) begin, argc);
+                System.arraycopy(args, 2, na.dense, start + (int) begin,
+                                 argc);
             }
             if (delta < 0) {
-                Arrays.fill(na.dense, (int) (length + delta), (int) length,
-                            NOT_FOUND);
+                Arrays.fill(na.dense, start + (int) (length + delta),
+                            start + (int) length, NOT_FOUND);
             }
             na.length = length + delta;
             return result;
@@ -1349,18 +1686,21 @@ public class NativeArray extends IdScriptableObject implements List
                     }
                 }
                 if (canUseDense && denseResult.ensureCapacity(length)) {
-                    System.arraycopy(denseThis.dense, 0, denseResult.dense,
-                                     0, (int) denseThis.length);
+                    System.arraycopy(denseThis.dense, denseThis.denseStart,
+                                     denseResult.dense, denseResult.denseStart,
+                                     (int) denseThis.length);
                     int cursor = (int) denseThis.length;
                     for (int i = 0; i < args.length && canUseDense; i++) {
                         if (args[i] instanceof NativeArray) {
                             NativeArray arg = (NativeArray) args[i];
-                            System.arraycopy(arg.dense, 0,
-                                    denseResult.dense, cursor,
+                            System.arraycopy(arg.dense, arg.denseStart,
+                                    denseResult.dense,
+                                    denseResult.denseStart + cursor,
                                     (int)arg.length);
                             cursor += (int)arg.length;
                         } else {
-                            denseResult.dense[cursor++] = args[i];
+                            denseResult.dense[denseResult.denseStart
+                                              + cursor++] = args[i];
                         }
                     }
                     denseResult.length = length;
@@ -1416,7 +1756,6 @@ public class NativeArray extends IdScriptableObject implements List
                                 Object[] args)
     {
         Scriptable scope = getTopLevelScope(this);
-        Scriptable result = cx.newArray(scope, 0);
         long length = getLengthProperty(cx, thisObj);
 
         long begin, end;
@@ -1432,6 +1771,15 @@ public class NativeArray extends IdScriptableObject implements List
             }
         }
 
+        if (thisObj instanceof NativeArray) {
+            Object[] elements = ((NativeArray) thisObj).getDenseElements(
+                (int) begin, (int) Math.max(begin, end));
+            if (elements != null) {
+                return cx.newArray(scope, elements);
+            }
+        }
+
+        Scriptable result = cx.newArray(scope, 0);
         for (long slot = begin; slot < end; slot++) {
             Object temp = getRawElem(thisObj, slot);
             if (temp != NOT_FOUND) {
@@ -1492,7 +1840,7 @@ public class NativeArray extends IdScriptableObject implements List
             if (na.denseOnly) {
                 Scriptable proto = na.getPrototype();
                 for (int i=(int)start; i < length; i++) {
-                    Object val = na.dense[i];
+                    Object val = na.dense[na.denseStart + i];
                     if (val == NOT_FOUND && proto != null) {
                         val = ScriptableObject.getProperty(proto, i);
                     }
@@ -1547,7 +1895,7 @@ public class NativeArray extends IdScriptableObject implements List
             if (na.denseOnly) {
                 Scriptable proto = na.getPrototype();
                 for (int i=(int)start; i >= 0; i--) {
-                    Object val = na.dense[i];
+                    Object val = na.dense[na.denseStart + i];
                     if (val == NOT_FOUND && proto != null) {
                         val = ScriptableObject.getProperty(proto, i);
                     }
@@ -1606,14 +1954,23 @@ public class NativeArray extends IdScriptableObject implements List
         }
 
         Scriptable array = null;
-        if (id == Id_filter || id == Id_map) {
+        NativeArray na = thisObj instanceof NativeArray
+                         ? (NativeArray) thisObj : null;
+        if (id == Id_map && na != null && na.denseOnly) {
+            // Size the result like the array, whatever its length
+            Object[] elements = new Object[(int) length];
+            Arrays.fill(elements, NOT_FOUND);
+            array = cx.newArray(scope, elements);
+        } else if (id == Id_filter || id == Id_map) {
             int resultLength = id == Id_map ? (int) length : 0;
             array = cx.newArray(scope, resultLength);
         }
         long j=0;
         for (long i=0; i < length; i++) {
-            Object[] innerArgs = new Object[3];
-            Object elem = getRawElem(thisObj, i);
+            Object elem = na != null ? na.getDenseElem(i) : NOT_FOUND;
+            if (elem == NOT_FOUND) {
+                elem = getRawElem(thisObj, i);
+            }
             if (elem == Scriptable.NOT_FOUND) {
                 if (id == Id_find || id == Id_findIndex) {
                     elem = Undefined.instance;
@@ -1621,9 +1978,9 @@ public class NativeArray extends IdScriptableObject implements List
                     continue;
                 }
             }
-            innerArgs[0] = elem;
-            innerArgs[1] = Long.valueOf(i);
-            innerArgs[2] = thisObj;
+            // A new array for each call, as the arguments object of the
+            // callback keeps it
+            Object[] innerArgs = { elem, Long.valueOf(i), thisObj };
             Object result = f.call(cx, parent, thisArg, innerArgs);
             switch (id) {
               case Id_every:
@@ -1632,12 +1989,12 @@ public class NativeArray extends IdScriptableObject implements List
                 break;
               case Id_filter:
                 if (ScriptRuntime.toBoolean(result))
-                    defineElem(cx, array, j++, innerArgs[0]);
+                    defineDenseElem(cx, array, j++, elem);
                 break;
               case Id_forEach:
                 break;
               case Id_map:
-                defineElem(cx, array, i, result);
+                defineDenseElem(cx, array, i, result);
                 break;
               case Id_some:
                 if (ScriptRuntime.toBoolean(result))
@@ -1685,9 +2042,14 @@ public class NativeArray extends IdScriptableObject implements List
         // hack to serve both reduce and reduceRight with the same loop
         boolean movingLeft = id == Id_reduce;
         Object value = args.length > 1 ? args[1] : Scriptable.NOT_FOUND;
+        NativeArray na = thisObj instanceof NativeArray
+                         ? (NativeArray) thisObj : null;
         for (long i = 0; i < length; i++) {
             long index = movingLeft ? i : (length - 1 - i);
-            Object elem = getRawElem(thisObj, index);
+            Object elem = na != null ? na.getDenseElem(index) : NOT_FOUND;
+            if (elem == NOT_FOUND) {
+                elem = getRawElem(thisObj, index);
+            }
             if (elem == Scriptable.NOT_FOUND) {
                 continue;
             }
@@ -1695,7 +2057,8 @@ public class NativeArray extends IdScriptableObject implements List
                 // no initial value passed, use first element found as inital value
                 value = elem;
             } else {
-                Object[] innerArgs = { value, elem, index, thisObj };
+                Object[] innerArgs = { value, elem, Long.valueOf(index),
+                                       thisObj };
                 value = f.call(cx, parent, parent, innerArgs);
             }
         }
@@ -1944,7 +2307,11 @@ public class NativeArray extends IdScriptableObject implements List
     // Comparators for the js_sort method. Putting them here lets us unit-test them better.
 
     private static final Comparator<Object> STRING_COMPARATOR = new StringLikeComparator();
-    private static final Comparator<Object> DEFAULT_COMPARATOR = new ElementComparator();
+    private static final Comparator<Object> NUMBER_COMPARATOR = new NumberComparator();
+    private static final Comparator<Object> KEYED_COMPARATOR = new KeyedElementComparator();
+
+    // Shorter arrays are sorted with a few calls of the compare function
+    private static final int MIN_NUMERIC_SORT_LENGTH = 8;
 
     public static final class StringLikeComparator
       implements Comparator<Object> {
@@ -1956,6 +2323,75 @@ public class NativeArray extends IdScriptableObject implements List
       }
     }
 
+    /**
+     * Compares numbers the way <code>(a, b) =&gt; a - b</code> does, NaN
+     * being equal to everything.
+     */
+    public static final class NumberComparator
+      implements Comparator<Object> {
+
+      public int compare(final Object x, final Object y) {
+        final double a = ((Number) x).doubleValue();
+        final double b = ((Number) y).doubleValue();
+        if (a < b) {
+          return -1;
+        } else if (a > b) {
+          return +1;
+        }
+        return 0;
+      }
+    }
+
+    private static final class KeyedElement {
+      final String key;
+      final Object value;
+
+      KeyedElement(String key, Object value) {
+        this.key = key;
+        this.value = value;
+      }
+    }
+
+    private static final class KeyedElementComparator
+      implements Comparator<Object> {
+
+      public int compare(final Object x, final Object y) {
+        return ((KeyedElement) x).key.compareTo(((KeyedElement) y).key);
+      }
+    }
+
+    private static final class FunctionComparator
+      implements Comparator<Object> {
+
+      private final Context cx;
+      private final Scriptable scope;
+      private final Callable function;
+      private final Scriptable funThis;
+      private final Object[] cmpBuf = new Object[2]; // Buffer for cmp arguments
+
+      FunctionComparator(Context cx, Scriptable scope, Callable function,
+                         Scriptable funThis) {
+        this.cx = cx;
+        this.scope = scope;
+        this.function = function;
+        this.funThis = funThis;
+      }
+
+      public int compare(final Object x, final Object y) {
+        // This comparator is invoked only for non-undefined objects
+        cmpBuf[0] = x;
+        cmpBuf[1] = y;
+        Object ret = function.call(cx, scope, funThis, cmpBuf);
+        final double d = ScriptRuntime.toNumber(ret);
+        if (d < 0) {
+          return -1;
+        } else if (d > 0) {
+          return +1;
+        }
+        return 0; // ??? double and 0???
+      }
+    }
+
     public static final class ElementComparator
       implements Comparator<Object> {
 
@@ -2123,6 +2559,25 @@ public class NativeArray extends IdScriptableObject implements List
      */
     private Object[] dense;
 
+    /**
+     * Position of the element at index 0 in <code>dense</code>, which is
+     * moved by shift and unshift instead of the elements.
+     */
+    private int denseStart;
+
+    /**
+     * Elements of an array that is not denseOnly and that lie beyond
+     * <code>dense</code>, keyed by index. Elements whose property has
+     * attributes, a getter or a setter are kept in the slots instead.
+     */
+    private UintMap sparse;
+
+    /**
+     * Indexes of <code>sparse</code> in ascending order, or null when they
+     * have to be computed again.
+     */
+    private transient int[] sparseIndexes;
+
     /**
      * True if all numeric properties are stored in <code>dense</code>.
      */
@@ -31,6 +31,10 @@ public abstract class NativeFunction extends BaseFunction
     @Override
     final String decompile(int indent, int flags)
     {
+        String rawSource = decompileRawSource(flags);
+        if (rawSource != null) {
+            return rawSource;
+        }
         String encodedSource = getEncodedSource();
         if (encodedSource == null) {
             return super.decompile(indent, flags);
@@ -41,6 +45,16 @@ public abstract class NativeFunction extends BaseFunction
         }
     }
 
+    /**
+     * Returns the original source text of the function for
+     * {@link #decompile(int, int)}, or null if the source text was not
+     * retained and the function is decompiled from its encoded source.
+     */
+    String decompileRawSource(int flags)
+    {
+        return null;
+    }
+
     @Override
     public int getLength()
     {
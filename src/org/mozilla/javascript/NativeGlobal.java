@@ -350,6 +350,10 @@ public class NativeGlobal implements Serializable, IdFunctionCall
         if (exponent != -1 && !exponentValid) {
             i = exponent;
         }
+        double d = ScriptRuntime.decimalToNumber(s, start, i - 1);
+        if (d == d) {
+            return ScriptRuntime.wrapNumber(d);
+        }
         s = s.substring(start, i);
         try {
             return Double.valueOf(s);
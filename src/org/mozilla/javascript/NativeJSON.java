@@ -290,6 +290,20 @@ public final class NativeJSON extends IdScriptableObject
         }
 
 
+        if (value instanceof NativeJavaObject) {
+            // Java strings, numbers and booleans are wrapped by default,
+            // serialize them like the corresponding JS primitive values.
+            Object unwrapped = ((NativeJavaObject) value).unwrap();
+            if (unwrapped instanceof CharSequence
+                || unwrapped instanceof Number
+                || unwrapped instanceof Boolean)
+            {
+                value = unwrapped;
+            } else if (unwrapped instanceof Character) {
+                value = unwrapped.toString();
+            }
+        }
+
         if (value instanceof NativeNumber) {
             value = ScriptRuntime.toNumber(value);
         } else if (value instanceof NativeString) {
@@ -319,7 +333,12 @@ public final class NativeJSON extends IdScriptableObject
 
         if (value instanceof Scriptable && !(value instanceof Callable)) {
             if (value instanceof NativeArray) {
-                return ja((NativeArray) value, state);
+                return ja((Scriptable) value,
+                          ((NativeArray) value).getLength(), state);
+            }
+            if (value instanceof NativeJavaList) {
+                return ja((Scriptable) value,
+                          ((NativeJavaList) value).getLength(), state);
             }
             return jo((Scriptable) value, state);
         }
@@ -389,7 +408,8 @@ public final class NativeJSON extends IdScriptableObject
         return finalValue;
     }
 
-    private static String ja(NativeArray value, StringifyState state) {
+    private static String ja(Scriptable value, long len,
+                             StringifyState state) {
         if (state.stack.search(value) != -1) {
             throw ScriptRuntime.typeError0("msg.cyclic.value");
         }
@@ -399,7 +419,6 @@ public final class NativeJSON extends IdScriptableObject
         state.indent = state.indent + state.gap;
         List<Object> partial = new LinkedList<Object>();
 
-        long len = value.getLength();
         for (long index = 0; index < len; index++) {
             Object strP;
             if (index > Integer.MAX_VALUE) {
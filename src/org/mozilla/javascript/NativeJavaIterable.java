@@ -0,0 +1,76 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+/**
+ * This class reflects instances of <code>java.lang.Iterable</code> into the
+ * JavaScript environment. In addition to the Java members it provides
+ * <code>[Symbol.iterator]</code>, so the object can be used with
+ * <code>for...of</code>, spread and other ES6 iteration.
+ *
+ * @see NativeJavaIterator
+ */
+public class NativeJavaIterable extends NativeJavaObject
+    implements SymbolScriptable
+{
+    static final long serialVersionUID = 3254937052468282017L;
+
+    public NativeJavaIterable(Scriptable scope, Object iterable,
+                              Class<?> staticType)
+    {
+        super(scope, iterable, staticType);
+    }
+
+    public boolean has(Symbol key, Scriptable start) {
+        return SymbolKey.ITERATOR.equals(key);
+    }
+
+    public Object get(Symbol key, Scriptable start) {
+        if (SymbolKey.ITERATOR.equals(key)) {
+            if (iteratorFunction == null) {
+                iteratorFunction = new IteratorFunction();
+                ScriptRuntime.setFunctionProtoAndParent(iteratorFunction,
+                                                        getParentScope());
+            }
+            return iteratorFunction;
+        }
+        return NOT_FOUND;
+    }
+
+    public void put(Symbol key, Scriptable start, Object value) {
+    }
+
+    public void delete(Symbol key) {
+    }
+
+    private static final class IteratorFunction extends BaseFunction
+    {
+        static final long serialVersionUID = -4716373446604446377L;
+
+        @Override
+        public Object call(Context cx, Scriptable scope, Scriptable thisObj,
+                           Object[] args)
+        {
+            if (thisObj instanceof Wrapper) {
+                Object obj = ((Wrapper) thisObj).unwrap();
+                if (obj instanceof Iterable) {
+                    return new NativeJavaIterator(scope,
+                                                  ((Iterable<?>) obj).iterator());
+                }
+            }
+            throw ScriptRuntime.typeError1("msg.not.iterable",
+                                           ScriptRuntime.toString(thisObj));
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "[Symbol.iterator]";
+        }
+    }
+
+    private transient BaseFunction iteratorFunction;
+}
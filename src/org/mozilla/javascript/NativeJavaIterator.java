@@ -0,0 +1,59 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.util.Iterator;
+
+/**
+ * ES6 iterator over a <code>java.util.Iterator</code>. Values are wrapped
+ * with the current {@link WrapFactory} as they are returned.
+ *
+ * @see NativeJavaIterable
+ */
+public final class NativeJavaIterator extends ES6Iterator {
+    private static final long serialVersionUID = 1L;
+    private static final String ITERATOR_TAG = "JavaIterator";
+
+    static void init(ScriptableObject scope, boolean sealed) {
+        ES6Iterator.init(scope, sealed, new NativeJavaIterator(), ITERATOR_TAG);
+    }
+
+    /**
+     * Only for constructing the prototype object.
+     */
+    private NativeJavaIterator() {
+        super();
+    }
+
+    public NativeJavaIterator(Scriptable scope, Iterator<?> iterator) {
+        super(scope);
+        this.iterator = iterator;
+    }
+
+    @Override
+    public String getClassName() {
+        return "Java Iterator";
+    }
+
+    @Override
+    protected boolean isDone(Context cx, Scriptable scope) {
+        return !iterator.hasNext();
+    }
+
+    @Override
+    protected Object nextValue(Context cx, Scriptable scope) {
+        Object value = iterator.next();
+        return cx.getWrapFactory().wrap(cx, scope, value, null);
+    }
+
+    @Override
+    protected String getTag() {
+        return ITERATOR_TAG;
+    }
+
+    private transient Iterator<?> iterator;
+}
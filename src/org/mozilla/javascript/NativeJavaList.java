@@ -0,0 +1,142 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.util.List;
+
+/**
+ * This class reflects instances of <code>java.util.List</code> into the
+ * JavaScript environment as array-like objects. Elements can be read and
+ * written by index and the list has a <code>length</code> property, while
+ * all Java members remain accessible. Element access calls the list
+ * directly instead of going through reflection.
+ *
+ * @see NativeJavaArray
+ */
+public class NativeJavaList extends NativeJavaIterable
+{
+    static final long serialVersionUID = 6445417245387474370L;
+
+    public NativeJavaList(Scriptable scope, Object list, Class<?> staticType)
+    {
+        super(scope, list, staticType);
+    }
+
+    @Override
+    public String getClassName() {
+        return "JavaList";
+    }
+
+    /**
+     * Returns the number of elements in the wrapped list.
+     */
+    public long getLength() {
+        return list().size();
+    }
+
+    @Override
+    public boolean has(String name, Scriptable start) {
+        return name.equals("length") || super.has(name, start);
+    }
+
+    @Override
+    public boolean has(int index, Scriptable start) {
+        return 0 <= index && index < list().size();
+    }
+
+    @Override
+    public Object get(String name, Scriptable start) {
+        if (name.equals("length")) {
+            return Integer.valueOf(list().size());
+        }
+        return super.get(name, start);
+    }
+
+    @Override
+    public Object get(int index, Scriptable start) {
+        if (0 <= index && index < list().size()) {
+            Context cx = Context.getContext();
+            Object obj = list().get(index);
+            return cx.getWrapFactory().wrap(cx, this, obj, null);
+        }
+        return Undefined.instance;
+    }
+
+    @Override
+    public void put(String name, Scriptable start, Object value) {
+        if (name.equals("length")) {
+            setLength(value);
+            return;
+        }
+        super.put(name, start, value);
+    }
+
+    @Override
+    public void put(int index, Scriptable start, Object value) {
+        if (index < 0) {
+            throw Context.reportRuntimeError2(
+                "msg.java.array.index.out.of.bounds", String.valueOf(index),
+                String.valueOf(list().size() - 1));
+        }
+        Object javaValue = Context.jsToJava(value, ScriptRuntime.ObjectClass);
+        int size = list().size();
+        try {
+            if (index < size) {
+                list().set(index, javaValue);
+            } else {
+                // Like JS arrays, grow the list filling the gap with null
+                while (size++ < index) {
+                    list().add(null);
+                }
+                list().add(javaValue);
+            }
+        } catch (UnsupportedOperationException ex) {
+            // Fixed-size or unmodifiable list
+            throw Context.throwAsScriptRuntimeEx(ex);
+        }
+    }
+
+    private void setLength(Object value) {
+        double d = ScriptRuntime.toNumber(value);
+        long newLength = ScriptRuntime.toUint32(d);
+        if (newLength != d || newLength > Integer.MAX_VALUE) {
+            String msg = ScriptRuntime.getMessage0("msg.arraylength.bad");
+            throw ScriptRuntime.constructError("RangeError", msg);
+        }
+        int size = list().size();
+        try {
+            if (newLength < size) {
+                list().subList((int) newLength, size).clear();
+            } else {
+                while (size++ < newLength) {
+                    list().add(null);
+                }
+            }
+        } catch (UnsupportedOperationException ex) {
+            throw Context.throwAsScriptRuntimeEx(ex);
+        }
+    }
+
+    @Override
+    public Object[] getIds() {
+        int length = list().size();
+        Object[] result = new Object[length];
+        int i = length;
+        while (--i >= 0)
+            result[i] = Integer.valueOf(i);
+        return result;
+    }
+
+    /**
+     * Returns the wrapped object. It is not kept in a separate field so
+     * deserialization through {@link NativeJavaObject} restores it.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Object> list() {
+        return (List<Object>) javaObject;
+    }
+}
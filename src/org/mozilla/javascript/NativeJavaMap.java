@@ -0,0 +1,128 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * This class reflects instances of <code>java.util.Map</code> into the
+ * JavaScript environment as objects whose properties are the entries of the
+ * map. String keys are exposed as named properties and integer keys as
+ * indexed properties. Entries take precedence over Java members with the
+ * same name; other Java members remain accessible.
+ * <p>
+ * Maps are only wrapped this way if
+ * {@link Context#FEATURE_ENABLE_JAVA_MAP_ACCESS} is enabled.
+ */
+public class NativeJavaMap extends NativeJavaObject
+{
+    static final long serialVersionUID = -3786257752907047381L;
+
+    public NativeJavaMap(Scriptable scope, Object map, Class<?> staticType)
+    {
+        super(scope, map, staticType);
+    }
+
+    @Override
+    public String getClassName() {
+        return "JavaMap";
+    }
+
+    @Override
+    public boolean has(String name, Scriptable start) {
+        return map().containsKey(name) || super.has(name, start);
+    }
+
+    @Override
+    public boolean has(int index, Scriptable start) {
+        return map().containsKey(Integer.valueOf(index))
+            || map().containsKey(String.valueOf(index));
+    }
+
+    @Override
+    public Object get(String name, Scriptable start) {
+        if (map().containsKey(name)) {
+            return wrapValue(map().get(name));
+        }
+        return super.get(name, start);
+    }
+
+    @Override
+    public Object get(int index, Scriptable start) {
+        Integer key = Integer.valueOf(index);
+        if (map().containsKey(key)) {
+            return wrapValue(map().get(key));
+        }
+        String name = String.valueOf(index);
+        if (map().containsKey(name)) {
+            return wrapValue(map().get(name));
+        }
+        return NOT_FOUND;
+    }
+
+    @Override
+    public void put(String name, Scriptable start, Object value) {
+        if (!map().containsKey(name) && members.has(name, false)) {
+            super.put(name, start, value);
+        } else {
+            map().put(name, Context.jsToJava(value, ScriptRuntime.ObjectClass));
+        }
+    }
+
+    @Override
+    public void put(int index, Scriptable start, Object value) {
+        Object key = Integer.valueOf(index);
+        if (!map().containsKey(key) && map().containsKey(String.valueOf(index))) {
+            key = String.valueOf(index);
+        }
+        map().put(key, Context.jsToJava(value, ScriptRuntime.ObjectClass));
+    }
+
+    @Override
+    public void delete(String name) {
+        map().remove(name);
+    }
+
+    @Override
+    public void delete(int index) {
+        if (map().remove(Integer.valueOf(index)) == null) {
+            map().remove(String.valueOf(index));
+        }
+    }
+
+    /**
+     * Returns the keys of the map that are strings or integers, which are
+     * the keys scripts can access as properties.
+     */
+    @Override
+    public Object[] getIds() {
+        ArrayList<Object> ids = new ArrayList<Object>(map().size());
+        for (Object key : map().keySet()) {
+            if (key instanceof String) {
+                ids.add(key);
+            } else if (key instanceof Integer) {
+                ids.add(key);
+            }
+        }
+        return ids.toArray();
+    }
+
+    private Object wrapValue(Object value) {
+        Context cx = Context.getContext();
+        return cx.getWrapFactory().wrap(cx, this, value, null);
+    }
+
+    /**
+     * Returns the wrapped object. It is not kept in a separate field so
+     * deserialization through {@link NativeJavaObject} restores it.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Object,Object> map() {
+        return (Map<Object,Object>) javaObject;
+    }
+}
@@ -10,6 +10,7 @@ import org.mozilla.javascript.regexp.NativeRegExp;
 
 import java.text.Collator;
 import java.text.Normalizer;
+import java.util.ArrayList;
 
 import static org.mozilla.javascript.ScriptRuntime.rangeError;
 import static org.mozilla.javascript.ScriptRuntimeES6.requireObjectCoercible;
@@ -310,10 +311,17 @@ final class NativeString extends IdScriptableObject
                     return ScriptRuntime.wrapInt(js_lastIndexOf(
                         ScriptRuntime.toString(thisObj), args));
 
-                case Id_split:
+                case Id_split: {
+                    String target = ScriptRuntime.toString(thisObj);
+                    if (args.length > 0 && args[0] instanceof CharSequence) {
+                        Scriptable result = js_split(cx, scope, target, args);
+                        if (result != null) {
+                            return result;
+                        }
+                    }
                     return ScriptRuntime.checkRegExpProxy(cx).
-                        js_split(cx, scope, ScriptRuntime.toString(thisObj),
-                            args);
+                        js_split(cx, scope, target, args);
+                }
 
                 case Id_substring:
                     return js_substring(cx, ScriptRuntime.toCharSequence(thisObj), args);
@@ -609,6 +617,46 @@ final class NativeString extends IdScriptableObject
         }
     }
 
+    /*
+     * See ECMA 15.5.4.14, for a separator that is a string. Returns null for
+     * JS versions before 1.3, whose split differs, so that the regexp
+     * implementation handles them.
+     */
+    private static Scriptable js_split(Context cx, Scriptable scope,
+                                       String target, Object[] args)
+    {
+        int version = cx.getLanguageVersion();
+        if (version != Context.VERSION_DEFAULT
+            && version < Context.VERSION_1_3)
+        {
+            return null;
+        }
+        long limit = Long.MAX_VALUE;
+        if (args.length > 1 && args[1] != Undefined.instance) {
+            limit = ScriptRuntime.toUint32(args[1]);
+        }
+        String separator = args[0].toString();
+        int length = target.length();
+        ArrayList<Object> parts = new ArrayList<Object>();
+        if (separator.length() == 0) {
+            for (int i = 0; i < length && parts.size() < limit; i++) {
+                parts.add(String.valueOf(target.charAt(i)));
+            }
+        } else {
+            int start = 0;
+            while (parts.size() < limit) {
+                int end = target.indexOf(separator, start);
+                if (end < 0) {
+                    parts.add(target.substring(start));
+                    break;
+                }
+                parts.add(target.substring(start, end));
+                start = end + separator.length();
+            }
+        }
+        return cx.newArray(scope, parts.toArray());
+    }
+
     /*
      *
      * See ECMA 15.5.4.7
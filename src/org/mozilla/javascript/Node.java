@@ -41,6 +41,7 @@ public class Node implements Iterable<Node>
     //  DIRECTCALL_PROP - this call node should emit code to test the function
     //                    object against the known class and call direct if it
     //                    matches.
+    //  INLINE_PROP - expression to evaluate instead of the direct call
 
         TARGETBLOCK_PROP     =  6,
         VARIABLE_PROP        =  7,
@@ -64,7 +65,8 @@ public class Node implements Iterable<Node>
         EXPRESSION_CLOSURE_PROP = 25, // JS 1.8 expression closure pseudo-return
         DESTRUCTURING_SHORTHAND = 26, // JS 1.8 destructuring shorthand
         ARROW_FUNCTION_PROP  = 27,
-        LAST_PROP            = 27;
+        INLINE_PROP          = 28,
+        LAST_PROP            = 28;
 
     // values of ISNUMBER_PROP to specify
     // which of the children are Number types
@@ -87,14 +89,6 @@ public class Node implements Iterable<Node>
         ATTRIBUTE_FLAG   = 0x2, // x.@y or x..@y
         DESCENDANTS_FLAG = 0x4; // x..y or x..@i
 
-    private static class PropListItem
-    {
-        PropListItem next;
-        int type;
-        int intValue;
-        Object objectValue;
-    }
-
     public Node(int nodeType) {
         type = nodeType;
     }
@@ -412,6 +406,7 @@ public class Node implements Iterable<Node>
                 case VARIABLE_PROP:        return "variable";
                 case ISNUMBER_PROP:        return "isnumber";
                 case DIRECTCALL_PROP:      return "directcall";
+                case INLINE_PROP:          return "inline";
 
                 case SPECIALCALL_PROP:     return "specialcall";
                 case SKIP_INDEXES_PROP:    return "skip_indexes";
@@ -435,64 +430,90 @@ public class Node implements Iterable<Node>
         return null;
     }
 
-    private PropListItem lookupProperty(int propType)
+    private int propIndex(int propType)
     {
-        PropListItem x = propListHead;
-        while (x != null && propType != x.type) {
-            x = x.next;
+        return Integer.bitCount(propMask & ((1 << propType) - 1));
+    }
+
+    private Object lookupProperty(int propType)
+    {
+        int bit = 1 << propType;
+        if ((propMask & bit) == 0) {
+            return null;
         }
-        return x;
+        if (propMask == bit) {
+            return propValues;
+        }
+        return ((Object[]) propValues)[propIndex(propType)];
     }
 
-    private PropListItem ensureProperty(int propType)
+    private void storeProperty(int propType, Object value)
     {
-        PropListItem item = lookupProperty(propType);
-        if (item == null) {
-            item = new PropListItem();
-            item.type = propType;
-            item.next = propListHead;
-            propListHead = item;
+        int bit = 1 << propType;
+        if (propMask == 0 || propMask == bit) {
+            propValues = value;
+        } else if ((propMask & bit) != 0) {
+            ((Object[]) propValues)[propIndex(propType)] = value;
+        } else {
+            Object[] values;
+            int count = Integer.bitCount(propMask);
+            if (count == 1) {
+                values = new Object[] { propValues };
+            } else {
+                values = (Object[]) propValues;
+            }
+            Object[] newValues = new Object[count + 1];
+            int index = propIndex(propType);
+            System.arraycopy(values, 0, newValues, 0, index);
+            newValues[index] = value;
+            System.arraycopy(values, index, newValues, index + 1,
+                             count - index);
+            propValues = newValues;
         }
-        return item;
+        propMask |= bit;
     }
 
     public void removeProp(int propType)
     {
-        PropListItem x = propListHead;
-        if (x != null) {
-            PropListItem prev = null;
-            while (x.type != propType) {
-                prev = x;
-                x = x.next;
-                if (x == null) { return; }
-            }
-            if (prev == null) {
-                propListHead = x.next;
+        int bit = 1 << propType;
+        if ((propMask & bit) == 0) {
+            return;
+        }
+        if (propMask == bit) {
+            propValues = null;
+        } else {
+            Object[] values = (Object[]) propValues;
+            int index = propIndex(propType);
+            if (values.length == 2) {
+                propValues = values[1 - index];
             } else {
-                prev.next = x.next;
+                Object[] newValues = new Object[values.length - 1];
+                System.arraycopy(values, 0, newValues, 0, index);
+                System.arraycopy(values, index + 1, newValues, index,
+                                 newValues.length - index);
+                propValues = newValues;
             }
         }
+        propMask &= ~bit;
     }
 
     public Object getProp(int propType)
     {
-        PropListItem item = lookupProperty(propType);
-        if (item == null) { return null; }
-        return item.objectValue;
+        return lookupProperty(propType);
     }
 
     public int getIntProp(int propType, int defaultValue)
     {
-        PropListItem item = lookupProperty(propType);
-        if (item == null) { return defaultValue; }
-        return item.intValue;
+        Object value = lookupProperty(propType);
+        if (value == null) { return defaultValue; }
+        return ((Integer) value).intValue();
     }
 
     public int getExistingIntProp(int propType)
     {
-        PropListItem item = lookupProperty(propType);
-        if (item == null) { Kit.codeBug(); }
-        return item.intValue;
+        Object value = lookupProperty(propType);
+        if (value == null) { Kit.codeBug(); }
+        return ((Integer) value).intValue();
     }
 
     public void putProp(int propType, Object prop)
@@ -500,15 +521,13 @@ public class Node implements Iterable<Node>
         if (prop == null) {
             removeProp(propType);
         } else {
-            PropListItem item = ensureProperty(propType);
-            item.objectValue = prop;
+            storeProperty(propType, prop);
         }
     }
 
     public void putIntProp(int propType, int prop)
     {
-        PropListItem item = ensureProperty(propType);
-        item.intValue = prop;
+        storeProperty(propType, Integer.valueOf(prop));
     }
 
     /**
@@ -1144,8 +1163,11 @@ public class Node implements Iterable<Node>
                 sb.append(lineno);
             }
 
-            for (PropListItem x = propListHead; x != null; x = x.next) {
-                int type = x.type;
+            for (int type = 0; type <= LAST_PROP; type++) {
+                Object x = lookupProperty(type);
+                if (x == null) {
+                    continue;
+                }
                 sb.append(" [");
                 sb.append(propToString(type));
                 sb.append(": ");
@@ -1158,7 +1180,7 @@ public class Node implements Iterable<Node>
                     value = "last local block";
                     break;
                   case ISNUMBER_PROP:
-                    switch (x.intValue) {
+                    switch (((Integer) x).intValue()) {
                       case BOTH:
                         value = "both";
                         break;
@@ -1173,7 +1195,7 @@ public class Node implements Iterable<Node>
                     }
                     break;
                   case SPECIALCALL_PROP:
-                    switch (x.intValue) {
+                    switch (((Integer) x).intValue()) {
                       case SPECIALCALL_EVAL:
                         value = "eval";
                         break;
@@ -1186,7 +1208,7 @@ public class Node implements Iterable<Node>
                     }
                     break;
                   case OBJECT_IDS_PROP: {
-                    Object[] a = (Object[]) x.objectValue;
+                    Object[] a = (Object[]) x;
                     value = "[";
                     for (int i=0; i < a.length; i++) {
                         value += a[i].toString();
@@ -1197,12 +1219,7 @@ public class Node implements Iterable<Node>
                     break;
                   }
                   default :
-                    Object obj = x.objectValue;
-                    if (obj != null) {
-                        value = obj.toString();
-                    } else {
-                        value = String.valueOf(x.intValue);
-                    }
+                    value = x.toString();
                     break;
                 }
                 sb.append(value);
@@ -1283,10 +1300,12 @@ public class Node implements Iterable<Node>
     protected int lineno = -1;
 
     /**
-     * Linked list of properties. Since vast majority of nodes would have
-     * no more then 2 properties, linked list saves memory and provides
-     * fast lookup. If this does not holds, propListHead can be replaced
-     * by UintMap.
+     * Properties of this node, one bit per property type. Most nodes have
+     * no more than one property, whose value is then kept in propValues
+     * itself; otherwise propValues is an array of the values in property
+     * type order. Integer properties are stored boxed, and the values used
+     * most often are small enough to come from the Integer cache.
      */
-    protected PropListItem propListHead;
+    private int propMask;
+    private Object propValues;
 }
@@ -566,11 +566,23 @@ public class Parser
      * {@link CompilerEnvirons}.)
      */
     public AstRoot parse(String sourceString, String sourceURI, int lineno)
+    {
+        return parse((CharSequence) sourceString, sourceURI, lineno);
+    }
+
+    /**
+     * Builds a parse tree from the given characters, which are scanned in
+     * place: a {@link java.nio.CharBuffer} wrapping an array or decoded
+     * from a file is not copied to a string first.
+     * @see #parse(String,String,int)
+     */
+    public AstRoot parse(CharSequence sourceString, String sourceURI,
+                         int lineno)
     {
         if (parseFinished) throw new IllegalStateException("parser reused");
         this.sourceURI = sourceURI;
         if (compilerEnv.isIdeMode()) {
-            this.sourceChars = sourceString.toCharArray();
+            this.sourceChars = sourceString.toString().toCharArray();
         }
         this.ts = new TokenStream(this, null, sourceString, lineno);
         try {
@@ -22,6 +22,9 @@ import java.util.regex.Pattern;
 public abstract class RhinoException extends RuntimeException
 {
     private static final Pattern JAVA_STACK_PATTERN = Pattern.compile("_c_(.*)_\\d+");
+    // Methods that Codegen generates for parts of a script or function body
+    private static final Pattern JAVA_BODY_PART_PATTERN =
+        Pattern.compile("_(part|literal)\\d+$");
 
     RhinoException()
     {
@@ -306,6 +309,8 @@ public abstract class RhinoException extends RuntimeException
         int count = 0;
         boolean printStarted = (hideFunction == null);
 
+        int partLineNumber = -1;
+
         // Pattern to recover function name from java method name -
         // see Codegen.getBodyMethodName()
         // kudos to Marc Guillemot for coming up with this
@@ -316,6 +321,19 @@ public abstract class RhinoException extends RuntimeException
                     && fileName != null
                     && !fileName.endsWith(".java")) {
                 String methodName = e.getMethodName();
+                int lineNumber = e.getLineNumber();
+                if (JAVA_BODY_PART_PATTERN.matcher(methodName).find()) {
+                    // the position is reported for the body the part was
+                    // split from
+                    if (partLineNumber < 0) {
+                        partLineNumber = lineNumber;
+                    }
+                    continue;
+                }
+                if (partLineNumber >= 0) {
+                    lineNumber = partLineNumber;
+                    partLineNumber = -1;
+                }
                 Matcher match = JAVA_STACK_PATTERN.matcher(methodName);
                 // the method representing the main script is always "_c_script_0" -
                 // at least we hope so
@@ -325,7 +343,7 @@ public abstract class RhinoException extends RuntimeException
                 if (!printStarted && hideFunction.equals(methodName)) {
                     printStarted = true;
                 } else if (printStarted && ((limit < 0) || (count < limit))) {
-                    list.add(new ScriptStackElement(fileName, methodName, e.getLineNumber()));
+                    list.add(new ScriptStackElement(fileName, methodName, lineNumber));
                     count++;
                 }
 
@@ -200,6 +200,7 @@ public class ScriptRuntime {
 
         NativeArrayIterator.init(scope, sealed);
         NativeStringIterator.init(scope, sealed);
+        NativeJavaIterator.init(scope, sealed);
 
         boolean withXml = cx.hasFeature(Context.FEATURE_E4X) &&
                           cx.getE4xImplementationFactory() != null;
@@ -367,12 +368,30 @@ public class ScriptRuntime {
 
     public static Number wrapNumber(double x)
     {
-        if (x != x) {
+        int i = (int) x;
+        if (i == x && i >= MIN_CACHED_DOUBLE && i <= MAX_CACHED_DOUBLE) {
+            // Negative zero converts to 0 too and can not share +0.0
+            if (i != 0 || 1 / x > 0) {
+                return doubleCache[i - MIN_CACHED_DOUBLE];
+            }
+        } else if (x != x) {
             return ScriptRuntime.NaNobj;
         }
         return new Double(x);
     }
 
+    /**
+     * Returns the cached Double object of a small integer value, or null
+     * if the value is outside of the cache.
+     */
+    protected static Double getCachedDouble(int i)
+    {
+        if (i >= MIN_CACHED_DOUBLE && i <= MAX_CACHED_DOUBLE) {
+            return doubleCache[i - MIN_CACHED_DOUBLE];
+        }
+        return null;
+    }
+
     /**
      * Convert the value to a boolean.
      *
@@ -462,6 +481,18 @@ public class ScriptRuntime {
 
     public static final Double NaNobj = new Double(NaN);
 
+    // Loop counters and array indexes are mostly small integers, so
+    // wrapNumber shares their Double objects like Integer.valueOf does.
+    private static final int MIN_CACHED_DOUBLE = -128;
+    private static final int MAX_CACHED_DOUBLE = 1023;
+    private static final Double[] doubleCache =
+        new Double[MAX_CACHED_DOUBLE - MIN_CACHED_DOUBLE + 1];
+    static {
+        for (int i = 0; i < doubleCache.length; i++) {
+            doubleCache[i] = new Double(i + MIN_CACHED_DOUBLE);
+        }
+    }
+
     static double stringPrefixToNumber(String s, int start, int radix) {
         return stringToNumber(s, start, s.length() - 1, radix, true);
     }
@@ -655,6 +686,12 @@ public class ScriptRuntime {
             end--;
         }
 
+        // Most strings are plain decimal numbers
+        double decimal = decimalToNumber(s, start, end);
+        if (decimal == decimal) {
+            return decimal;
+        }
+
         // Do not break scripts relying on old non-compliant conversion
         // (see bug #368)
         // 1. makes ToNumber parse only a valid prefix in hex literals (similar to 'parseInt()')
@@ -730,6 +767,104 @@ public class ScriptRuntime {
         }
     }
 
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Converts the decimal number between start and end (inclusive)
+     * without allocating. Only handles numbers with at most 15
+     * significant digits and a decimal exponent of at most 22, whose
+     * digits and power of ten are exact doubles, so a single
+     * multiplication or division rounds correctly. Returns NaN for any
+     * other string, in which case the caller has to fall back to
+     * Double.parseDouble.
+     */
+    public static double decimalToNumber(String s, int start, int end)
+    {
+        int i = start;
+        boolean negative = false;
+        if (i <= end) {
+            char c = s.charAt(i);
+            if (c == '-') {
+                negative = true;
+                i++;
+            } else if (c == '+') {
+                i++;
+            }
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenDigit = false;
+        boolean seenDot = false;
+        for (; i <= end; i++) {
+            char c = s.charAt(i);
+            if ('0' <= c && c <= '9') {
+                seenDigit = true;
+                if (seenDot) {
+                    scale++;
+                }
+                if (mantissa == 0 && c == '0') {
+                    // Leading zeros are not significant
+                    continue;
+                }
+                if (++digits > 15) {
+                    return NaN;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+            } else if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                break;
+            }
+        }
+        if (!seenDigit) {
+            return NaN;
+        }
+        int exponent = 0;
+        if (i <= end) {
+            char c = s.charAt(i++);
+            if ((c != 'e' && c != 'E') || i > end) {
+                return NaN;
+            }
+            boolean negativeExponent = false;
+            c = s.charAt(i);
+            if (c == '-' || c == '+') {
+                negativeExponent = (c == '-');
+                i++;
+            }
+            if (i > end) {
+                return NaN;
+            }
+            for (; i <= end; i++) {
+                c = s.charAt(i);
+                if (c < '0' || c > '9') {
+                    return NaN;
+                }
+                if (exponent < 1000) {
+                    exponent = exponent * 10 + (c - '0');
+                }
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+        exponent -= scale;
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return NaN;
+        }
+        return negative ? -value : value;
+    }
+
     /**
      * Helper function for builtin objects that use the varargs form.
      * ECMA function formal arguments are undefined if not supplied;
@@ -897,6 +1032,15 @@ public class ScriptRuntime {
         return (index < args.length) ? toString(args[index]) : "undefined";
     }
 
+    private static final double MAX_EXACT_INTEGER = 9007199254740992.0;
+
+    private static final String[] smallIntStrings = new String[1024];
+
+    // Must be a power of two
+    private static final int NUMBER_STRING_CACHE_SIZE = 64;
+
+    private static final int MAX_CACHED_BUILDER_CAPACITY = 1 << 16;
+
     /**
      * Optimized version of toString(Object) for numbers.
      */
@@ -921,18 +1065,93 @@ public class ScriptRuntime {
 
         if (base != 10) {
             return DToA.JS_dtobasestr(base, d);
-        } else {
-            // V8 FastDtoa can't convert all numbers, so try it first but
-            // fall back to old DToA in case it fails
-            String result = FastDtoa.numberToString(d);
-            if (result != null) {
-                return result;
+        }
+        if (d > -MAX_EXACT_INTEGER && d < MAX_EXACT_INTEGER) {
+            // Integers below 2^53 are their own shortest representation
+            long l = (long) d;
+            if (l == d) {
+                int i = (int) l;
+                return (i == l) ? intToString(i) : Long.toString(l);
             }
-            StringBuilder buffer = new StringBuilder();
-            DToA.JS_dtostr(buffer, DToA.DTOSTR_STANDARD, 0, d);
-            return buffer.toString();
         }
 
+        Context cx = Context.getCurrentContext();
+        if (cx == null) {
+            return decimalToString(d);
+        }
+        long bits = Double.doubleToRawLongBits(d);
+        int hash = (int) (bits ^ (bits >>> 32));
+        int slot = (hash ^ (hash >>> 16)) & (NUMBER_STRING_CACHE_SIZE - 1);
+        String[] values = cx.numberStringValues;
+        if (values == null) {
+            cx.numberStringKeys = new long[NUMBER_STRING_CACHE_SIZE];
+            values = cx.numberStringValues =
+                new String[NUMBER_STRING_CACHE_SIZE];
+        } else if (values[slot] != null && cx.numberStringKeys[slot] == bits) {
+            return values[slot];
+        }
+        String result = decimalToString(d);
+        cx.numberStringKeys[slot] = bits;
+        values[slot] = result;
+        return result;
+    }
+
+    private static String decimalToString(double d) {
+        // V8 FastDtoa can't convert all numbers, so try it first but
+        // fall back to old DToA in case it fails
+        String result = FastDtoa.numberToString(d);
+        if (result != null) {
+            return result;
+        }
+        StringBuilder buffer = new StringBuilder();
+        DToA.JS_dtostr(buffer, DToA.DTOSTR_STANDARD, 0, d);
+        return buffer.toString();
+    }
+
+    /**
+     * Returns an empty StringBuilder, reusing the one kept by the Context
+     * unless it is in use. Pass it to
+     * {@link #releaseStringBuilder(Context, StringBuilder)} when done so
+     * that the next caller can reuse its buffer.
+     */
+    public static StringBuilder takeStringBuilder(Context cx) {
+        StringBuilder sb = cx.cachedStringBuilder;
+        if (sb == null) {
+            return new StringBuilder();
+        }
+        cx.cachedStringBuilder = null;
+        return sb;
+    }
+
+    /**
+     * Returns the contents of a builder from
+     * {@link #takeStringBuilder(Context)} and keeps it for reuse.
+     */
+    public static String releaseStringBuilder(Context cx, StringBuilder sb) {
+        String result = sb.toString();
+        // Do not pin the buffers of large results to the Context
+        if (sb.capacity() <= MAX_CACHED_BUILDER_CAPACITY) {
+            sb.setLength(0);
+            cx.cachedStringBuilder = sb;
+        }
+        return result;
+    }
+
+    /**
+     * Converts the integer to a string, sharing the strings of small
+     * non-negative integers, which are used most as property keys.
+     */
+    static String intToString(int i) {
+        if (i >= 0 && i < smallIntStrings.length) {
+            String s = smallIntStrings[i];
+            if (s == null) {
+                // Strings are immutable, so racing threads only duplicate work
+                s = Integer.toString(i);
+                smallIntStrings[i] = s;
+            }
+            return s;
+        }
+        return Integer.toString(i);
     }
 
     static String uneval(Context cx, Scriptable scope, Object value)
@@ -2265,11 +2484,11 @@ public class ScriptRuntime {
     }
 
     private static Object enumInitInOrder(Context cx, IdEnumeration x) {
-        if (!(x.obj instanceof ScriptableObject)) {
+        if (!(x.obj instanceof SymbolScriptable)) {
             throw typeError1("msg.not.iterable", toString(x.obj));
         }
 
-        ScriptableObject xo = (ScriptableObject)x.obj;
+        Scriptable xo = x.obj;
         if (!ScriptableObject.hasProperty(xo, SymbolKey.ITERATOR)) {
             throw typeError1("msg.not.iterable", toString(x.obj));
         }
@@ -2340,7 +2559,7 @@ public class ScriptRuntime {
                 if (!x.obj.has(intId, x.obj))
                     continue;   // must have been deleted
                 x.currentId = x.enumNumbers ? (Object) (Integer.valueOf(intId))
-                                            : String.valueOf(intId);
+                                            : intToString(intId);
             }
             return Boolean.TRUE;
         }
@@ -2879,6 +3098,15 @@ public class ScriptRuntime {
 
     public static Object add(Object val1, Object val2, Context cx)
     {
+        if (val1 instanceof Integer && val2 instanceof Integer) {
+            // The sum of two ints can not overflow a long
+            long sum = (long) ((Integer) val1).intValue() +
+                       ((Integer) val2).intValue();
+            if (sum == (int) sum) {
+                return Integer.valueOf((int) sum);
+            }
+            return wrapNumber(sum);
+        }
         if(val1 instanceof Number && val2 instanceof Number) {
             return wrapNumber(((Number)val1).doubleValue() +
                               ((Number)val2).doubleValue());
@@ -2997,6 +3225,18 @@ public class ScriptRuntime {
                                     incrDecrMask);
     }
 
+    /**
+     * Wraps the result of an increment or decrement, which stays an
+     * Integer if the old value was one and the result still fits.
+     */
+    private static Number wrapIncrDecr(Object value, double number)
+    {
+        if (value instanceof Integer && number == (int) number) {
+            return Integer.valueOf((int) number);
+        }
+        return wrapNumber(number);
+    }
+
     private static Object doScriptableIncrDecr(Scriptable target,
                                                String id,
                                                Scriptable protoChainStart,
@@ -3019,7 +3259,7 @@ public class ScriptRuntime {
         } else {
             --number;
         }
-        Number result = wrapNumber(number);
+        Number result = wrapIncrDecr(value, number);
         target.put(id, protoChainStart, result);
         if (post) {
             return value;
@@ -3059,7 +3299,7 @@ public class ScriptRuntime {
         } else {
             --number;
         }
-        Number result = wrapNumber(number);
+        Number result = wrapIncrDecr(value, number);
         setObjectElem(obj, index, result, cx, scope);
         if (post) {
             return value;
@@ -3097,7 +3337,7 @@ public class ScriptRuntime {
         } else {
             --number;
         }
-        Number result = wrapNumber(number);
+        Number result = wrapIncrDecr(value, number);
         ref.set(cx, scope, result);
         if (post) {
             return value;
@@ -4057,15 +4297,27 @@ public class ScriptRuntime {
         int len = (int) longLen;
         if (len == 0) {
             return ScriptRuntime.emptyArgs;
+        }
+        Object[] result = null;
+        if (object instanceof NativeArray) {
+            // Copies the elements of dense arrays at once
+            result = ((NativeArray) object).getDenseElements(0, len);
+        }
+        if (result != null) {
+            for (int i=0; i < len; i++) {
+                if (result[i] == Scriptable.NOT_FOUND) {
+                    result[i] = Undefined.instance;
+                }
+            }
         } else {
-            Object[] result = new Object[len];
+            result = new Object[len];
             for (int i=0; i < len; i++) {
                 Object elem = ScriptableObject.getProperty(object, i);
                 result[i] = (elem == Scriptable.NOT_FOUND) ? Undefined.instance
                                                            : elem;
             }
-            return result;
         }
+        return result;
     }
 
     static void checkDeprecated(Context cx, String name) {
@@ -4,6 +4,7 @@ import java.util.Comparator;
 
 public final class Sorting {
     private static final int SMALLSORT = 16;
+    private static final int MIN_RUN = 32;
 
     public static void insertionSort(Object[] a, Comparator<Object> cmp)
     {
@@ -85,6 +86,192 @@ public final class Sorting {
         return j;
     }
 
+    /*
+    Stable natural merge sort in the spirit of TimSort. Finds the runs already
+    in the array, reversing strictly descending ones, and extends runs shorter
+    than MIN_RUN with binary insertion sort. Runs are kept on a stack and
+    merged as soon as the stack invariants of TimSort call for it, so that
+    merges stay balanced and work on recently touched elements. Merges of
+    runs that are already in order are skipped, which makes sorted and nearly
+    sorted input take close to linear time. Unlike java.util.Arrays.sort it
+    never checks the comparator for consistency, since comparators written in
+    JavaScript often are not consistent.
+    */
+    public static void mergeSort(Object[] a, Comparator<Object> cmp)
+    {
+        final int n = a.length;
+        if (n < 2) {
+            return;
+        }
+        // Runs other than the last have at least MIN_RUN elements
+        MergeState state = new MergeState(a, cmp, n / MIN_RUN + 1);
+        int start = 0;
+        while (start < n) {
+            int end = findRun(a, start, n, cmp);
+            if (end - start < MIN_RUN) {
+                int runEnd = end;
+                end = Math.min(n, start + MIN_RUN);
+                binaryInsertionSort(a, start, runEnd, end, cmp);
+            }
+            state.pushRun(start, end - start);
+            state.mergeCollapse();
+            start = end;
+        }
+        state.mergeForceCollapse();
+    }
+
+    private static final class MergeState
+    {
+        private final Object[] a;
+        private final Comparator<Object> cmp;
+        private final int[] runStart;
+        private final int[] runLength;
+        private int stackSize;
+        private Object[] tmp;
+
+        MergeState(Object[] a, Comparator<Object> cmp, int maxRuns)
+        {
+            this.a = a;
+            this.cmp = cmp;
+            runStart = new int[maxRuns];
+            runLength = new int[maxRuns];
+        }
+
+        void pushRun(int start, int length)
+        {
+            runStart[stackSize] = start;
+            runLength[stackSize] = length;
+            stackSize++;
+        }
+
+        /*
+        Merge runs until each run on the stack is longer than the next two
+        together, as in the corrected version of TimSort.
+        */
+        void mergeCollapse()
+        {
+            final int[] len = runLength;
+            while (stackSize > 1) {
+                int k = stackSize - 2;
+                if ((k > 0 && len[k - 1] <= len[k] + len[k + 1])
+                    || (k > 1 && len[k - 2] <= len[k - 1] + len[k]))
+                {
+                    if (len[k - 1] < len[k + 1]) {
+                        k--;
+                    }
+                } else if (len[k] > len[k + 1]) {
+                    break;
+                }
+                mergeAt(k);
+            }
+        }
+
+        void mergeForceCollapse()
+        {
+            while (stackSize > 1) {
+                int k = stackSize - 2;
+                if (k > 0 && runLength[k - 1] < runLength[k + 1]) {
+                    k--;
+                }
+                mergeAt(k);
+            }
+        }
+
+        private void mergeAt(int k)
+        {
+            int lo = runStart[k];
+            int mid = runStart[k + 1];
+            int hi = mid + runLength[k + 1];
+            runLength[k] += runLength[k + 1];
+            if (k == stackSize - 3) {
+                runStart[k + 1] = runStart[k + 2];
+                runLength[k + 1] = runLength[k + 2];
+            }
+            stackSize--;
+            if (cmp.compare(a[mid - 1], a[mid]) > 0) {
+                if (tmp == null || tmp.length < mid - lo) {
+                    tmp = new Object[Math.max(mid - lo, a.length / 2)];
+                }
+                merge(a, tmp, lo, mid, hi, cmp);
+            }
+        }
+    }
+
+    /*
+    Return the end of the run starting at start, after reversing it if it
+    is strictly descending. Equal elements never belong to a descending run,
+    so reversing it keeps the sort stable.
+    */
+    private static int findRun(Object[] a, int start, int n, Comparator<Object> cmp)
+    {
+        int end = start + 1;
+        if (end == n) {
+            return end;
+        }
+        if (cmp.compare(a[start], a[end]) > 0) {
+            end++;
+            while (end < n && cmp.compare(a[end - 1], a[end]) > 0) {
+                end++;
+            }
+            for (int l = start, h = end - 1; l < h; l++, h--) {
+                swap(a, l, h);
+            }
+        } else {
+            end++;
+            while (end < n && cmp.compare(a[end - 1], a[end]) <= 0) {
+                end++;
+            }
+        }
+        return end;
+    }
+
+    /*
+    Sort [start, end) given that [start, sorted) already is, finding where
+    each following element goes with a binary search. Each element is placed
+    after the ones comparing equal to it, which keeps the sort stable.
+    */
+    private static void binaryInsertionSort(Object[] a, int start, int sorted, int end,
+                                            Comparator<Object> cmp)
+    {
+        for (int i = sorted; i < end; i++) {
+            Object x = a[i];
+            int lo = start;
+            int hi = i;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cmp.compare(x, a[mid]) < 0) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            System.arraycopy(a, lo, a, lo + 1, i - lo);
+            a[lo] = x;
+        }
+    }
+
+    /*
+    Merge the sorted ranges [lo, mid) and [mid, hi), taking elements from
+    the left one first when they compare equal.
+    */
+    private static void merge(Object[] a, Object[] tmp, int lo, int mid, int hi,
+                              Comparator<Object> cmp)
+    {
+        final int leftLength = mid - lo;
+        System.arraycopy(a, lo, tmp, 0, leftLength);
+        int i = 0;
+        int j = mid;
+        int k = lo;
+        while (i < leftLength && j < hi) {
+            if (cmp.compare(tmp[i], a[j]) > 0) {
+                a[k++] = a[j++];
+            } else {
+                a[k++] = tmp[i++];
+            }
+        }
+        System.arraycopy(tmp, i, a, k, leftLength - i);
+    }
+
     private static void swap(Object[] a, int l, int h)
     {
         final Object tmp = a[l];
@@ -32,7 +32,7 @@ class TokenStream
 
     private final static char BYTE_ORDER_MARK = '\uFEFF';
 
-    TokenStream(Parser parser, Reader sourceReader, String sourceString,
+    TokenStream(Parser parser, Reader sourceReader, CharSequence sourceString,
                 int lineno)
     {
         this.parser = parser;
@@ -434,7 +434,7 @@ class TokenStream
         return id & 0xff;
     }
 
-    final String getSourceString() { return sourceString; }
+    final CharSequence getSourceString() { return sourceString; }
 
     final int getLineno() { return lineno; }
 
@@ -531,6 +531,7 @@ class TokenStream
                         addToString(escapeVal);
                         isUnicodeEscapeStart = false;
                     } else {
+                        addAsciiIdentifierPart();
                         c = getChar();
                         if (c == '\\') {
                             c = getChar();
@@ -553,7 +554,7 @@ class TokenStream
                 }
                 ungetChar(c);
 
-                String str = getStringFromBuffer();
+                String str = getInternedStringFromBuffer();
                 if (!containsEscape) {
                     // OPT we shouldn't have to make a string (object!) to
                     // check if it's a keyword.
@@ -571,7 +572,7 @@ class TokenStream
                         }
                         // Save the string in case we need to use in
                         // object literal definitions.
-                        this.string = (String)allStrings.intern(str);
+                        this.string = str;
                         if (result != Token.RESERVED) {
                             return result;
                         } else if (parser.compilerEnv.getLanguageVersion() >= Context.VERSION_ES6) {
@@ -585,7 +586,7 @@ class TokenStream
                     // we convert the last character back to unicode
                     str = convertLastCharToHex(str);
                 }
-                this.string = (String)allStrings.intern(str);
+                this.string = str;
                 return Token.NAME;
             }
 
@@ -812,8 +813,7 @@ class TokenStream
                     c = getChar(false);
                 }
 
-                String str = getStringFromBuffer();
-                this.string = (String)allStrings.intern(str);
+                this.string = getInternedStringFromBuffer();
                 return Token.STRING;
             }
 
@@ -1430,6 +1430,94 @@ class TokenStream
         return new String(stringBuffer, 0, stringBufferTop);
     }
 
+    /**
+     * Returns the string in stringBuffer, which is taken from the strings
+     * scanned before when it was seen already: names and string literals
+     * repeat a lot in scripts, and this saves allocating a string for
+     * each occurrence.
+     */
+    private String getInternedStringFromBuffer()
+    {
+        tokenEnd = cursor;
+        char[] buffer = stringBuffer;
+        int length = stringBufferTop;
+        int hash = 0;
+        for (int i = 0; i != length; ++i) {
+            hash = 31 * hash + buffer[i];
+        }
+        String[] table = internedStrings;
+        int mask = table.length - 1;
+        int index = (hash ^ (hash >>> 16)) & mask;
+        for (;;) {
+            String str = table[index];
+            if (str == null) {
+                break;
+            }
+            if (str.hashCode() == hash && str.length() == length) {
+                int i = 0;
+                while (i != length && str.charAt(i) == buffer[i]) {
+                    ++i;
+                }
+                if (i == length) {
+                    return str;
+                }
+            }
+            index = (index + 1) & mask;
+        }
+        String str = new String(buffer, 0, length);
+        table[index] = str;
+        if (++internedStringCount * 2 > table.length) {
+            String[] newTable = new String[table.length * 2];
+            mask = newTable.length - 1;
+            for (String s : table) {
+                if (s != null) {
+                    int h = s.hashCode();
+                    int i = (h ^ (h >>> 16)) & mask;
+                    while (newTable[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    newTable[i] = s;
+                }
+            }
+            internedStrings = newTable;
+        }
+        return str;
+    }
+
+    /**
+     * Adds the ASCII identifier characters that follow in the source to
+     * the string in progress, reading them directly rather than through
+     * getChar(). Stops at anything else, which is left to getChar().
+     */
+    private void addAsciiIdentifierPart()
+    {
+        if (ungetCursor != 0) {
+            return;
+        }
+        int start = sourceCursor;
+        int end = sourceEnd;
+        int i = start;
+        if (sourceString != null) {
+            CharSequence source = sourceString;
+            while (i != end && isAsciiIdentifierPart(source.charAt(i))) {
+                addToString(source.charAt(i++));
+            }
+        } else {
+            char[] source = sourceBuffer;
+            while (i != end && isAsciiIdentifierPart(source[i])) {
+                addToString(source[i++]);
+            }
+        }
+        sourceCursor = i;
+        cursor += i - start;
+    }
+
+    private static boolean isAsciiIdentifierPart(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+            || (c >= '0' && c <= '9') || c == '_' || c == '$';
+    }
+
     private void addToString(int c)
     {
         int N = stringBufferTop;
@@ -1634,7 +1722,7 @@ class TokenStream
 
     private final String substring(int beginIndex, int endIndex) {
         if (sourceString != null) {
-            return sourceString.substring(beginIndex, endIndex);
+            return sourceString.subSequence(beginIndex, endIndex).toString();
         } else {
             int count = endIndex - beginIndex;
             return new String(sourceBuffer, beginIndex, count);
@@ -1784,7 +1872,7 @@ class TokenStream
      final String getAndResetCurrentComment() {
         if (sourceString != null) {
             if (isMarkingComment()) Kit.codeBug();
-            return sourceString.substring(tokenBeg, tokenEnd);
+            return sourceString.subSequence(tokenBeg, tokenEnd).toString();
         } else {
             if (!isMarkingComment()) Kit.codeBug();
             StringBuilder comment = new StringBuilder(commentPrefix);
@@ -1829,7 +1917,8 @@ class TokenStream
 
     private char[] stringBuffer = new char[128];
     private int stringBufferTop;
-    private ObjToIntMap allStrings = new ObjToIntMap(50);
+    private String[] internedStrings = new String[256];
+    private int internedStringCount;
 
     // Room to backtrace from to < on failed match of the last - in <!--
     private final int[] ungetBuffer = new int[3];
@@ -1841,7 +1930,7 @@ class TokenStream
     private int lineEndChar = -1;
     int lineno;
 
-    private String sourceString;
+    private CharSequence sourceString;
     private Reader sourceReader;
     private char[] sourceBuffer;
     private int sourceEnd;
@@ -8,6 +8,9 @@
 
 package org.mozilla.javascript;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * Embeddings that wish to provide their own custom wrappings for Java
  * objects may extend this class and call
@@ -74,6 +77,19 @@ public class WrapFactory
         if (cls.isArray()) {
             return NativeJavaArray.wrap(scope, obj);
         }
+        JavaObjectWrapperCache cache = javaObjectCache;
+        if (cache != null && scope != null) {
+            Scriptable topScope = ScriptableObject.getTopLevelScope(scope);
+            Scriptable wrapper = cache.get(obj, topScope, staticType);
+            if (wrapper == null) {
+                wrapper = wrapAsJavaObject(cx, scope, obj, staticType);
+                // Overrides may return wrappers the cache can not verify
+                if (wrapper instanceof Wrapper) {
+                    cache.put(obj, topScope, staticType, wrapper);
+                }
+            }
+            return wrapper;
+        }
         return wrapAsJavaObject(cx, scope, obj, staticType);
     }
 
@@ -105,6 +121,12 @@ public class WrapFactory
      * when they can not convert <tt>javaObject</tt> to JavaScript primitive
      * value or JavaScript array.
      * <p>
+     * Instances of <tt>java.util.List</tt> are wrapped as
+     * {@link NativeJavaList}, other instances of <tt>java.lang.Iterable</tt>
+     * as {@link NativeJavaIterable} and, if
+     * {@link Context#FEATURE_ENABLE_JAVA_MAP_ACCESS} is enabled, instances
+     * of <tt>java.util.Map</tt> as {@link NativeJavaMap}.
+     * <p>
      * Subclasses can override the method to provide custom wrappers
      * for Java objects.
      * @param cx the current Context for this thread
@@ -117,6 +139,14 @@ public class WrapFactory
     public Scriptable wrapAsJavaObject(Context cx, Scriptable scope,
                                        Object javaObject, Class<?> staticType)
     {
+        if (javaObject instanceof List) {
+            return new NativeJavaList(scope, javaObject, staticType);
+        } else if (javaObject instanceof Map
+                   && cx.hasFeature(Context.FEATURE_ENABLE_JAVA_MAP_ACCESS)) {
+            return new NativeJavaMap(scope, javaObject, staticType);
+        } else if (javaObject instanceof Iterable) {
+            return new NativeJavaIterable(scope, javaObject, staticType);
+        }
         return new NativeJavaObject(scope, javaObject, staticType);
     }
 
@@ -167,6 +197,70 @@ public class WrapFactory
         javaPrimitiveWrap = value;
     }
 
+    /**
+     * Return <code>true</code> if {@link #wrap(Context, Scriptable, Object,
+     * Class)} reuses the wrapper previously created for the same Java object.
+     * <p>
+     * With the cache enabled, passing the same Java instance to scripts
+     * repeatedly, for example by reading a Java field or calling a getter
+     * in a loop, returns the same wrapper instead of allocating a new one.
+     * As a consequence, wrappers of the same Java object compare equal
+     * with <code>===</code>. Wrappers are only reused within the same
+     * top-level scope and for the same static type, and the cache does not
+     * prevent wrappers or Java objects from being garbage collected.
+     * Only wrappers implementing {@link Wrapper} are reused, so results of
+     * {@link #wrapAsJavaObject(Context, Scriptable, Object, Class)}
+     * overrides that return other objects are never cached.
+     * <p>
+     * The cache is disabled by default.
+     * Use {@link #setJavaObjectCacheEnabled(boolean)} to change this.
+     */
+    public final boolean isJavaObjectCacheEnabled()
+    {
+        return javaObjectCache != null;
+    }
+
+    /**
+     * @see #isJavaObjectCacheEnabled()
+     */
+    public final void setJavaObjectCacheEnabled(boolean value)
+    {
+        Context cx = Context.getCurrentContext();
+        if (cx != null && cx.isSealed()) {
+            Context.onSealedMutation();
+        }
+        if (value != isJavaObjectCacheEnabled()) {
+            javaObjectCache = value ? new JavaObjectWrapperCache() : null;
+        }
+    }
+
+    /**
+     * Returns how many times {@link #wrap(Context, Scriptable, Object, Class)}
+     * reused a cached wrapper since the cache was enabled, or 0 if the cache
+     * is disabled.
+     *
+     * @see #isJavaObjectCacheEnabled()
+     */
+    public final long getJavaObjectCacheHits()
+    {
+        JavaObjectWrapperCache cache = javaObjectCache;
+        return cache == null ? 0 : cache.getHits();
+    }
+
+    /**
+     * Returns how many times {@link #wrap(Context, Scriptable, Object, Class)}
+     * had to create a new wrapper since the cache was enabled, or 0 if the
+     * cache is disabled.
+     *
+     * @see #isJavaObjectCacheEnabled()
+     */
+    public final long getJavaObjectCacheMisses()
+    {
+        JavaObjectWrapperCache cache = javaObjectCache;
+        return cache == null ? 0 : cache.getMisses();
+    }
+
     private boolean javaPrimitiveWrap = true;
+    private volatile JavaObjectWrapperCache javaObjectCache;
 
 }
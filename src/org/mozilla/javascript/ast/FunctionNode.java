@@ -82,6 +82,8 @@ public class FunctionNode extends ScriptNode {
     private int functionType;
     private boolean needsActivation;
     private boolean isGenerator;
+    private boolean isLazy;
+    private int numericCompareOrder;
     private List<Node> generatorResumePoints;
     private Map<Node,int[]> liveLocals;
     private AstNode memberExprNode;
@@ -286,6 +288,31 @@ public class FunctionNode extends ScriptNode {
         isGenerator = true;
     }
 
+    /**
+     * Returns true if the body of this function was not transformed and is
+     * to be compiled from its raw source when the function is first called.
+     * @see #getRawSource
+     */
+    public boolean isLazy() {
+        return isLazy;
+    }
+
+    public void setIsLazy() {
+        isLazy = true;
+    }
+
+    /**
+     * Returns 1 if this function is written as {@code (a, b) => a - b},
+     * -1 if it is written as {@code (a, b) => b - a}, and 0 otherwise.
+     */
+    public int getNumericCompareOrder() {
+        return numericCompareOrder;
+    }
+
+    public void setNumericCompareOrder(int order) {
+        numericCompareOrder = order;
+    }
+
     public void addResumptionPoint(Node target) {
         if (generatorResumePoints == null)
             generatorResumePoints = new ArrayList<Node>();
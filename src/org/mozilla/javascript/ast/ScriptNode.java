@@ -23,6 +23,10 @@ public class ScriptNode extends Scope {
     private int encodedSourceEnd = -1;
     private String sourceName;
     private String encodedSource;
+    private String rawSource;
+    private int rawSourceStart = -1;
+    private int rawSourceEnd = -1;
+    private int rawBodyStart = -1;
     private int endLineno = -1;
 
     private List<FunctionNode> functions;
@@ -135,6 +139,44 @@ public class ScriptNode extends Scope {
         return encodedSource;
     }
 
+    /**
+     * Returns the source text this script or function was parsed from,
+     * or {@code null} if it was not retained.  The text of this node
+     * is the range from {@link #getRawSourceStart} to
+     * {@link #getRawSourceEnd}.
+     */
+    public String getRawSource() {
+        return rawSource;
+    }
+
+    public int getRawSourceStart() {
+        return rawSourceStart;
+    }
+
+    public int getRawSourceEnd() {
+        return rawSourceEnd;
+    }
+
+    /**
+     * Returns the offset of the body in the raw source, which for
+     * functions is the offset of the opening brace.
+     */
+    public int getRawBodyStart() {
+        return rawBodyStart;
+    }
+
+    /**
+     * Used by the code generator.
+     * @see #getRawSource
+     */
+    public void setRawSource(String source, int start, int bodyStart,
+                             int end) {
+        this.rawSource = source;
+        this.rawSourceStart = start;
+        this.rawBodyStart = bodyStart;
+        this.rawSourceEnd = end;
+    }
+
     public int getBaseLineno() {
         return lineno;
     }
@@ -306,8 +306,10 @@ public class JsonParser {
                 readDigits();
             }
         }
-        String num = src.substring(numberStart, pos);
-        final double dval = Double.parseDouble(num);
+        double dval = ScriptRuntime.decimalToNumber(src, numberStart, pos - 1);
+        if (dval != dval) {
+            dval = Double.parseDouble(src.substring(numberStart, pos));
+        }
         final int ival = (int)dval;
         if (ival == dval) {
             return Integer.valueOf(ival);
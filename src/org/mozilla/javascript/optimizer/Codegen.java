@@ -15,7 +15,10 @@ import org.mozilla.javascript.ast.ScriptNode;
 import org.mozilla.classfile.*;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 
 import static org.mozilla.classfile.ClassFileWriter.ACC_FINAL;
 import static org.mozilla.classfile.ClassFileWriter.ACC_PRIVATE;
@@ -231,10 +234,30 @@ public class Codegen implements Evaluator
         for (int i = 0, N = scriptOrFn.getFunctionCount(); i != N; ++i) {
             FunctionNode fn = scriptOrFn.getFunctionNode(i);
             new OptFunctionNode(fn);
+            // Bodies too large for one method can only be split into
+            // several if their variables live in an activation
+            if (!fn.requiresActivation()
+                && countNodes(fn, MAX_REGISTER_FUNCTION_NODES)
+                   > MAX_REGISTER_FUNCTION_NODES)
+            {
+                fn.setRequiresActivation();
+            }
             initOptFunctions_r(fn);
         }
     }
 
+    private static int countNodes(Node node, int limit)
+    {
+        int count = 1;
+        for (Node child = node.getFirstChild();
+             child != null && count <= limit;
+             child = child.getNext())
+        {
+            count += countNodes(child, limit - count);
+        }
+        return count;
+    }
+
     private void initScriptNodesData(ScriptNode scriptOrFn)
     {
         ObjArray x = new ObjArray();
@@ -293,6 +316,9 @@ public class Codegen implements Evaluator
         generateNativeFunctionOverrides(cfw, encodedSource);
 
         int count = scriptOrFnNodes.length;
+        if (count >= DEFERRED_STACK_MAPS_THRESHOLD) {
+            cfw.deferStackMaps();
+        }
         for (int i = 0; i != count; ++i) {
             ScriptNode n = scriptOrFnNodes[i];
 
@@ -321,6 +347,11 @@ public class Codegen implements Evaluator
         emitRegExpInit(cfw);
         emitConstantDudeInitializers(cfw);
 
+        // Stack maps, which take most of the time spent writing the
+        // class, are computed in parallel when the script has many
+        // functions
+        cfw.finishMethods(ForkJoinPool.getCommonPoolParallelism() > 1
+                          ? ForkJoinPool.commonPool() : null);
         return cfw.toByteArray();
     }
 
@@ -757,12 +788,23 @@ public class Codegen implements Evaluator
         final int Do_getParamOrVarName    = 3;
         final int Do_getEncodedSource     = 4;
         final int Do_getParamOrVarConst   = 5;
-        final int SWITCH_COUNT            = 6;
+        final int Do_getNumericCompareOrder = 6;
+        final int SWITCH_COUNT            = 7;
+
+        boolean hasNumericCompare = false;
+        for (int i = 0; i != scriptOrFnNodes.length; ++i) {
+            if (getNumericCompareOrder(scriptOrFnNodes[i]) != 0) {
+                hasNumericCompare = true;
+            }
+        }
 
         for (int methodIndex = 0; methodIndex != SWITCH_COUNT; ++methodIndex) {
             if (methodIndex == Do_getEncodedSource && encodedSource == null) {
                 continue;
             }
+            if (methodIndex == Do_getNumericCompareOrder && !hasNumericCompare) {
+                continue;
+            }
 
             // Generate:
             //   prologue;
@@ -802,6 +844,11 @@ public class Codegen implements Evaluator
                                 ACC_PUBLIC);
                 cfw.addPush(encodedSource);
                 break;
+              case Do_getNumericCompareOrder:
+                methodLocals = 1; // Only this
+                cfw.startMethod("getNumericCompareOrder", "()I",
+                                ACC_PUBLIC);
+                break;
               default:
                 throw Kit.codeBug();
             }
@@ -944,6 +991,11 @@ public class Codegen implements Evaluator
                     cfw.add(ByteCode.ARETURN);
                     break;
 
+                  case Do_getNumericCompareOrder:
+                    cfw.addPush(getNumericCompareOrder(n));
+                    cfw.add(ByteCode.IRETURN);
+                    break;
+
                   default:
                     throw Kit.codeBug();
                 }
@@ -953,6 +1005,14 @@ public class Codegen implements Evaluator
         }
     }
 
+    private static int getNumericCompareOrder(ScriptNode n)
+    {
+        if (n.getType() != Token.FUNCTION) {
+            return 0;
+        }
+        return ((FunctionNode) n).getNumericCompareOrder();
+    }
+
     private void emitRegExpInit(ClassFileWriter cfw)
     {
         // precompile all regexp literals
@@ -1235,6 +1295,18 @@ public class Codegen implements Evaluator
         = "(Lorg/mozilla/javascript/Scriptable;"
           +"Lorg/mozilla/javascript/Context;I)V";
 
+    /**
+     * Number of scripts and functions from which the stack maps of a
+     * class are computed after all its code was generated.
+     */
+    private static final int DEFERRED_STACK_MAPS_THRESHOLD = 32;
+
+    /**
+     * Number of nodes from which a function keeps its variables in an
+     * activation rather than in registers, as its code likely exceeds 64K.
+     */
+    private static final int MAX_REGISTER_FUNCTION_NODES = 20000;
+
     private static final Object globalLock = new Object();
     private static int globalSerialClassCounter;
 
@@ -1289,10 +1361,14 @@ class BodyCodegen
         } else {
             treeTop = scriptOrFn;
         }
+        splitStatements = !hasVarsInRegs && !isGenerator
+                          && (treeTop.getType() == Token.SCRIPT
+                              || treeTop.getType() == Token.BLOCK);
         generateStatement(treeTop);
         generateEpilogue();
 
         cfw.stopMethod((short)(localsMax + 1));
+        generateParts();
 
         if (isGenerator) {
             // generate the user visible method which when invoked will
@@ -1315,9 +1391,200 @@ class BodyCodegen
                     default:
                         Kit.codeBug(Token.typeToName(type));
                 }
+                generateParts();
+            }
+        }
+
+    }
+
+    /**
+     * Generates a list of statements, starting with the given one. In a
+     * script or in a function that needs an activation, once the method
+     * grows past METHOD_SPLIT_OFFSET, runs of statements that neither
+     * return nor jump out of themselves are generated into methods of their
+     * own so that large bodies still fit into the JVM limit of 64K per
+     * method. This applies to the statements of nested blocks, loops and
+     * with or let scopes as well.
+     */
+    private void generateStatements(Node child)
+    {
+        while (child != null) {
+            if (splitStatements
+                && cfw.getCurrentCodeOffset() > METHOD_SPLIT_OFFSET
+                && isSelfContained(child))
+            {
+                Node end = child.getNext();
+                while (end != null && isSelfContained(end)) {
+                    end = end.getNext();
+                }
+                addStatementPartCall(addPart(child, end, 0, false));
+                child = end;
+            } else {
+                generateStatement(child);
+                child = child.getNext();
+            }
+        }
+    }
+
+    private void addStatementPartCall(CodePart part)
+    {
+        cfw.addALoad(funObjLocal);
+        cfw.addALoad(contextLocal);
+        cfw.addALoad(variableObjectLocal);
+        cfw.addALoad(thisObjLocal);
+        cfw.addALoad(argsLocal);
+        if (popvLocal >= 0) {
+            cfw.addALoad(popvLocal);
+        } else {
+            cfw.add(ByteCode.ACONST_NULL);
+        }
+        cfw.addInvoke(ByteCode.INVOKEVIRTUAL, codegen.mainClassName,
+                      part.methodName, STATEMENT_PART_SIGNATURE);
+        if (popvLocal >= 0) {
+            cfw.addAStore(popvLocal);
+        } else {
+            cfw.add(ByteCode.POP);
+        }
+    }
+
+    private void generateStatementPart(CodePart part)
+    {
+        initBodyGeneration();
+        splitStatements = true;
+        argsLocal = firstFreeLocal++;
+        popvLocal = firstFreeLocal++;
+        localsMax = firstFreeLocal;
+        cfw.startMethod(part.methodName, STATEMENT_PART_SIGNATURE,
+                        ACC_PRIVATE);
+        if (compilerEnv.isGenerateObserverCount()) {
+            saveCurrentCodeOffset();
+        }
+        for (Node child = part.node; child != part.end;
+             child = child.getNext())
+        {
+            if (child != part.node
+                && cfw.getCurrentCodeOffset() > METHOD_SPLIT_OFFSET)
+            {
+                // Continue in the next part
+                addStatementPartCall(addPart(child, part.end, 0, false));
+                break;
             }
+            generateStatement(child);
+        }
+        if (compilerEnv.isGenerateObserverCount()) {
+            addInstructionCount();
         }
+        cfw.addALoad(popvLocal);
+        cfw.add(ByteCode.ARETURN);
+        cfw.stopMethod((short)(localsMax + 1));
+    }
 
+    /**
+     * Returns true if the statement can be generated into a method of its
+     * own: it does not return, all its jumps and local block references
+     * stay inside it, it is no jump target and it does not enter or leave
+     * a with scope, which would change the scope of the statements after
+     * it.
+     */
+    private static boolean isSelfContained(Node statement)
+    {
+        int type = statement.getType();
+        if (type == Token.TARGET || type == Token.ENTERWITH
+            || type == Token.LEAVEWITH)
+        {
+            return false;
+        }
+        Set<Node> inside = new HashSet<Node>();
+        List<Node> references = new ArrayList<Node>();
+        if (!collectReferences(statement, inside, references)) {
+            return false;
+        }
+        for (Node target : references) {
+            if (!inside.contains(target)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean collectReferences(Node node, Set<Node> inside,
+                                             List<Node> references)
+    {
+        int type = node.getType();
+        if (type == Token.RETURN || type == Token.RETURN_RESULT
+            || type == Token.YIELD)
+        {
+            return false;
+        }
+        inside.add(node);
+        if (node instanceof Jump) {
+            Jump jump = (Jump) node;
+            if (jump.target != null) {
+                references.add(jump.target);
+            }
+            Node target2 = null;
+            if (type == Token.TRY) {
+                target2 = jump.getFinally();
+            } else if (type == Token.SWITCH) {
+                target2 = jump.getDefault();
+            } else if (type == Token.LOOP) {
+                target2 = jump.getContinue();
+            } else if (type == Token.BREAK || type == Token.CONTINUE) {
+                target2 = jump.getJumpStatement();
+            } else if (type == Token.LABEL) {
+                target2 = jump.getLoop();
+            }
+            if (target2 != null) {
+                references.add(target2);
+            }
+        }
+        Object localBlock = node.getProp(Node.LOCAL_BLOCK_PROP);
+        if (localBlock != null) {
+            references.add((Node) localBlock);
+        }
+        for (Node child = node.getFirstChild(); child != null;
+             child = child.getNext())
+        {
+            if (!collectReferences(child, inside, references)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private CodePart addPart(Node node, Node end, int start,
+                             boolean hasGetterSetters)
+    {
+        if (parts == null) {
+            parts = new ArrayList<CodePart>();
+        }
+        CodePart part = new CodePart();
+        part.methodName = codegen.getBodyMethodName(scriptOrFn) + "_part"
+                          + (++partCount);
+        part.node = node;
+        part.end = end;
+        part.start = start;
+        part.hasGetterSetters = hasGetterSetters;
+        parts.add(part);
+        return part;
+    }
+
+    private void generateParts()
+    {
+        if (parts == null) {
+            return;
+        }
+        // parts list may grow while we're looping
+        for (int i = 0; i < parts.size(); i++) {
+            CodePart part = parts.get(i);
+            int type = part.node.getType();
+            if (type == Token.ARRAYLIT || type == Token.OBJECTLIT) {
+                generateLiteralPart(part);
+            } else {
+                generateStatementPart(part);
+            }
+        }
+        parts.clear();
     }
 
     // This creates a the user-facing function that returns a NativeGenerator
@@ -1866,10 +2133,7 @@ class BodyCodegen
                     // cases like while (1) {}
                     addInstructionCount(1);
                 }
-                while (child != null) {
-                    generateStatement(child);
-                    child = child.getNext();
-                }
+                generateStatements(child);
                 break;
 
               case Token.LOCAL_BLOCK: {
@@ -1881,10 +2145,7 @@ class BodyCodegen
                     cfw.addAStore(local);
                 }
                 node.putIntProp(Node.LOCAL_PROP, local);
-                while (child != null) {
-                    generateStatement(child);
-                    child = child.getNext();
-                }
+                generateStatements(child);
                 releaseWordLocal((short)local);
                 node.removeProp(Node.LOCAL_PROP);
                 inLocalBlock = prevLocal;
@@ -3091,8 +3352,12 @@ class BodyCodegen
         }
 
         // If code budget is tight swap out literals into separate method
-        if (!topLevel && (count > 10 || cfw.getCurrentCodeOffset() > 30000)
-                && !hasVarsInRegs && !isGenerator && !inLocalBlock) {
+        if (!topLevel
+                && (count > 10
+                    || cfw.getCurrentCodeOffset() > METHOD_SPLIT_OFFSET)
+                && !isGenerator
+                && (!hasVarsInRegs && !inLocalBlock
+                    || isConstantLiteral(node))) {
             if (literals == null) {
                 literals = new LinkedList<Node>();
             }
@@ -3128,6 +3393,8 @@ class BodyCodegen
                 cfw.add(ByteCode.SWAP);
                 cfw.add(ByteCode.AASTORE);
             }
+        } else if (topLevel && count > LITERAL_PART_MIN_ELEMENTS) {
+            addLiteralParts(node, count, false);
         } else {
             addNewObjectArray(count);
             for (int i = 0; i != count; ++i) {
@@ -3163,17 +3430,20 @@ class BodyCodegen
         for (int i = 0; i != count; ++i) {
             cfw.add(ByteCode.DUP);
             cfw.addPush(i);
-            Object id = properties[i];
-            if (id instanceof String) {
-                cfw.addPush((String)id);
-            } else {
-                cfw.addPush(((Integer)id).intValue());
-                addScriptRuntimeInvoke("wrapInt", "(I)Ljava/lang/Integer;");
-            }
+            addLoadPropertyId(properties[i]);
             cfw.add(ByteCode.AASTORE);
         }
     }
 
+    private void addLoadPropertyId(Object id) {
+        if (id instanceof String) {
+            cfw.addPush((String)id);
+        } else {
+            cfw.addPush(((Integer)id).intValue());
+            addScriptRuntimeInvoke("wrapInt", "(I)Ljava/lang/Integer;");
+        }
+    }
+
     /** load array with property values */
     private void addLoadPropertyValues(Node node, Node child, int count) {
         if (isGenerator) {
@@ -3201,26 +3471,45 @@ class BodyCodegen
             for (int i = 0; i != count; ++i) {
                 cfw.add(ByteCode.DUP);
                 cfw.addPush(i);
-                int childType = child2.getType();
-                if (childType == Token.GET || childType == Token.SET || childType == Token.METHOD) {
-                    generateExpression(child2.getFirstChild(), node);
-                } else {
-                    generateExpression(child2, node);
-                }
+                addLoadPropertyValue(node, child2);
                 cfw.add(ByteCode.AASTORE);
                 child2 = child2.getNext();
             }
         }
     }
 
+    private void addLoadPropertyValue(Node node, Node child) {
+        int childType = child.getType();
+        if (childType == Token.GET || childType == Token.SET || childType == Token.METHOD) {
+            generateExpression(child.getFirstChild(), node);
+        } else {
+            generateExpression(child, node);
+        }
+    }
+
+    private void addLoadGetterSetterFlag(Node child) {
+        int childType = child.getType();
+        if (childType == Token.GET) {
+            cfw.add(ByteCode.ICONST_M1);
+        } else if (childType == Token.SET) {
+            cfw.add(ByteCode.ICONST_1);
+        } else {
+            cfw.add(ByteCode.ICONST_0);
+        }
+    }
+
     private void visitObjectLiteral(Node node, Node child, boolean topLevel)
     {
         Object[] properties = (Object[])node.getProp(Node.OBJECT_IDS_PROP);
         int count = properties.length;
 
         // If code budget is tight swap out literals into separate method
-        if (!topLevel && (count > 10 || cfw.getCurrentCodeOffset() > 30000)
-                && !hasVarsInRegs && !isGenerator && !inLocalBlock) {
+        if (!topLevel
+                && (count > 10
+                    || cfw.getCurrentCodeOffset() > METHOD_SPLIT_OFFSET)
+                && !isGenerator
+                && (!hasVarsInRegs && !inLocalBlock
+                    || isConstantLiteral(node))) {
             if (literals == null) {
                 literals = new LinkedList<Node>();
             }
@@ -3240,18 +3529,6 @@ class BodyCodegen
             return;
         }
 
-        if (isGenerator) {
-            // TODO: this is actually only necessary if the yield operation is
-            // a child of this object or its children (bug 757410)
-            addLoadPropertyValues(node, child, count);
-            addLoadPropertyIds(properties, count);
-            // swap property-values and property-ids arrays
-            cfw.add(ByteCode.SWAP);
-        } else {
-            addLoadPropertyIds(properties, count);
-            addLoadPropertyValues(node, child, count);
-        }
-
         // check if object literal actually has any getters or setters
         boolean hasGetterSetters = false;
         Node child2 = child;
@@ -3263,27 +3540,37 @@ class BodyCodegen
             }
             child2 = child2.getNext();
         }
-        // create getter/setter flag array
-        if (hasGetterSetters) {
-            cfw.addPush(count);
-            cfw.add(ByteCode.NEWARRAY, ByteCode.T_INT);
-            child2 = child;
-            for (int i = 0; i != count; ++i) {
-                cfw.add(ByteCode.DUP);
-                cfw.addPush(i);
-                int childType = child2.getType();
-                if (childType == Token.GET) {
-                    cfw.add(ByteCode.ICONST_M1);
-                } else if (childType == Token.SET) {
-                    cfw.add(ByteCode.ICONST_1);
-                } else {
-                    cfw.add(ByteCode.ICONST_0);
+
+        if (!isGenerator && topLevel && count > LITERAL_PART_MIN_ELEMENTS) {
+            addLiteralParts(node, count, hasGetterSetters);
+        } else {
+            if (isGenerator) {
+                // TODO: this is actually only necessary if the yield operation is
+                // a child of this object or its children (bug 757410)
+                addLoadPropertyValues(node, child, count);
+                addLoadPropertyIds(properties, count);
+                // swap property-values and property-ids arrays
+                cfw.add(ByteCode.SWAP);
+            } else {
+                addLoadPropertyIds(properties, count);
+                addLoadPropertyValues(node, child, count);
+            }
+
+            // create getter/setter flag array
+            if (hasGetterSetters) {
+                cfw.addPush(count);
+                cfw.add(ByteCode.NEWARRAY, ByteCode.T_INT);
+                child2 = child;
+                for (int i = 0; i != count; ++i) {
+                    cfw.add(ByteCode.DUP);
+                    cfw.addPush(i);
+                    addLoadGetterSetterFlag(child2);
+                    cfw.add(ByteCode.IASTORE);
+                    child2 = child2.getNext();
                 }
-                cfw.add(ByteCode.IASTORE);
-                child2 = child2.getNext();
+            } else {
+                cfw.add(ByteCode.ACONST_NULL);
             }
-        } else {
-            cfw.add(ByteCode.ACONST_NULL);
         }
 
         cfw.addALoad(contextLocal);
@@ -3297,6 +3584,166 @@ class BodyCodegen
              +")Lorg/mozilla/javascript/Scriptable;");
     }
 
+    /**
+     * Creates the element arrays of a literal with too many elements to
+     * fill in one method and fills them in methods of their own. Leaves
+     * the arrays on the stack like the inline code: the values of an array
+     * literal, or the ids, the values and the getter/setter flags (or
+     * null) of an object literal.
+     */
+    private void addLiteralParts(Node node, int count,
+                                 boolean hasGetterSetters)
+    {
+        boolean isObject = node.getType() == Token.OBJECTLIT;
+        short idsLocal = -1;
+        short flagsLocal = -1;
+        if (isObject) {
+            addNewObjectArray(count);
+            idsLocal = getNewWordLocal();
+            cfw.addAStore(idsLocal);
+        }
+        addNewObjectArray(count);
+        short valuesLocal = getNewWordLocal();
+        cfw.addAStore(valuesLocal);
+        if (hasGetterSetters) {
+            cfw.addPush(count);
+            cfw.add(ByteCode.NEWARRAY, ByteCode.T_INT);
+            flagsLocal = getNewWordLocal();
+            cfw.addAStore(flagsLocal);
+        }
+
+        addLiteralPartCall(addPart(node, null, 0, hasGetterSetters),
+                           idsLocal, valuesLocal, flagsLocal);
+
+        if (isObject) {
+            cfw.addALoad(idsLocal);
+            releaseWordLocal(idsLocal);
+        }
+        cfw.addALoad(valuesLocal);
+        releaseWordLocal(valuesLocal);
+        if (hasGetterSetters) {
+            cfw.addALoad(flagsLocal);
+            releaseWordLocal(flagsLocal);
+        } else if (isObject) {
+            cfw.add(ByteCode.ACONST_NULL);
+        }
+    }
+
+    private void addLiteralPartCall(CodePart part, short idsLocal,
+                                    short valuesLocal, short flagsLocal)
+    {
+        cfw.addALoad(funObjLocal);
+        cfw.addALoad(contextLocal);
+        cfw.addALoad(variableObjectLocal);
+        cfw.addALoad(thisObjLocal);
+        cfw.addALoad(argsLocal);
+        if (idsLocal >= 0) {
+            cfw.addALoad(idsLocal);
+        } else {
+            cfw.add(ByteCode.ACONST_NULL);
+        }
+        cfw.addALoad(valuesLocal);
+        if (flagsLocal >= 0) {
+            cfw.addALoad(flagsLocal);
+        } else {
+            cfw.add(ByteCode.ACONST_NULL);
+        }
+        cfw.addInvoke(ByteCode.INVOKEVIRTUAL, codegen.mainClassName,
+                      part.methodName, LITERAL_PART_SIGNATURE);
+    }
+
+    private void generateLiteralPart(CodePart part)
+    {
+        Node node = part.node;
+        initBodyGeneration();
+        argsLocal = firstFreeLocal++;
+        short idsLocal = firstFreeLocal++;
+        short valuesLocal = firstFreeLocal++;
+        short flagsLocal = firstFreeLocal++;
+        localsMax = firstFreeLocal;
+        cfw.startMethod(part.methodName, LITERAL_PART_SIGNATURE, ACC_PRIVATE);
+
+        Object[] properties = null;
+        if (node.getType() == Token.OBJECTLIT) {
+            properties = (Object[])node.getProp(Node.OBJECT_IDS_PROP);
+        }
+        Node child = node.getFirstChild();
+        for (int i = 0; i != part.start; ++i) {
+            child = child.getNext();
+        }
+        for (int i = part.start; child != null; ++i) {
+            if (i != part.start
+                && cfw.getCurrentCodeOffset() > METHOD_SPLIT_OFFSET)
+            {
+                // Continue in the next part
+                addLiteralPartCall(
+                    addPart(node, null, i, part.hasGetterSetters),
+                    idsLocal, valuesLocal, flagsLocal);
+                break;
+            }
+            if (properties != null) {
+                cfw.addALoad(idsLocal);
+                cfw.addPush(i);
+                addLoadPropertyId(properties[i]);
+                cfw.add(ByteCode.AASTORE);
+                cfw.addALoad(valuesLocal);
+                cfw.addPush(i);
+                addLoadPropertyValue(node, child);
+                cfw.add(ByteCode.AASTORE);
+                if (part.hasGetterSetters) {
+                    cfw.addALoad(flagsLocal);
+                    cfw.addPush(i);
+                    addLoadGetterSetterFlag(child);
+                    cfw.add(ByteCode.IASTORE);
+                }
+            } else {
+                cfw.addALoad(valuesLocal);
+                cfw.addPush(i);
+                generateExpression(child, node);
+                cfw.add(ByteCode.AASTORE);
+            }
+            child = child.getNext();
+        }
+        cfw.add(ByteCode.RETURN);
+        cfw.stopMethod((short)(localsMax + 1));
+    }
+
+    /**
+     * Returns true if the elements of the array or object literal are all
+     * constants, so that the literal can be created in a method of its own
+     * even if the function keeps its variables in registers.
+     */
+    private static boolean isConstantLiteral(Node node)
+    {
+        for (Node child = node.getFirstChild(); child != null;
+             child = child.getNext())
+        {
+            switch (child.getType()) {
+              case Token.NUMBER:
+              case Token.STRING:
+              case Token.TRUE:
+              case Token.FALSE:
+              case Token.NULL:
+                break;
+              case Token.NEG:
+              case Token.POS:
+                if (child.getFirstChild().getType() != Token.NUMBER) {
+                    return false;
+                }
+                break;
+              case Token.ARRAYLIT:
+              case Token.OBJECTLIT:
+                if (!isConstantLiteral(child)) {
+                    return false;
+                }
+                break;
+              default:
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void visitSpecialCall(Node node, int type, int specialType,
                                   Node child)
     {
@@ -3357,6 +3804,10 @@ class BodyCodegen
         Node firstArgChild = child.getNext();
         int childType = child.getType();
 
+        if (childType == Token.GETPROP && visitHostBindingCall(node, child)) {
+            return;
+        }
+
         String methodName;
         String signature;
 
@@ -3453,6 +3904,272 @@ class BodyCodegen
         addOptRuntimeInvoke(methodName, signature);
     }
 
+    /**
+     * Generate name.method(args) where name is a declared host binding as
+     * a direct call of the Java method, guarded by a check of the wrapped
+     * object. If the guard fails, the call is performed as usual.
+     * Returns false if the call does not qualify.
+     */
+    private boolean visitHostBindingCall(Node node, Node child)
+    {
+        Map<String,Class<?>> bindings = compilerEnv.getHostBindings();
+        // Values on the stack can not be saved at yield points
+        if (bindings.isEmpty() || isGenerator) {
+            return false;
+        }
+        Node propTarget = child.getFirstChild();
+        if (propTarget.getType() != Token.NAME) {
+            return false;
+        }
+        Class<?> hostType = bindings.get(propTarget.getString());
+        if (hostType == null) {
+            return false;
+        }
+        String property = propTarget.getNext().getString();
+        Node firstArgChild = child.getNext();
+        int argCount = 0;
+        for (Node arg = firstArgChild; arg != null; arg = arg.getNext()) {
+            ++argCount;
+        }
+        Method method = findHostMethod(hostType, property, argCount);
+        if (method == null) {
+            return false;
+        }
+
+        generateExpression(propTarget, node);
+        // stack: ... value
+        short stack = cfw.getStackTop();
+        cfw.add(ByteCode.DUP);
+        cfw.addLoadClassConstant(hostType.getName());
+        addOptRuntimeInvoke("unwrapHostObject",
+                            "(Ljava/lang/Object;"
+                            +"Ljava/lang/Class;"
+                            +")Ljava/lang/Object;");
+        cfw.add(ByteCode.DUP);
+        int genericCall = cfw.acquireLabel();
+        cfw.add(ByteCode.IFNULL, genericCall);
+        cfw.add(ByteCode.CHECKCAST, hostType.getName());
+        // stack: ... value javaObject
+
+        Class<?>[] argTypes = method.getParameterTypes();
+        StringBuilder sig = new StringBuilder("(");
+        Node arg = firstArgChild;
+        for (Class<?> argType : argTypes) {
+            generateExpression(arg, node);
+            addLoadTypeConstant(argType);
+            cfw.addInvoke(ByteCode.INVOKESTATIC,
+                          "org/mozilla/javascript/Context",
+                          "jsToJava",
+                          "(Ljava/lang/Object;"
+                          +"Ljava/lang/Class;"
+                          +")Ljava/lang/Object;");
+            addUnboxHostValue(argType);
+            appendTypeDescriptor(sig, argType);
+            arg = arg.getNext();
+        }
+        Class<?> returnType = method.getReturnType();
+        appendTypeDescriptor(sig.append(')'), returnType);
+
+        int callStart = cfw.acquireLabel();
+        int callEnd = cfw.acquireLabel();
+        cfw.markLabel(callStart);
+        cfw.addInvoke(hostType.isInterface() ? ByteCode.INVOKEINTERFACE
+                                             : ByteCode.INVOKEVIRTUAL,
+                      hostType.getName(), property, sig.toString());
+        cfw.markLabel(callEnd);
+        addBoxHostValue(returnType);
+        addLoadTypeConstant(returnType);
+        cfw.addALoad(contextLocal);
+        cfw.addALoad(variableObjectLocal);
+        addOptRuntimeInvoke("wrapHostResult",
+                            "(Ljava/lang/Object;"
+                            +"Ljava/lang/Class;"
+                            +"Lorg/mozilla/javascript/Context;"
+                            +"Lorg/mozilla/javascript/Scriptable;"
+                            +")Ljava/lang/Object;");
+        // stack: ... value result
+        cfw.add(ByteCode.SWAP);
+        cfw.add(ByteCode.POP);
+        int afterCall = cfw.acquireLabel();
+        cfw.add(ByteCode.GOTO, afterCall);
+
+        // Report exceptions thrown by the method as reflected calls do
+        int handler = cfw.acquireLabel();
+        cfw.markHandler(handler);
+        cfw.addInvoke(ByteCode.INVOKESTATIC,
+                      "org/mozilla/javascript/Context",
+                      "throwAsScriptRuntimeEx",
+                      "(Ljava/lang/Throwable;"
+                      +")Ljava/lang/RuntimeException;");
+        cfw.add(ByteCode.ATHROW);
+        cfw.addExceptionHandler(callStart, callEnd, handler,
+                                "java/lang/Throwable");
+
+        cfw.markLabel(genericCall, (short)(stack + 1));
+        cfw.add(ByteCode.POP);
+        // stack: ... value
+        cfw.addPush(property);
+        cfw.addALoad(contextLocal);
+        cfw.addALoad(variableObjectLocal);
+        if (firstArgChild == null) {
+            addOptRuntimeInvoke("callProp0",
+                                "(Ljava/lang/Object;"
+                                +"Ljava/lang/String;"
+                                +"Lorg/mozilla/javascript/Context;"
+                                +"Lorg/mozilla/javascript/Scriptable;"
+                                +")Ljava/lang/Object;");
+        } else {
+            addScriptRuntimeInvoke("getPropFunctionAndThis",
+                                   "(Ljava/lang/Object;"
+                                   +"Ljava/lang/String;"
+                                   +"Lorg/mozilla/javascript/Context;"
+                                   +"Lorg/mozilla/javascript/Scriptable;"
+                                   +")Lorg/mozilla/javascript/Callable;");
+            cfw.addALoad(contextLocal);
+            addScriptRuntimeInvoke("lastStoredScriptable",
+                                   "(Lorg/mozilla/javascript/Context;"
+                                   +")Lorg/mozilla/javascript/Scriptable;");
+            generateCallArgArray(node, firstArgChild, false);
+            cfw.addALoad(contextLocal);
+            cfw.addALoad(variableObjectLocal);
+            addOptRuntimeInvoke("callN",
+                                "(Lorg/mozilla/javascript/Callable;"
+                                +"Lorg/mozilla/javascript/Scriptable;"
+                                +"[Ljava/lang/Object;"
+                                +"Lorg/mozilla/javascript/Context;"
+                                +"Lorg/mozilla/javascript/Scriptable;"
+                                +")Ljava/lang/Object;");
+        }
+        cfw.markLabel(afterCall);
+        return true;
+    }
+
+    /**
+     * Returns the only public instance method of hostType with the given
+     * name if it takes argCount parameters, or null.
+     */
+    private static Method findHostMethod(Class<?> hostType, String name,
+                                         int argCount)
+    {
+        if (!Modifier.isPublic(hostType.getModifiers())
+            || hostType.isArray() || hostType.isPrimitive())
+        {
+            return null;
+        }
+        Method found = null;
+        try {
+            for (Method m : hostType.getMethods()) {
+                if (!m.getName().equals(name)) {
+                    continue;
+                }
+                if (found != null) {
+                    // Overloads are resolved at runtime
+                    return null;
+                }
+                found = m;
+            }
+        } catch (SecurityException ex) {
+            return null;
+        }
+        if (found == null || Modifier.isStatic(found.getModifiers())
+            || found.isVarArgs()
+            || found.getParameterTypes().length != argCount)
+        {
+            return null;
+        }
+        return found;
+    }
+
+    private void addLoadTypeConstant(Class<?> type)
+    {
+        if (type.isPrimitive()) {
+            cfw.add(ByteCode.GETSTATIC, boxedClassName(type), "TYPE",
+                    "Ljava/lang/Class;");
+        } else {
+            cfw.addLoadClassConstant(type.getName());
+        }
+    }
+
+    /**
+     * Convert the result of {@link Context#jsToJava(Object, Class)} on the
+     * stack to the given type.
+     */
+    private void addUnboxHostValue(Class<?> type)
+    {
+        if (!type.isPrimitive()) {
+            if (type != Object.class) {
+                cfw.add(ByteCode.CHECKCAST, type.getName());
+            }
+            return;
+        }
+        String typeName = type.getName();
+        if (type == Boolean.TYPE || type == Character.TYPE) {
+            String boxed = boxedClassName(type);
+            cfw.add(ByteCode.CHECKCAST, boxed);
+            cfw.addInvoke(ByteCode.INVOKEVIRTUAL, boxed, typeName + "Value",
+                          "()" + typeDescriptor(type));
+        } else {
+            cfw.add(ByteCode.CHECKCAST, "java/lang/Number");
+            cfw.addInvoke(ByteCode.INVOKEVIRTUAL, "java/lang/Number",
+                          typeName + "Value", "()" + typeDescriptor(type));
+        }
+    }
+
+    /**
+     * Box a primitive method result on the stack, or push null for void.
+     */
+    private void addBoxHostValue(Class<?> type)
+    {
+        if (type == Void.TYPE) {
+            cfw.add(ByteCode.ACONST_NULL);
+        } else if (type.isPrimitive()) {
+            String boxed = boxedClassName(type);
+            cfw.addInvoke(ByteCode.INVOKESTATIC, boxed, "valueOf",
+                          "(" + typeDescriptor(type) + ")L" + boxed + ";");
+        }
+    }
+
+    private static String boxedClassName(Class<?> type)
+    {
+        if (type == Integer.TYPE) return "java/lang/Integer";
+        if (type == Long.TYPE) return "java/lang/Long";
+        if (type == Double.TYPE) return "java/lang/Double";
+        if (type == Float.TYPE) return "java/lang/Float";
+        if (type == Short.TYPE) return "java/lang/Short";
+        if (type == Byte.TYPE) return "java/lang/Byte";
+        if (type == Boolean.TYPE) return "java/lang/Boolean";
+        if (type == Character.TYPE) return "java/lang/Character";
+        if (type == Void.TYPE) return "java/lang/Void";
+        throw Kit.codeBug();
+    }
+
+    private static String typeDescriptor(Class<?> type)
+    {
+        return appendTypeDescriptor(new StringBuilder(), type).toString();
+    }
+
+    private static StringBuilder appendTypeDescriptor(StringBuilder sb,
+                                                      Class<?> type)
+    {
+        while (type.isArray()) {
+            sb.append('[');
+            type = type.getComponentType();
+        }
+        if (!type.isPrimitive()) {
+            return sb.append('L').append(type.getName().replace('.', '/'))
+                     .append(';');
+        }
+        char c;
+        if (type == Boolean.TYPE) {
+            c = 'Z';
+        } else if (type == Long.TYPE) {
+            c = 'J';
+        } else {
+            c = Character.toUpperCase(type.getName().charAt(0));
+        }
+        return sb.append(c);
+    }
+
     private void visitStandardNew(Node node, Node child)
     {
         if (node.getType() != Token.NEW) throw Codegen.badTree();
@@ -3502,17 +4219,23 @@ class BodyCodegen
         cfw.addPush(codegen.getIndex(target.fnode));
         cfw.add(ByteCode.IF_ICMPNE, regularCall);
 
-        // stack: ... directFunct
-        cfw.addALoad(contextLocal);
-        cfw.addALoad(variableObjectLocal);
-        // stack: ... directFunc cx scope
-
-        if (type == Token.NEW) {
-            cfw.add(ByteCode.ACONST_NULL);
+        Node inlined = (Node)node.getProp(Node.INLINE_PROP);
+        if (inlined != null) {
+            // stack: ... directFunct
+            cfw.add(ByteCode.POP);
+            generateExpression(inlined, node);
         } else {
-            cfw.addALoad(thisObjLocal);
-        }
-        // stack: ... directFunc cx scope thisObj
+            // stack: ... directFunct
+            cfw.addALoad(contextLocal);
+            cfw.addALoad(variableObjectLocal);
+            // stack: ... directFunc cx scope
+
+            if (type == Token.NEW) {
+                cfw.add(ByteCode.ACONST_NULL);
+            } else {
+                cfw.addALoad(thisObjLocal);
+            }
+            // stack: ... directFunc cx scope thisObj
 /*
 Remember that directCall parameters are paired in 1 aReg and 1 dReg
 If the argument is an incoming arg, just pass the orginal pair thru.
@@ -3520,36 +4243,37 @@ Else, if the argument is known to be typed 'Number', pass Void.TYPE
 in the aReg and the number is the dReg
 Else pass the JS object in the aReg and 0.0 in the dReg.
 */
-        Node argChild = firstArgChild;
-        while (argChild != null) {
-            int dcp_register = nodeIsDirectCallParameter(argChild);
-            if (dcp_register >= 0) {
-                cfw.addALoad(dcp_register);
-                cfw.addDLoad(dcp_register + 1);
-            } else if (argChild.getIntProp(Node.ISNUMBER_PROP, -1)
-                       == Node.BOTH)
-            {
-                cfw.add(ByteCode.GETSTATIC,
-                        "java/lang/Void",
-                        "TYPE",
-                        "Ljava/lang/Class;");
-                generateExpression(argChild, node);
-            } else {
-                generateExpression(argChild, node);
-                cfw.addPush(0.0);
+            Node argChild = firstArgChild;
+            while (argChild != null) {
+                int dcp_register = nodeIsDirectCallParameter(argChild);
+                if (dcp_register >= 0) {
+                    cfw.addALoad(dcp_register);
+                    cfw.addDLoad(dcp_register + 1);
+                } else if (argChild.getIntProp(Node.ISNUMBER_PROP, -1)
+                           == Node.BOTH)
+                {
+                    cfw.add(ByteCode.GETSTATIC,
+                            "java/lang/Void",
+                            "TYPE",
+                            "Ljava/lang/Class;");
+                    generateExpression(argChild, node);
+                } else {
+                    generateExpression(argChild, node);
+                    cfw.addPush(0.0);
+                }
+                argChild = argChild.getNext();
             }
-            argChild = argChild.getNext();
-        }
 
-        cfw.add(ByteCode.GETSTATIC,
-                "org/mozilla/javascript/ScriptRuntime",
-                "emptyArgs", "[Ljava/lang/Object;");
-        cfw.addInvoke(ByteCode.INVOKESTATIC,
-                      codegen.mainClassName,
-                      (type == Token.NEW)
-                          ? codegen.getDirectCtorName(target.fnode)
-                          : codegen.getBodyMethodName(target.fnode),
-                      codegen.getBodyMethodSignature(target.fnode));
+            cfw.add(ByteCode.GETSTATIC,
+                    "org/mozilla/javascript/ScriptRuntime",
+                    "emptyArgs", "[Ljava/lang/Object;");
+            cfw.addInvoke(ByteCode.INVOKESTATIC,
+                          codegen.mainClassName,
+                          (type == Token.NEW)
+                              ? codegen.getDirectCtorName(target.fnode)
+                              : codegen.getBodyMethodName(target.fnode),
+                          codegen.getBodyMethodSignature(target.fnode));
+        }
 
         cfw.add(ByteCode.GOTO, beyond);
 
@@ -5485,6 +6209,29 @@ Else pass the JS object in the aReg and 0.0 in the dReg.
     private OptFunctionNode fnCurrent;
 
     private static final int MAX_LOCALS = 1024;
+
+    // Code offset after which statements and literal elements go into
+    // methods of their own
+    private static final int METHOD_SPLIT_OFFSET = 30000;
+    // Literals with more elements fill them in methods of their own
+    private static final int LITERAL_PART_MIN_ELEMENTS = 100;
+
+    private static final String STATEMENT_PART_SIGNATURE =
+        "(Lorg/mozilla/javascript/Context;"
+        +"Lorg/mozilla/javascript/Scriptable;"
+        +"Lorg/mozilla/javascript/Scriptable;"
+        +"[Ljava/lang/Object;"
+        +"Ljava/lang/Object;"
+        +")Ljava/lang/Object;";
+    private static final String LITERAL_PART_SIGNATURE =
+        "(Lorg/mozilla/javascript/Context;"
+        +"Lorg/mozilla/javascript/Scriptable;"
+        +"Lorg/mozilla/javascript/Scriptable;"
+        +"[Ljava/lang/Object;"
+        +"[Ljava/lang/Object;"
+        +"[Ljava/lang/Object;"
+        +"[I"
+        +")V";
     private int[] locals;
     private short firstFreeLocal;
     private short localsMax;
@@ -5519,9 +6266,28 @@ Else pass the JS object in the aReg and 0.0 in the dReg.
 
     private Map<Node,FinallyReturnPoint> finallys;
     private List<Node> literals;
+    private List<CodePart> parts;
+    private int partCount;
+    // True if statements may be generated into methods of their own
+    private boolean splitStatements;
 
     static class FinallyReturnPoint {
         public List<Integer> jsrPoints  = new ArrayList<Integer>();
         public int tableLabel = 0;
     }
+
+    /**
+     * Statements, or elements of a literal, that are generated into a
+     * method of their own.
+     */
+    static class CodePart {
+        String methodName;
+        // first statement, or the literal
+        Node node;
+        // statement after the last one, or null
+        Node end;
+        // first element of the literal
+        int start;
+        boolean hasGetterSetters;
+    }
 }
@@ -115,4 +115,6 @@ public final class OptFunctionNode
     private boolean itsParameterNumberContext;
     boolean itsContainsCalls0;
     boolean itsContainsCalls1;
+    // Body expression inlined at direct calls, see Optimizer
+    Node inlineExpression;
 }
@@ -85,6 +85,48 @@ public final class OptRuntime extends ScriptRuntime
         return f.call(cx, scope, thisObj, ScriptRuntime.emptyArgs);
     }
 
+    /**
+     * Guard of calls on host bindings declared with
+     * {@link CompilerEnvirons#declareHostBinding(String, Class)}: returns
+     * the Java object wrapped by value if its methods are looked up as
+     * usual and it has the declared type, or null otherwise.
+     */
+    public static Object unwrapHostObject(Object value, Class<?> type)
+    {
+        if (value == null) {
+            return null;
+        }
+        Class<?> wrapperClass = value.getClass();
+        if (wrapperClass != NativeJavaObject.class
+            && wrapperClass != NativeJavaIterable.class
+            && wrapperClass != NativeJavaList.class)
+        {
+            return null;
+        }
+        Object javaObject = ((NativeJavaObject) value).unwrap();
+        if (type.isInterface() ? type.isInstance(javaObject)
+                               : javaObject.getClass() == type)
+        {
+            return javaObject;
+        }
+        return null;
+    }
+
+    /**
+     * Wrap the result of a direct call on a host binding the same way
+     * {@link NativeJavaMethod} wraps the result of a reflected call.
+     */
+    public static Object wrapHostResult(Object result, Class<?> staticType,
+                                        Context cx, Scriptable scope)
+    {
+        Object wrapped = cx.getWrapFactory().wrap(cx, scope, result,
+                                                  staticType);
+        if (wrapped == null && staticType == Void.TYPE) {
+            wrapped = Undefined.instance;
+        }
+        return wrapped;
+    }
+
     public static Object add(Object val1, double val2)
     {
         if (val1 instanceof Scriptable)
@@ -158,15 +200,14 @@ public final class OptRuntime extends ScriptRuntime
 
     public static Double wrapDouble(double num)
     {
-        if (num == 0.0) {
-            if (1 / num > 0) {
-                // +0.0
-                return zeroObj;
+        int i = (int) num;
+        if (i == num) {
+            if (i != 0 || 1 / num > 0) {
+                Double cached = getCachedDouble(i);
+                if (cached != null) {
+                    return cached;
+                }
             }
-        } else if (num == 1.0) {
-            return oneObj;
-        } else if (num == -1.0) {
-            return minusOneObj;
         } else if (num != num) {
             return NaNobj;
         }
@@ -7,6 +7,7 @@
 package org.mozilla.javascript.optimizer;
 
 import org.mozilla.javascript.*;
+import org.mozilla.javascript.ast.FunctionNode;
 import org.mozilla.javascript.ast.ScriptNode;
 
 class Optimizer
@@ -18,10 +19,20 @@ class Optimizer
 
     // It is assumed that (NumberType | AnyType) == AnyType
 
+    // Largest expression of a function body that is inlined
+    static final int MAX_INLINE_NODES = 16;
+
     void optimize(ScriptNode scriptOrFn)
     {
         //  run on one function at a time for now
         int functionCount = scriptOrFn.getFunctionCount();
+        // Record the inlinable bodies before any of them is rewritten
+        for (int i = 0; i != functionCount; ++i) {
+            OptFunctionNode f = OptFunctionNode.get(scriptOrFn, i);
+            if (f.isTargetOfDirectCall()) {
+                f.inlineExpression = findInlineExpression(f);
+            }
+        }
         for (int i = 0; i != functionCount; ++i) {
             OptFunctionNode f = OptFunctionNode.get(scriptOrFn, i);
             optimizeFunction(f);
@@ -35,6 +46,8 @@ class Optimizer
         inDirectCallFunction = theFunction.isTargetOfDirectCall();
         this.theFunction = theFunction;
 
+        propagateConstants(theFunction.fnode.getLastChild());
+
         ObjArray statementsArray = new ObjArray();
         buildStatementList_r(theFunction.fnode, statementsArray);
         Node[] theStatementNodes = new Node[statementsArray.size()];
@@ -54,11 +67,364 @@ class Optimizer
             for (Node theStatementNode : theStatementNodes) {
                 rewriteForNumberVariables(theStatementNode, NumberType);
             }
+            if (!theFunction.fnode.isGenerator()) {
+                inlineDirectCalls(theFunction.fnode);
+            }
             theFunction.setParameterNumberContext(parameterUsedInNumberContext);
         }
 
     }
 
+/*
+        A local variable that is assigned a number or string literal in a
+        statement of the function body itself, and nowhere else, holds that
+        literal in every later statement of the body: the statements of the
+        body run in order and no jump leads back into an earlier one. Reads
+        of the variable there are replaced by the literal, and the
+        expressions that become constant are folded.
+*/
+    private void propagateConstants(Node body)
+    {
+        int varCount = theFunction.getVarCount();
+        if (varCount == 0) return;
+        int[] writes = new int[varCount];
+        countWrites(body, writes);
+
+        Node[] constants = null;
+        for (Node statement = body.getFirstChild(); statement != null;
+             statement = statement.getNext())
+        {
+            if (constants != null) {
+                replaceConstantReads(statement, constants);
+            }
+            if (statement.getType() == Token.BLOCK) {
+                // A var statement declaring several variables, unless the
+                // block also has jumps
+                Node child = statement.getFirstChild();
+                while (child != null && child.getType() == Token.EXPR_VOID) {
+                    child = child.getNext();
+                }
+                if (child == null) {
+                    for (child = statement.getFirstChild(); child != null;
+                         child = child.getNext())
+                    {
+                        constants = findConstant(child, writes, constants);
+                    }
+                }
+            } else {
+                constants = findConstant(statement, writes, constants);
+            }
+        }
+    }
+
+    private void countWrites(Node n, int[] writes)
+    {
+        switch (n.getType()) {
+          case Token.SETVAR:
+          case Token.SETCONSTVAR:
+            writes[theFunction.getVarIndex(n)]++;
+            break;
+          case Token.INC:
+          case Token.DEC: {
+            Node child = n.getFirstChild();
+            if (child.getType() == Token.GETVAR) {
+                writes[theFunction.getVarIndex(child)] += 2;
+            }
+            break;
+          }
+          case Token.TYPEOFNAME: {
+            // Reads the variable by name, keep it
+            int varIndex = theFunction.fnode.getIndexForNameNode(n);
+            if (varIndex >= 0) {
+                writes[varIndex] += 2;
+            }
+            break;
+          }
+        }
+        for (Node child = n.getFirstChild(); child != null;
+             child = child.getNext())
+        {
+            countWrites(child, writes);
+        }
+    }
+
+    private Node[] findConstant(Node statement, int[] writes,
+                                Node[] constants)
+    {
+        if (statement.getType() != Token.EXPR_VOID) {
+            return constants;
+        }
+        Node set = statement.getFirstChild();
+        if (set.getType() != Token.SETVAR
+            && set.getType() != Token.SETCONSTVAR)
+        {
+            return constants;
+        }
+        Node value = set.getLastChild();
+        int varIndex = theFunction.getVarIndex(set);
+        if (writes[varIndex] != 1 || theFunction.isParameter(varIndex)
+            || (value.getType() != Token.NUMBER
+                && value.getType() != Token.STRING))
+        {
+            return constants;
+        }
+        if (constants == null) {
+            constants = new Node[writes.length];
+        }
+        constants[varIndex] = value;
+        return constants;
+    }
+
+    private void replaceConstantReads(Node parent, Node[] constants)
+    {
+        Node child = parent.getFirstChild();
+        while (child != null) {
+            Node next = child.getNext();
+            Node replacement = child;
+            if (child.getType() == Token.GETVAR) {
+                Node value = constants[theFunction.getVarIndex(child)];
+                if (value != null) {
+                    replacement = copyLiteral(value);
+                }
+            } else if (child.getType() != Token.FUNCTION) {
+                replaceConstantReads(child, constants);
+                replacement = foldConstants(child);
+            }
+            if (replacement != child) {
+                parent.replaceChild(child, replacement);
+            }
+            child = next;
+        }
+    }
+
+    private static Node copyLiteral(Node literal)
+    {
+        if (literal.getType() == Token.NUMBER) {
+            return Node.newNumber(literal.getDouble());
+        }
+        return Node.newString(literal.getString());
+    }
+
+    /**
+     * Returns the literal that an operation on two literals evaluates to,
+     * or the operation itself if it can not be folded.
+     */
+    private static Node foldConstants(Node n)
+    {
+        Node left = n.getFirstChild();
+        Node right = left == null ? null : left.getNext();
+        if (right == null || right.getNext() != null) {
+            return n;
+        }
+        int leftType = left.getType();
+        int rightType = right.getType();
+        if (leftType == Token.NUMBER && rightType == Token.NUMBER) {
+            double l = left.getDouble();
+            double r = right.getDouble();
+            switch (n.getType()) {
+              case Token.ADD: return Node.newNumber(l + r);
+              case Token.SUB: return Node.newNumber(l - r);
+              case Token.MUL: return Node.newNumber(l * r);
+              case Token.DIV: return Node.newNumber(l / r);
+              case Token.MOD: return Node.newNumber(l % r);
+            }
+        } else if (n.getType() == Token.ADD
+                   && (leftType == Token.STRING || rightType == Token.STRING)
+                   && (leftType == Token.STRING || leftType == Token.NUMBER)
+                   && (rightType == Token.STRING
+                       || rightType == Token.NUMBER))
+        {
+            return Node.newString(literalToString(left)
+                                  .concat(literalToString(right)));
+        }
+        return n;
+    }
+
+    private static String literalToString(Node literal)
+    {
+        if (literal.getType() == Token.NUMBER) {
+            return ScriptRuntime.numberToString(literal.getDouble(), 10);
+        }
+        return literal.getString();
+    }
+
+/*
+        A direct call target whose body is a single return of a small
+        expression over its parameters and literals is inlined at direct
+        call sites whose arguments are literals, this or local variables,
+        which can be evaluated in any order and any number of times. The
+        call site still checks that the called function is the target and
+        makes a regular call when it is not.
+*/
+    private static Node findInlineExpression(OptFunctionNode target)
+    {
+        FunctionNode fnode = target.fnode;
+        if (fnode.requiresActivation() || fnode.isGenerator()) {
+            return null;
+        }
+        Node statement = fnode.getLastChild().getFirstChild();
+        if (statement == null || statement.getNext() != null
+            || statement.getType() != Token.RETURN
+            || !statement.hasChildren())
+        {
+            return null;
+        }
+        int[] budget = { MAX_INLINE_NODES };
+        return copyInlineTemplate(target, statement.getFirstChild(), budget);
+    }
+
+    /**
+     * Copies an expression that can be inlined, with parameter reads as
+     * GETVAR nodes holding the parameter index, or returns null if the
+     * expression can not be inlined.
+     */
+    private static Node copyInlineTemplate(OptFunctionNode target, Node n,
+                                           int[] budget)
+    {
+        if (--budget[0] < 0) {
+            return null;
+        }
+        int type = n.getType();
+        switch (type) {
+          case Token.GETVAR: {
+            int varIndex = target.getVarIndex(n);
+            if (!target.isParameter(varIndex)) {
+                return null;
+            }
+            Node param = new Node(Token.GETVAR);
+            param.putIntProp(Node.VARIABLE_PROP, varIndex);
+            return param;
+          }
+          case Token.NUMBER:
+          case Token.STRING:
+            return copyLiteral(n);
+          case Token.TRUE:
+          case Token.FALSE:
+          case Token.NULL:
+            return new Node(type);
+          case Token.NEG:
+          case Token.POS:
+          case Token.NOT:
+          case Token.BITNOT: {
+            Node child = copyInlineTemplate(target, n.getFirstChild(),
+                                            budget);
+            return child == null ? null : new Node(type, child);
+          }
+          case Token.GETPROP:
+          case Token.GETELEM:
+          case Token.ADD:
+          case Token.SUB:
+          case Token.MUL:
+          case Token.DIV:
+          case Token.MOD:
+          case Token.BITAND:
+          case Token.BITOR:
+          case Token.BITXOR:
+          case Token.LSH:
+          case Token.RSH:
+          case Token.URSH:
+          case Token.EQ:
+          case Token.NE:
+          case Token.SHEQ:
+          case Token.SHNE:
+          case Token.LT:
+          case Token.LE:
+          case Token.GT:
+          case Token.GE: {
+            Node left = copyInlineTemplate(target, n.getFirstChild(), budget);
+            if (left == null) {
+                return null;
+            }
+            Node right = copyInlineTemplate(target, n.getLastChild(), budget);
+            return right == null ? null : new Node(type, left, right);
+          }
+        }
+        return null;
+    }
+
+    private void inlineDirectCalls(Node n)
+    {
+        for (Node child = n.getFirstChild(); child != null;
+             child = child.getNext())
+        {
+            inlineDirectCalls(child);
+        }
+        if (n.getType() != Token.CALL) {
+            return;
+        }
+        OptFunctionNode target
+            = (OptFunctionNode)n.getProp(Node.DIRECTCALL_PROP);
+        if (target == null || target.inlineExpression == null) {
+            return;
+        }
+        Node[] args = new Node[target.fnode.getParamCount()];
+        int argCount = 0;
+        for (Node arg = n.getFirstChild().getNext(); arg != null;
+             arg = arg.getNext())
+        {
+            if (argCount == args.length) {
+                return;
+            }
+            switch (arg.getType()) {
+              case Token.GETVAR:
+              case Token.NUMBER:
+              case Token.STRING:
+              case Token.TRUE:
+              case Token.FALSE:
+              case Token.NULL:
+              case Token.THIS:
+                args[argCount++] = arg;
+                break;
+              default:
+                return;
+            }
+        }
+        if (argCount != args.length) {
+            return;
+        }
+        // Type the expression as if it was written at the call site
+        Node holder = new Node(Token.EXPR_RESULT,
+            instantiateInline(target.inlineExpression, args));
+        rewriteAsObjectChildren(holder, holder.getFirstChild());
+        n.putProp(Node.INLINE_PROP, holder.getFirstChild());
+    }
+
+    private Node instantiateInline(Node template, Node[] args)
+    {
+        int type = template.getType();
+        switch (type) {
+          case Token.GETVAR:
+            return copyArgument(
+                args[template.getExistingIntProp(Node.VARIABLE_PROP)]);
+          case Token.NUMBER:
+          case Token.STRING:
+            return copyLiteral(template);
+        }
+        Node copy = new Node(type);
+        for (Node child = template.getFirstChild(); child != null;
+             child = child.getNext())
+        {
+            copy.addChildToBack(instantiateInline(child, args));
+        }
+        return copy;
+    }
+
+    private Node copyArgument(Node arg)
+    {
+        int type = arg.getType();
+        switch (type) {
+          case Token.GETVAR: {
+            Node var = new Node(Token.GETVAR);
+            var.putIntProp(Node.VARIABLE_PROP, theFunction.getVarIndex(arg));
+            return var;
+          }
+          case Token.NUMBER:
+          case Token.STRING:
+            return copyLiteral(arg);
+        }
+        return new Node(type);
+    }
+
 
 /*
         Each directCall parameter is passed as a pair of values - an object
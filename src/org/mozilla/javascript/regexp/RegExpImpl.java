@@ -74,6 +74,14 @@ public class RegExpImpl implements RegExpProxy {
                     repstr = ScriptRuntime.toString(arg1);
                 }
 
+                if (!useRE && lambda == null) {
+                    String result = replaceString(cx, data.str, search,
+                                                  repstr);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+
                 data.lambda = lambda;
                 data.repstr = repstr;
                 data.dollar = repstr == null ? -1 : repstr.indexOf('$');
@@ -111,7 +119,7 @@ public class RegExpImpl implements RegExpProxy {
                 }
                 SubString rc = this.rightContext;
                 data.charBuf.append(rc.str, rc.index, rc.index + rc.length);
-                return data.charBuf.toString();
+                return ScriptRuntime.releaseStringBuilder(cx, data.charBuf);
             }
 
           default:
@@ -119,6 +127,80 @@ public class RegExpImpl implements RegExpProxy {
         }
     }
 
+    /**
+     * Replaces the first occurrence of a plain search string by a plain
+     * replacement string without setting up GlobData. Returns null if the
+     * replacement uses $+ or $1..$99, which refer to the parentheses of
+     * the last regular expression, or for JS 1.2 to 1.4, whose dollar
+     * substitutions differ.
+     */
+    private String replaceString(Context cx, String str, String search,
+                                 String repstr)
+    {
+        int version = cx.getLanguageVersion();
+        if (version != Context.VERSION_DEFAULT
+            && version <= Context.VERSION_1_4)
+        {
+            return null;
+        }
+        int replen = repstr.length();
+        for (int dp = repstr.indexOf('$'); dp >= 0 && dp + 1 < replen;
+             dp = repstr.indexOf('$', dp + 1))
+        {
+            char dc = repstr.charAt(dp + 1);
+            if (dc == '+' || NativeRegExp.isDigit(dc)) {
+                return null;
+            }
+        }
+
+        int index = str.indexOf(search);
+        if (index < 0) {
+            return str;
+        }
+        int end = index + search.length();
+        this.lastParen = null;
+        this.leftContext = new SubString(str, 0, index);
+        this.lastMatch = new SubString(str, index, search.length());
+        this.rightContext = new SubString(str, end, str.length() - end);
+
+        String replacement = repstr;
+        int dp = repstr.indexOf('$');
+        if (dp >= 0) {
+            StringBuilder sb = ScriptRuntime.takeStringBuilder(cx);
+            int cp = 0;
+            while (dp >= 0 && dp + 1 < replen) {
+                char dc = repstr.charAt(dp + 1);
+                if (dc == '$' || dc == '&' || dc == '`' || dc == '\'') {
+                    sb.append(repstr, cp, dp);
+                    if (dc == '$') {
+                        sb.append('$');
+                    } else if (dc == '&') {
+                        sb.append(search);
+                    } else if (dc == '`') {
+                        sb.append(str, 0, index);
+                    } else {
+                        sb.append(str, end, str.length());
+                    }
+                    cp = dp + 2;
+                    dp = repstr.indexOf('$', cp);
+                } else {
+                    // Other dollars are copied literally
+                    dp = repstr.indexOf('$', dp + 1);
+                }
+            }
+            sb.append(repstr, cp, replen);
+            replacement = ScriptRuntime.releaseStringBuilder(cx, sb);
+        }
+
+        // Copy the parts at once rather than char by char
+        int rightLength = str.length() - end;
+        char[] chars = new char[index + replacement.length() + rightLength];
+        str.getChars(0, index, chars, 0);
+        replacement.getChars(0, replacement.length(), chars, index);
+        str.getChars(end, str.length(), chars, chars.length - rightLength);
+        return new String(chars);
+    }
+
     private static NativeRegExp createRegExp(Context cx, Scriptable scope,
                                              Object[] args, int optarg,
                                              boolean forceFlat)
@@ -366,11 +448,10 @@ public class RegExpImpl implements RegExpProxy {
         int growth = leftlen + replen + reImpl.rightContext.length;
         StringBuilder charBuf = rdata.charBuf;
         if (charBuf == null) {
-            charBuf = new StringBuilder(growth);
+            charBuf = ScriptRuntime.takeStringBuilder(cx);
             rdata.charBuf = charBuf;
-        } else {
-            charBuf.ensureCapacity(rdata.charBuf.length() + growth);
         }
+        charBuf.ensureCapacity(charBuf.length() + growth);
 
         charBuf.append(reImpl.leftContext.str, leftIndex, leftIndex + leftlen);
         if (rdata.lambda != null) {
@@ -484,7 +565,7 @@ public class RegExpImpl implements RegExpProxy {
             int[] skip = new int[1];
             do {
                 int len = dp - cp;
-                charBuf.append(da.substring(cp, dp));
+                charBuf.append(da, cp, dp);
                 cp = dp;
                 SubString sub = interpretDollar(cx, regExpImpl, da,
                                                 dp, skip);
@@ -503,7 +584,7 @@ public class RegExpImpl implements RegExpProxy {
         }
         int daL = da.length();
         if (daL > cp) {
-            charBuf.append(da.substring(cp, daL));
+            charBuf.append(da, cp, daL);
         }
     }
 
@@ -124,6 +124,12 @@ public abstract class NativeTypedArrayView<T>
             NativeArrayBuffer na = makeArrayBuffer(cx, scope, src.length * getBytesPerElement());
             NativeTypedArrayView v = construct(na, 0, src.length);
 
+            if (src.getClass() == getClass()) {
+                // Elements of the same type have the same bytes
+                System.arraycopy(src.arrayBuffer.buffer, src.offset,
+                                 na.buffer, 0, src.length * getBytesPerElement());
+                return v;
+            }
             for (int i = 0; i < src.length; i++) {
                 v.js_set(i, src.js_get(i));
             }
@@ -183,7 +189,12 @@ public abstract class NativeTypedArrayView<T>
             throw ScriptRuntime.constructError("RangeError", "source array too long");
         }
 
-        if (v.arrayBuffer == arrayBuffer) {
+        if (v.getClass() == getClass()) {
+            // Copy the bytes at once, arraycopy handles overlapping ranges
+            System.arraycopy(v.arrayBuffer.buffer, v.offset,
+                             arrayBuffer.buffer, offset + off * getBytesPerElement(),
+                             v.length * getBytesPerElement());
+        } else if (v.arrayBuffer == arrayBuffer) {
             // Copy to temporary space first, as per spec, to avoid messing up overlapping copies
             Object[] tmp = new Object[v.length];
             for (int i = 0; i < v.length; i++) {
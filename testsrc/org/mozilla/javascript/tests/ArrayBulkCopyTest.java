@@ -0,0 +1,56 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+
+/**
+ * Checks slice, apply and typed array copies, which copy the storage of
+ * dense arrays at once, on holes and overlapping ranges.
+ */
+public class ArrayBulkCopyTest extends TestCase {
+
+    public void testSlice() {
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8,
+            "2,p,4|4,5|0|2,,4|false",
+            "var a = [1, 2, , 4, 5];\n" +
+            "Array.prototype[2] = 'p';\n" +
+            "var r = [a.slice(1, 4).join(), a.slice(-2).join(),\n" +
+            "         a.slice(3, 1).length];\n" +
+            "delete Array.prototype[2];\n" +
+            "r.push(a.slice(1, 4).join(), 1 in a.slice(1, 4));\n" +
+            "r.join('|')");
+    }
+
+    public void testApply() {
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8,
+            "1,,3/3|/0|9",
+            "function f() {\n" +
+            "  return Array.prototype.join.call(arguments) + '/' +\n" +
+            "    arguments.length;\n" +
+            "}\n" +
+            "[f.apply(null, [1, , 3]), f.apply(null, []),\n" +
+            " Math.max.apply(null, [3, 9, 2])].join('|')");
+    }
+
+    public void testTypedArrays() {
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8,
+            "1,9,-2|1,-2,-2,3,4,6|1,1,2,3,5,6|44,-1",
+            "var t = new Int16Array([1, -2, 3, 4, 5, 6]);\n" +
+            "var u = new Int16Array(t);\n" +
+            "u[0] = 9;\n" +
+            "var r = [[t[0], u[0], u[1]].join()];\n" +
+            "t.set(new Int16Array(t.buffer, 2, 3), 2);\n" +
+            "r.push(Array.prototype.join.call(t));\n" +
+            "var v = new Int16Array([1, 2, 3, 4, 5, 6]);\n" +
+            "v.set(v.subarray(0, 3), 1);\n" +
+            "r.push(Array.prototype.join.call(v));\n" +
+            "r.push(Array.prototype.join.call(\n" +
+            "  new Int8Array(new Int16Array([300, -1]))));\n" +
+            "r.join('|')");
+    }
+}
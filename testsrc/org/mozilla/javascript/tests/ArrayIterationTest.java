@@ -0,0 +1,72 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the iteration methods of dense arrays, which read and write the
+ * array storage directly, on holes and on arrays changed by the callback.
+ */
+public class ArrayIterationTest extends TestCase {
+
+    public void testHolesUseThePrototype() {
+        Utils.assertWithAllOptimizationLevels("1,3,p2,7|1,p,4",
+            "var a = [1, 2, , 4];\n" +
+            "Array.prototype[2] = 'p';\n" +
+            "var r = a.map(function (x, i) { return x + i; }).join() + '|' +\n" +
+            "  a.filter(function (x) { return x != 2; }).join();\n" +
+            "delete Array.prototype[2];\n" +
+            "r");
+    }
+
+    public void testCallbackChangesArray() {
+        Utils.assertWithAllOptimizationLevels("2,4,6,|1,3|6",
+            "var b = [1, 2, 3, 4];\n" +
+            "var r = b.map(function (x, i, arr) {\n" +
+            "  if (i == 0) arr.pop();\n" +
+            "  return x * 2;\n" +
+            "}).join();\n" +
+            "var seen = [];\n" +
+            "[1, 2, 3].forEach(function (x, i, arr) {\n" +
+            "  if (i == 0) arr.shift();\n" +
+            "  seen.push(x);\n" +
+            "});\n" +
+            "var d = [1, 2, 3];\n" +
+            "d.forEach(function (x, i, arr) { arr[5] = 9; });\n" +
+            "r + '|' + seen.join() + '|' + d.length");
+    }
+
+    public void testReduce() {
+        Utils.assertWithAllOptimizationLevels("10,321,0-1-2",
+            "[[1, 2, 3, 4].reduce(function (s, x) { return s + x; }),\n" +
+            " [1, 2, 3].reduceRight(function (s, x) { return s + x; }, ''),\n" +
+            " [0, 1, 2].reduce(function (s, x, i) { return s + '-' + i; })\n" +
+            "].join()");
+    }
+
+    public void testArgumentsAreKeptByEachCall() {
+        Utils.assertWithAllOptimizationLevels("10@0,20@1,30@2|1:2@1,2:3@2",
+            "var saved = [];\n" +
+            "[10, 20, 30].forEach(function () { saved.push(arguments); });\n" +
+            "var r = saved.map(function (a) { return a[0] + '@' + a[1]; });\n" +
+            "saved = [];\n" +
+            "[1, 2, 3].reduce(function (s, x) {\n" +
+            "  saved.push(arguments);\n" +
+            "  return x;\n" +
+            "});\n" +
+            "r.join() + '|' + saved.map(function (a) {\n" +
+            "  return a[0] + ':' + a[1] + '@' + a[2];\n" +
+            "}).join()");
+    }
+
+    public void testLargeArrays() {
+        Utils.assertWithAllOptimizationLevels("20000,10000",
+            "var big = [];\n" +
+            "for (var i = 0; i < 20000; i++) big.push(i);\n" +
+            "[big.map(function (x) { return x + 1; })[19999],\n" +
+            " big.filter(function (x) { return x % 2; }).length].join()");
+    }
+}
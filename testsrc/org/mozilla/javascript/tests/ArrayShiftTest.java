@@ -0,0 +1,95 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks shift, unshift and splice on dense arrays, which move the start
+ * of the array's storage, against the generic versions run on an
+ * array-like object.
+ */
+public class ArrayShiftTest extends TestCase {
+
+    public void testQueue() {
+        Utils.assertWithAllOptimizationLevels("4950,0,",
+            "var q = [], s = 0;\n" +
+            "for (var i = 0; i < 100; i++) q.push(i);\n" +
+            "while (q.length) s += q.shift();\n" +
+            "[s, q.length, q.join()].join()");
+    }
+
+    public void testUnshift() {
+        Utils.assertWithAllOptimizationLevels("3,2,1,0,a,b,5",
+            "var a = ['a', 'b'];\n" +
+            "for (var i = 0; i < 4; i++) a.unshift(i);\n" +
+            "a.push(5);\n" +
+            "a.join()");
+    }
+
+    public void testHolesAfterShift() {
+        Utils.assertWithAllOptimizationLevels("1|2|false|3",
+            "var a = [1, , 3];\n" +
+            "var first = a.shift();\n" +
+            "[first, a.length, 0 in a, a[1]].join('|')");
+    }
+
+    public void testUnshiftIntoShiftedStorage() {
+        Utils.assertWithAllOptimizationLevels("5|x,z,y,8,9|0,1,2,3,4",
+            "var b = [];\n" +
+            "for (var i = 0; i < 10; i++) b.push(i);\n" +
+            "for (var i = 0; i < 8; i++) b.shift();\n" +
+            "b.unshift('x', 'y');\n" +
+            "b.splice(1, 0, 'z');\n" +
+            "[b.length, b.join(), Object.keys(b).join()].join('|')");
+    }
+
+    public void testWritesAfterShift() {
+        Utils.assertWithAllOptimizationLevels(
+            "5|u,2,3,4,|2,3|u,2,3,4,,9|3",
+            "var a = [0, 1, 2, 3, 4];\n" +
+            "a.shift(); a.shift();\n" +
+            "a[5] = 'x';\n" +
+            "a.length = 4;\n" +
+            "a.unshift('u');\n" +
+            "[a.length, a.join(), a.slice(1, 3).join(), a.concat([9]).join(),\n" +
+            " a.indexOf(4)].join('|')");
+    }
+
+    public void testAgainstGenericMethods() {
+        Utils.assertWithAllOptimizationLevels("ok",
+            "var seed = 1;\n" +
+            "function rnd(n) {\n" +
+            "  seed = (seed * 1103515245 + 12345) % 2147483648;\n" +
+            "  return seed % n;\n" +
+            "}\n" +
+            "var a = [], o = {length: 0}, P = Array.prototype;\n" +
+            "var result = 'ok';\n" +
+            "for (var step = 0; step < 3000; step++) {\n" +
+            "  var r1, r2, b, c;\n" +
+            "  switch (rnd(7)) {\n" +
+            "    case 0: case 1:\n" +
+            "      r1 = a.push(step, step); r2 = P.push.call(o, step, step);\n" +
+            "      break;\n" +
+            "    case 2: r1 = a.shift(); r2 = P.shift.call(o); break;\n" +
+            "    case 3: r1 = a.unshift(step); r2 = P.unshift.call(o, step);\n" +
+            "      break;\n" +
+            "    case 4: r1 = a.pop(); r2 = P.pop.call(o); break;\n" +
+            "    case 5: b = rnd(a.length + 2); c = rnd(4);\n" +
+            "      r1 = a.splice(b, c, step, step);\n" +
+            "      r2 = P.splice.call(o, b, c, step, step);\n" +
+            "      break;\n" +
+            "    case 6: b = rnd(a.length + 2); c = rnd(5);\n" +
+            "      r1 = a.splice(b, c); r2 = P.splice.call(o, b, c);\n" +
+            "      break;\n" +
+            "  }\n" +
+            "  if (String(r1) !== String(r2) || a.length !== o.length ||\n" +
+            "      a.join() !== P.join.call(o)) {\n" +
+            "    result = 'mismatch at ' + step; break;\n" +
+            "  }\n" +
+            "}\n" +
+            "result");
+    }
+}
@@ -0,0 +1,95 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+
+/**
+ * Checks Array.prototype.sort, which sorts values stably, converts them
+ * to strings once for the default order and compares numbers directly
+ * for subtracting compare functions.
+ */
+public class ArraySortTest extends TestCase {
+
+    private static final ContextFactory LAZY = new ContextFactory() {
+        @Override
+        protected boolean hasFeature(Context cx, int featureIndex) {
+            if (featureIndex == Context.FEATURE_LAZY_FUNCTION_COMPILATION) {
+                return true;
+            }
+            return super.hasFeature(cx, featureIndex);
+        }
+    };
+
+    private static final String NUMBERS =
+        "var a = [2, -3, Infinity, 0.5, 0, -Infinity, 7, 1, -0, 3, 4];\n" +
+        "function s(f) { return a.slice().sort(f).join(); }\n";
+
+    public void testDefaultOrder() {
+        Utils.assertWithAllOptimizationLevels("1,10,2,a,b,c,,,false",
+            "var a = [2, 'c', 10, , 'a', undefined, 1, 'b'];\n" +
+            "a.sort();\n" +
+            "a.join() + ',' + (7 in a)");
+    }
+
+    public void testStable() {
+        Utils.assertWithAllOptimizationLevels(
+            "a1,b1,a2,b2,a3,b3|a1,a2,a3,b1,b2,b3",
+            "var a = [];\n" +
+            "for (var i = 3; i > 0; i--) a.push({k: i, n: 'a' + i});\n" +
+            "for (var i = 3; i > 0; i--) a.push({k: i, n: 'b' + i});\n" +
+            "function names(x) { return x.map(function (e) { return e.n; }); }\n" +
+            "a.sort(function (x, y) { return x.k - y.k; });\n" +
+            "var r = names(a).join();\n" +
+            "a.forEach(function (e) { e.toString = function () {\n" +
+            "  return this.n; }; });\n" +
+            "r + '|' + names(a.sort()).join()");
+    }
+
+    public void testNumericCompareFunctions() {
+        Utils.assertWithAllOptimizationLevels(
+            "-Infinity,-3,0,0.5,2,Infinity|Infinity,2,0.5,0,-3,-Infinity",
+            "var a = [2, -3, Infinity, 0.5, 0, -Infinity];\n" +
+            "a.slice().sort(function (a, b) { return a - b; }).join() + '|' +\n" +
+            "a.slice().sort(function (a, b) { return b - a; }).join()");
+        Utils.assertWithAllOptimizationLevels("1,2,10|2,10,1",
+            "var v = {valueOf: function () { return 10; }, toString:\n" +
+            "  function () { return '10'; }};\n" +
+            "[2, v, 1].sort(function (a, b) { return a - b; }).join() + '|' +\n" +
+            "[2, 10, 1].sort(function (a, a2) { return 0; }).join()");
+    }
+
+    public void testLongerNumericSorts() {
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_ES6,
+            "-Infinity,-3,0,0,0.5,1,2,3,4,7,Infinity|" +
+            "Infinity,7,4,3,2,1,0.5,0,0,-3,-Infinity|" +
+            "-Infinity,-3,0,0,0.5,1,2,3,4,7,Infinity|" +
+            "Infinity,7,4,3,2,1,0.5,0,0,-3,-Infinity",
+            NUMBERS +
+            "[s(function (x, y) { return x - y; }),\n" +
+            " s(function (x, y) { return y - x; }),\n" +
+            " s((x, y) => x - y), s((x, y) => y - x)].join('|')");
+        // Functions that look alike but are called for each comparison
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_ES6,
+            "2,-3,Infinity,0.5,0,-Infinity,7,1,0,3,4|" +
+            "-Infinity,-3,0,0,0.5,1,2,3,4,7,Infinity|" +
+            "-Infinity,-3,0,0,0.5,1,2,3,4,7,Infinity|true",
+            NUMBERS +
+            "var calls = 0;\n" +
+            "[s(function (x, x) { return x - x; }),\n" +
+            " s(function (x, y) { return x - y + 0; }),\n" +
+            " s(function (x, y) { calls++; return x - y; }),\n" +
+            " calls >= 10].join('|')");
+    }
+
+    public void testLazyCompareFunction() {
+        Utils.assertWithAllOptimizationLevels(LAZY, Context.VERSION_1_8,
+            "Infinity,7,4,3,2,1,0.5,0,0,-3,-Infinity",
+            NUMBERS + "s(function (x, y) { return y - x; })");
+    }
+}
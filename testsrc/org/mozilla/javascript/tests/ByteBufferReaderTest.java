@@ -0,0 +1,109 @@
+package org.mozilla.javascript.tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import junit.framework.TestCase;
+import org.mozilla.javascript.ByteBufferReader;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+
+public class ByteBufferReaderTest extends TestCase {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static String script(int statements) {
+        StringBuilder sb = new StringBuilder("var s = 0; // caf\u00e9 \ud83d\ude00\n");
+        for (int i = 0; i < statements; i++) {
+            sb.append("s += ").append(i).append("; // \u00e9t\u00e9\n");
+        }
+        sb.append("'\u00e9\ud83d\ude00'.length + ':' + s;");
+        return sb.toString();
+    }
+
+    public void testReadSingleChars() throws IOException {
+        String text = "a\u00e9\u20ac\ud83d\ude00b";
+        Reader reader = new ByteBufferReader(
+            ByteBuffer.wrap(text.getBytes(UTF_8)), UTF_8);
+        char[] buffer = new char[1];
+        StringBuilder sb = new StringBuilder();
+        int n;
+        while ((n = reader.read(buffer, 0, 1)) != -1) {
+            assertEquals(1, n);
+            sb.append(buffer[0]);
+        }
+        assertEquals(text, sb.toString());
+        assertEquals(-1, reader.read(buffer, 0, 1));
+    }
+
+    public void testPositionIsKept() throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap("xyz".getBytes(UTF_8));
+        bytes.position(1);
+        char[] buffer = new char[8];
+        assertEquals(2, new ByteBufferReader(bytes, UTF_8).read(buffer, 0, 8));
+        assertEquals('y', buffer[0]);
+        assertEquals(1, bytes.position());
+    }
+
+    public void testCompileMappedFile() throws IOException {
+        File file = File.createTempFile("ByteBufferReaderTest", ".js");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(script(1000).getBytes(UTF_8));
+            } finally {
+                out.close();
+            }
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                                                0, channel.size());
+                for (int opt = -1; opt <= 1; opt++) {
+                    assertEquals("3:499500", exec(opt, new ByteBufferReader(
+                        mapped, UTF_8)));
+                }
+            } finally {
+                raf.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testCompileSource() {
+        char[] chars = ("x" + script(100) + "x").toCharArray();
+        CharBuffer source = CharBuffer.wrap(chars, 1, chars.length - 2);
+        Context cx = Context.enter();
+        try {
+            for (int opt = -1; opt <= 1; opt++) {
+                cx.setOptimizationLevel(opt);
+                Scriptable scope = cx.initStandardObjects();
+                Script script = cx.compileSource(source, "test", 1, null);
+                assertEquals("3:4950", Context.toString(script.exec(cx, scope)));
+            }
+        } finally {
+            Context.exit();
+        }
+    }
+
+    private static String exec(int opt, Reader in) throws IOException {
+        Context cx = Context.enter();
+        try {
+            cx.setOptimizationLevel(opt);
+            Scriptable scope = cx.initStandardObjects();
+            Script script = cx.compileReader(in, "test", 1, null);
+            return Context.toString(script.exec(cx, scope));
+        } finally {
+            Context.exit();
+        }
+    }
+}
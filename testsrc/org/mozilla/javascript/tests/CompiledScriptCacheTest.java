@@ -0,0 +1,214 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.util.zip.CRC32;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.CompiledScriptCache;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * Tests for {@link CompiledScriptCache}.
+ */
+public class CompiledScriptCacheTest extends TestCase {
+
+    private ContextFactory factory;
+    private CompiledScriptCache cache;
+    private Context cx;
+
+    @Override
+    protected void setUp() {
+        factory = new ContextFactory();
+        cache = new CompiledScriptCache(2);
+        factory.setCompiledScriptCache(cache);
+        cx = factory.enterContext();
+    }
+
+    @Override
+    protected void tearDown() {
+        Context.exit();
+    }
+
+    public void testScriptsAreShared() throws IOException {
+        for (int level = -1; level <= 9; level += 10) {
+            cache.clear();
+            cx.setOptimizationLevel(level);
+            Script s1 = cx.compileString("x * 2", "tmpl", 1, null);
+            Script s2 = cx.compileReader(new StringReader("x * 2"), "tmpl", 1,
+                                         null);
+            assertSame(s1, s2);
+            assertEquals(6, exec(s2, 3));
+            assertEquals(8, exec(s2, 4));
+        }
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    public void testSettingsArePartOfKey() {
+        Script s1 = cx.compileString("1", "tmpl", 1, null);
+        cx.setOptimizationLevel(cx.getOptimizationLevel() == 9 ? -1 : 9);
+        Script s2 = cx.compileString("1", "tmpl", 1, null);
+        assertNotSame(s1, s2);
+        assertNotSame(s1, cx.compileString("1", "other", 1, null));
+        assertEquals(0, cache.getHits());
+    }
+
+    public void testEviction() {
+        Script a = cx.compileString("'a'", "a", 1, null);
+        cx.compileString("'b'", "b", 1, null);
+        assertSame(a, cx.compileString("'a'", "a", 1, null));
+        cx.compileString("'c'", "c", 1, null);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        // 'b' was the least recently used
+        assertSame(a, cx.compileString("'a'", "a", 1, null));
+        assertEquals(2, cache.getHits());
+    }
+
+    public void testFunctions() {
+        Scriptable scope1 = cx.initStandardObjects();
+        Scriptable scope2 = cx.initStandardObjects();
+        ScriptableObject.putProperty(scope1, "y", 1);
+        ScriptableObject.putProperty(scope2, "y", 2);
+        String source = "function f(x) { return x + y; }";
+        Function f1 = cx.compileFunction(scope1, source, "f", 1, null);
+        Function f2 = cx.compileFunction(scope2, source, "f", 1, null);
+        assertNotSame(f1, f2);
+        assertEquals(1, cache.getHits());
+        assertEquals(11, ((Number) f1.call(cx, scope1, scope1,
+                                           new Object[] { 10 })).intValue());
+        assertEquals(12, ((Number) f2.call(cx, scope2, scope2,
+                                           new Object[] { 10 })).intValue());
+    }
+
+    public void testInterpretedFunctions() {
+        cx.setOptimizationLevel(-1);
+        testFunctions();
+    }
+
+    public void testCodeDirectory() throws IOException {
+        File dir = File.createTempFile("scripts", "");
+        dir.delete();
+        try {
+            for (int level = -1; level <= 9; level += 10) {
+                cache.setCodeDirectory(dir);
+                cx.setOptimizationLevel(level);
+                Script s1 = cx.compileString("x + 1", "tmpl", 1, null);
+                assertEquals(level < 0 ? 1 : 2, dir.listFiles().length);
+
+                // A new cache, as after a restart, finds the stored code
+                cache = new CompiledScriptCache(2);
+                cache.setCodeDirectory(dir);
+                factory.setCompiledScriptCache(cache);
+                Script s2 = cx.compileString("x + 1", "tmpl", 1, null);
+                assertNotSame(s1, s2);
+                assertEquals(5, exec(s2, 4));
+                if (level >= 0) {
+                    assertEquals(s1.getClass().getName(),
+                                 s2.getClass().getName());
+                }
+            }
+
+            // Damaged files are ignored
+            for (File f : dir.listFiles()) {
+                RandomAccessFile raf = new RandomAccessFile(f, "rw");
+                raf.seek(raf.length() - 9);
+                int b = raf.read();
+                raf.seek(raf.length() - 9);
+                raf.write(b ^ 0xFF);
+                raf.close();
+            }
+            cache.clear();
+            assertEquals(6, exec(cx.compileString("x + 1", "tmpl", 1, null),
+                                 5));
+        } finally {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    static boolean untrustedClassRead;
+
+    static class UntrustedClass implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException
+        {
+            in.defaultReadObject();
+            untrustedClassRead = true;
+        }
+    }
+
+    public void testOnlyInterpreterClassesAreDeserialized() throws IOException {
+        File dir = File.createTempFile("scripts", "");
+        dir.delete();
+        try {
+            cache.setCodeDirectory(dir);
+            cx.setOptimizationLevel(-1);
+            cx.compileString("x + 1", "tmpl", 1, null);
+            File file = dir.listFiles()[0];
+
+            // Replace the stored code with another serialized object
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            String signature = in.readUTF();
+            int kind = in.readByte();
+            in.close();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream oout = new ObjectOutputStream(bytes);
+            oout.writeObject(new UntrustedClass());
+            oout.close();
+            byte[] code = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(code);
+            DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(file));
+            out.writeUTF(signature);
+            out.writeByte(kind);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeLong(crc.getValue());
+            out.close();
+
+            untrustedClassRead = false;
+            cache.clear();
+            assertEquals(6, exec(cx.compileString("x + 1", "tmpl", 1, null),
+                                 5));
+            assertFalse(untrustedClassRead);
+        } finally {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    private int exec(Script script, int x) {
+        Scriptable scope = cx.initStandardObjects();
+        ScriptableObject.putProperty(scope, "x", x);
+        return ((Number) script.exec(cx, scope)).intValue();
+    }
+}
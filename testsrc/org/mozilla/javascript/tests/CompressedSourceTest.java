@@ -0,0 +1,87 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextAction;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Tests for {@link Context#FEATURE_COMPRESSED_SOURCE} and for scripts
+ * compiled without source.
+ */
+public class CompressedSourceTest extends TestCase {
+
+    private static final String SOURCE =
+        "function outer(a, b) {\n"
+        + "  var s = 'café € ￿', n = 1.5e300 + 0x7fffffff;\n"
+        + "  function inner(x) { return x * 65535 + /re[g]/gi.source; }\n"
+        + "  return inner(a) + s + n + b;\n"
+        + "}\n"
+        + "var obj = { f: function(y) { return y - 1; } };\n";
+
+    public void testToString() {
+        String expected = eval(false, false, true, SOURCE
+            + "outer + '|' + outer(1, 2) + '|' + obj.f");
+        assertEquals(expected, eval(true, false, true, SOURCE
+            + "outer + '|' + outer(1, 2) + '|' + obj.f"));
+        assertTrue(expected.indexOf("café € ￿") > 0);
+    }
+
+    public void testLargeScript() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("function f").append(i).append("(a) { return a + 'Ā")
+              .append(i).append("'; }\n");
+        }
+        sb.append("f0 + f999 + f500.toSource()");
+        String source = sb.toString();
+        assertEquals(eval(false, false, true, source),
+                     eval(true, false, true, source));
+    }
+
+    public void testLazyFunctions() {
+        String source = SOURCE + "String(outer) + obj.f + outer(3, 4)";
+        assertEquals(eval(false, true, true, source),
+                     eval(true, true, true, source));
+    }
+
+    public void testWithoutSource() {
+        assertEquals("function outer() {\n\t[native code, arity=2]\n}\n",
+                     eval(true, false, false, SOURCE + "String(outer)"));
+        assertEquals("function outer() {\n\t[native code, arity=2]\n}\n",
+                     eval(false, false, false, SOURCE + "String(outer)"));
+    }
+
+    private static String eval(final boolean compressed, final boolean lazy,
+                               final boolean generatingSource,
+                               final String source) {
+        ContextFactory factory = new ContextFactory() {
+            @Override
+            protected boolean hasFeature(Context cx, int featureIndex) {
+                if (featureIndex == Context.FEATURE_COMPRESSED_SOURCE) {
+                    return compressed;
+                }
+                if (featureIndex == Context.FEATURE_LAZY_FUNCTION_COMPILATION) {
+                    return lazy;
+                }
+                return super.hasFeature(cx, featureIndex);
+            }
+        };
+        return (String) factory.call(new ContextAction() {
+            public Object run(Context cx) {
+                cx.setOptimizationLevel(-1);
+                cx.setLanguageVersion(Context.VERSION_1_8);
+                cx.setGeneratingSource(generatingSource);
+                Scriptable scope = cx.initStandardObjects();
+                return Context.toString(
+                    cx.evaluateString(scope, source, "test.js", 1, null));
+            }
+        });
+    }
+}
@@ -0,0 +1,64 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.ScriptRuntime;
+
+/**
+ * Compares the fast decimal conversion of ScriptRuntime with
+ * Double.parseDouble.
+ */
+public class DecimalToNumberTest extends TestCase {
+
+    public void testNumbers() {
+        String[] numbers = { "0", "-0", "1.", ".5", "+.5", "0.1", "00012",
+                             "3.14159", "-1e5", "1e+5", "1e22", "1e-22",
+                             "123456789012345", "0.000001", "0e500" };
+        for (String s : numbers) {
+            assertDecimal(s);
+        }
+    }
+
+    public void testFallback() {
+        String[] others = { "", "-", ".", "1e", "1e+", "e5", "0x10", "1..2",
+                            "1e23", "5e-324", "1234567890123456",
+                            "9007199254740993", "Infinity", "1 " };
+        for (String s : others) {
+            double d = ScriptRuntime.decimalToNumber(s, 0, s.length() - 1);
+            assertTrue(s, Double.isNaN(d));
+        }
+    }
+
+    public void testRandom() {
+        Random random = new Random(42);
+        String chars = "0123456789.eE+-";
+        for (int n = 0; n < 100000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = 1 + random.nextInt(20);
+            for (int i = 0; i < length; i++) {
+                if (random.nextInt(4) == 0) {
+                    sb.append(chars.charAt(random.nextInt(chars.length())));
+                } else {
+                    sb.append((char) ('0' + random.nextInt(10)));
+                }
+            }
+            String s = sb.toString();
+            if (!Double.isNaN(ScriptRuntime.decimalToNumber(s, 0, length - 1))) {
+                assertDecimal(s);
+            }
+        }
+    }
+
+    private static void assertDecimal(String s) {
+        double expected = Double.parseDouble(s);
+        double actual = ScriptRuntime.decimalToNumber(s, 0, s.length() - 1);
+        assertEquals(s, Double.doubleToRawLongBits(expected),
+                     Double.doubleToRawLongBits(actual));
+    }
+}
@@ -0,0 +1,110 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+import org.mozilla.classfile.ByteCode;
+import org.mozilla.classfile.ClassFileWriter;
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.optimizer.ClassCompiler;
+
+/**
+ * Tests for {@link ClassFileWriter#deferStackMaps()}.
+ */
+public class DeferredStackMapsTest extends TestCase {
+
+    private static final int METHODS = 50;
+
+    public void testParallelStackMaps() throws Exception {
+        byte[] serial = writeClass(null);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(Arrays.equals(serial, writeClass(executor)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Class<?> c = new ClassLoader(getClass().getClassLoader()) {
+            Class<?> define(byte[] bytes) {
+                return defineClass("Deferred", bytes, 0, bytes.length);
+            }
+        }.define(serial);
+        Method m = c.getMethod("m" + (METHODS - 1), Object.class);
+        assertEquals("x", m.invoke(null, (Object) null));
+        assertEquals("y" + (METHODS - 1), m.invoke(null, "o"));
+    }
+
+    public void testScriptWithManyFunctions() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < METHODS; i++) {
+            sb.append("function f").append(i).append("(a) {\n")
+              .append("  var s = '';\n")
+              .append("  try { for (var i = 0; i < a; i++) s += i; }\n")
+              .append("  catch (e) { s = e; }\n")
+              .append("  return s + ").append(i).append(";\n")
+              .append("}\n");
+        }
+        sb.append("f0(2) + ':' + f").append(METHODS - 1).append("(3)");
+        String source = sb.toString();
+
+        Context cx = Context.enter();
+        try {
+            cx.setOptimizationLevel(9);
+            CompilerEnvirons env = new CompilerEnvirons();
+            env.initFromContext(cx);
+            Object[] first = new ClassCompiler(env).compileToClassFiles(
+                source, "many.js", 1, "Many");
+            Object[] second = new ClassCompiler(env).compileToClassFiles(
+                source, "many.js", 1, "Many");
+            assertTrue(Arrays.equals((byte[]) first[1], (byte[]) second[1]));
+
+            Scriptable scope = cx.initStandardObjects();
+            assertEquals("010:012" + (METHODS - 1), Context.toString(
+                cx.evaluateString(scope, source, "many.js", 1, null)));
+        } finally {
+            Context.exit();
+        }
+    }
+
+    /**
+     * Writes a class of methods
+     * <code>static Object m&lt;i&gt;(Object o) {
+     *   Object s = "x"; if (o != null) s = "y&lt;i&gt;"; return s; }</code>,
+     * whose stack maps need class constants the class has not used yet.
+     */
+    private static byte[] writeClass(ExecutorService executor) {
+        ClassFileWriter cfw = new ClassFileWriter("Deferred",
+                                                  "java.lang.Object", null);
+        cfw.deferStackMaps();
+        for (int i = 0; i < METHODS; i++) {
+            cfw.startMethod("m" + i, "(Ljava/lang/Object;)Ljava/lang/Object;",
+                            (short) (ClassFileWriter.ACC_PUBLIC
+                                     | ClassFileWriter.ACC_STATIC));
+            int end = cfw.acquireLabel();
+            cfw.addPush("x");
+            cfw.addAStore(1);
+            cfw.addALoad(0);
+            cfw.add(ByteCode.IFNULL, end);
+            cfw.addPush("y" + i);
+            cfw.addAStore(1);
+            cfw.markLabel(end);
+            cfw.addALoad(1);
+            cfw.add(ByteCode.ARETURN);
+            cfw.stopMethod((short) 2);
+        }
+        cfw.finishMethods(executor);
+        return cfw.toByteArray();
+    }
+}
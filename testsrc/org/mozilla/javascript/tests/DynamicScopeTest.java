@@ -82,7 +82,8 @@ public class DynamicScopeTest extends TestCase {
 	        Object result = cx.evaluateString(scope, "23", "source", 1, null);
 			assertEquals(23, result);
 		} finally {
-			// cx.exit
+			// Leave the context entered by the initialization above
+			Context.exit();
 		}
 	}
 	
@@ -73,6 +73,15 @@ public class GlobalParseXTest extends TestCase {
     	testParseFloat("789", "789e-e++hello");
     }
 
+    public void testParseFloatDecimals() {
+        testParseFloat("0.05", "0.05");
+        testParseFloat("-0.5", "-.5x");
+        testParseFloat("1e+22", "1e22");
+        testParseFloat("1e+23", "1e23");
+        testParseFloat("1234567890123456800", "1234567890123456789");
+        testParseFloat("5e-324", "5e-324");
+    }
+
     private void testParseFloat(final String expected, final String value) {
         assertEvaluates(expected, "String(parseFloat('" + value + "'))");
     }
@@ -0,0 +1,133 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextAction;
+import org.mozilla.javascript.NativeJavaMethod;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * Tests for calls on host objects declared with
+ * {@link Context#declareHostBinding(String, Class)}.
+ */
+public class HostBindingTest extends TestCase {
+
+    public static class Rules {
+        public String log = "";
+
+        public int score(int a, String b) {
+            return a * 10 + b.length();
+        }
+
+        public void record(String s) {
+            log += s;
+        }
+
+        public char grade(double d) {
+            return d > 0.5 ? 'A' : 'B';
+        }
+
+        public Rules self() {
+            return this;
+        }
+
+        public boolean reflected() {
+            for (StackTraceElement e : new Throwable().getStackTrace()) {
+                if (e.getClassName().equals(NativeJavaMethod.class.getName())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public String pick(int i) {
+            return "int";
+        }
+
+        public String pick(String s) {
+            return "string";
+        }
+
+        public void fail() {
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    public void testDirectCalls() {
+        assertEquals("false:32:undefined:c:65:true:int",
+            eval(new Rules(),
+                 "rules.log = '';\n"
+                 + "rules.reflected() + ':' + rules.score(3, 'xy') + ':'\n"
+                 + "+ rules.record('c') + ':' + rules.log + ':'\n"
+                 + "+ rules.grade(0.9)\n"
+                 + "+ ':' + (rules.self() === rules) + ':' + rules.pick(1)",
+                 true));
+    }
+
+    public void testInterpretedCallsReflected() {
+        assertEquals("true:32",
+            eval(new Rules(),
+                 "rules.reflected() + ':' + rules.score(3, 'xy')", false));
+    }
+
+    public void testOtherValuesUseGenericCall() {
+        assertEquals("true:js",
+            eval(new Rules() {
+                     @Override
+                     public int score(int a, String b) {
+                         return -1;
+                     }
+                 },
+                 "var r = rules.reflected();\n"
+                 + "rules = { reflected: function() { return 'js'; } };\n"
+                 + "r + ':' + rules.reflected()", true));
+    }
+
+    public void testExceptionsAreWrapped() {
+        assertEquals("caught:failed:1",
+            eval(new Rules(),
+                 "var r;\n"
+                 + "try { 1 + rules.fail(); } catch (e) {\n"
+                 + "  r = 'caught:' + e.javaException.getMessage();\n"
+                 + "}\n"
+                 + "r + ':' + [rules.score(0, 'x')].length", true));
+    }
+
+    public void testNonConvertibleArgument() {
+        try {
+            eval(new Rules(), "rules.score({}, 'a')", true);
+            fail();
+        } catch (Exception e) {
+            // expected conversion error
+        }
+    }
+
+    private String eval(final Rules rules, final String source,
+                        final boolean compiled) {
+        final String[] result = new String[1];
+        ContextAction action = new ContextAction() {
+            public Object run(Context cx) {
+                cx.declareHostBinding("rules", Rules.class);
+                Scriptable scope = cx.initStandardObjects();
+                ScriptableObject.putProperty(scope, "rules",
+                    Context.javaToJS(rules, scope));
+                result[0] = Context.toString(
+                    cx.evaluateString(scope, source, "test.js", 1, null));
+                return null;
+            }
+        };
+        if (compiled) {
+            Utils.runWithOptimizationLevel(action, 0);
+            Utils.runWithOptimizationLevel(action, 9);
+        } else {
+            Utils.runWithOptimizationLevel(action, -1);
+        }
+        return result[0];
+    }
+}
@@ -0,0 +1,56 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.optimizer.OptRuntime;
+
+/**
+ * Checks that additions and increments of Integer values stay Integers
+ * and that small integer values share their Double objects.
+ */
+public class IntegerArithmeticTest extends TestCase {
+
+    public void testIntegerAdd() {
+        Context cx = Context.enter();
+        try {
+            assertEquals(Integer.valueOf(5),
+                ScriptRuntime.add(Integer.valueOf(2), Integer.valueOf(3), cx));
+            assertEquals(Double.valueOf(2147483648.0),
+                ScriptRuntime.add(Integer.valueOf(Integer.MAX_VALUE),
+                                  Integer.valueOf(1), cx));
+            assertEquals(Double.valueOf(2.5),
+                ScriptRuntime.add(Integer.valueOf(2), Double.valueOf(0.5), cx));
+        } finally {
+            Context.exit();
+        }
+    }
+
+    public void testCachedDoubles() {
+        assertSame(ScriptRuntime.wrapNumber(7), ScriptRuntime.wrapNumber(7));
+        assertSame(ScriptRuntime.wrapNumber(-1), OptRuntime.wrapDouble(-1));
+        assertSame(ScriptRuntime.wrapNumber(0), OptRuntime.wrapDouble(0));
+        assertEquals(Double.valueOf(-0.0),
+                     ScriptRuntime.wrapNumber(ScriptRuntime.negativeZero));
+        assertEquals(Double.valueOf(-0.0),
+                     OptRuntime.wrapDouble(ScriptRuntime.negativeZero));
+        assertEquals(Double.valueOf(1e10), ScriptRuntime.wrapNumber(1e10));
+        assertSame(ScriptRuntime.NaNobj,
+                   ScriptRuntime.wrapNumber(Double.NaN));
+    }
+
+    public void testScripts() {
+        Utils.assertWithAllOptimizationLevels(
+            "6,number,4,-Infinity,2147483648,1.5",
+            "var m = 'abc'.length, o = {n: 'ab'.length};\n" +
+            "o.n++; o.n++;\n" +
+            "var x = 2147483647;\n" +
+            "[m + m, typeof (m + m), o.n, 1 / (0 * -1),\n" +
+            " 'x'.length + x, (m + m) / 4].join()");
+    }
+}
@@ -0,0 +1,145 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.lang.reflect.Proxy;
+import java.util.Comparator;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextAction;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Tests for JS functions and objects used as implementation of
+ * Java interfaces.
+ */
+public class InterfaceAdapterTest extends TestCase {
+
+    public interface IntOp {
+        int apply(int a, long b);
+    }
+
+    public interface Callbacks {
+        String name();
+        double weight(double factor);
+        void touch(boolean flag);
+    }
+
+    public static String applyIntOp(IntOp op) {
+        return Proxy.isProxyClass(op.getClass()) + ":" + op.apply(4, 2L)
+            + ":" + op.equals(op);
+    }
+
+    public static String useCallbacks(Callbacks cb) {
+        cb.touch(true);
+        return cb.name() + ":" + cb.weight(1.5);
+    }
+
+    public static int compare(Comparator<Object> c, Object a, Object b) {
+        return c.compare(a, b) + 10 * c.reversed().compare(a, b);
+    }
+
+    public static String drain(Iterator<Object> it) {
+        StringBuilder sb = new StringBuilder();
+        while (it.hasNext()) {
+            sb.append(it.next());
+            it.remove();
+        }
+        return sb.toString();
+    }
+
+    public static String consumeRest(Iterator<Object> it) {
+        final StringBuilder sb = new StringBuilder();
+        it.forEachRemaining(new java.util.function.Consumer<Object>() {
+            public void accept(Object o) {
+                sb.append(o);
+            }
+        });
+        return sb.toString();
+    }
+
+    public void testRunnable() {
+        assertEvaluates(2,
+            "var count = 0;\n"
+            + "var t = new java.lang.Thread(function() { count++; });\n"
+            + "t.run(); t.run();\n"
+            + "count");
+    }
+
+    public void testCollectionsSort() {
+        assertEvaluates("[a, b, c]",
+            "var list = new java.util.ArrayList();\n"
+            + "list.add('b'); list.add('c'); list.add('a');\n"
+            + "java.util.Collections.sort(list, function(x, y) {\n"
+            + "  x = String(x); y = String(y);\n"
+            + "  return x < y ? -1 : x > y ? 1 : 0;\n"
+            + "});\n"
+            + "String(list)");
+    }
+
+    public void testPrimitiveArgumentsAndResult() {
+        assertEvaluates("false:42:true",
+            "String(Packages." + InterfaceAdapterTest.class.getName()
+            + ".applyIntOp(function(a, b) { return a * 10 + b; }))");
+    }
+
+    public void testObjectWithMethods() {
+        assertEvaluates("obj:3.0:true",
+            "var touched = false;\n"
+            + "var s = Packages." + InterfaceAdapterTest.class.getName()
+            + ".useCallbacks({\n"
+            + "   name: function() { return 'obj'; },\n"
+            + "   weight: function(f) { return f * 2; },\n"
+            + "   touch: function(flag) { touched = flag; } });\n"
+            + "s + ':' + touched");
+    }
+
+    public void testComparatorWithDefaultMethods() {
+        assertEvaluates(9,
+            "Packages." + InterfaceAdapterTest.class.getName()
+            + ".compare(function(a, b) { return a - b; }, 1, 2)");
+    }
+
+    public void testDefaultMethodDefinedByObject() {
+        assertEvaluates("abc:abc",
+            "var items = ['a', 'b', 'c'], i = 0, removed = '';\n"
+            + "var s = Packages." + InterfaceAdapterTest.class.getName()
+            + ".drain({\n"
+            + "   hasNext: function() { return i < items.length; },\n"
+            + "   next: function() { return items[i++]; },\n"
+            + "   remove: function() { removed += items[i - 1]; } });\n"
+            + "s + ':' + removed");
+    }
+
+    public void testDefaultMethodNotDefinedByObject() {
+        assertEvaluates("xy",
+            "var items = ['x', 'y'], i = 0;\n"
+            + "String(Packages." + InterfaceAdapterTest.class.getName()
+            + ".consumeRest({\n"
+            + "   hasNext: function() { return i < items.length; },\n"
+            + "   next: function() { return items[i++]; } }))");
+    }
+
+    private void assertEvaluates(final Object expected, final String source) {
+        final ContextAction action = new ContextAction() {
+            public Object run(Context cx) {
+                final Scriptable scope = cx.initStandardObjects();
+                final Object rep = cx.evaluateString(scope, source, "test.js",
+                        1, null);
+                if (expected instanceof Integer) {
+                    assertEquals(expected,
+                                 Integer.valueOf((int) Context.toNumber(rep)));
+                } else {
+                    assertEquals(expected, rep);
+                }
+                return null;
+            }
+        };
+        Utils.runWithAllOptimizationLevels(action);
+    }
+}
@@ -0,0 +1,161 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+
+/**
+ * Runs code whose icode has jumps to jumps, jumps to returns and
+ * unreachable code, which the interpreter's peephole pass rewrites.
+ */
+public class InterpreterPeepholeTest extends TestCase {
+
+    /**
+     * Compiles without debug information, so that line markers followed
+     * by other line markers are dropped as well.
+     */
+    private static final ContextFactory NO_DEBUG_INFO = new ContextFactory() {
+        @Override
+        protected Context makeContext() {
+            Context cx = super.makeContext();
+            cx.setGeneratingDebug(false);
+            return cx;
+        }
+    };
+
+    public void testLoops() {
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8,
+            "45",
+            "var s = 0;\n" +
+            "for (var i = 0; i < 10; i++) {\n" +
+            "  if (i % 2) { s += i; } else { s += i; }\n" +
+            "}\n" +
+            "s");
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8,
+            "7",
+            "var n = 0;\n" +
+            "while (true) {\n" +
+            "  if (++n > 6) break;\n" +
+            "  else continue;\n" +
+            "  n = 100;\n" +
+            "}\n" +
+            "n");
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8,
+            "3", "var k = 0; do { k++; } while (k < 3); k");
+    }
+
+    public void testEmptyInfiniteLoops() {
+        // The loops are compiled, not run: a constant condition folded to
+        // a GOTO would jump to itself
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8,
+            "function",
+            "function a() { while (true); }\n" +
+            "function b() { for (;;); }\n" +
+            "function c() { for (;;) {} }\n" +
+            "function d() { do ; while (true); }\n" +
+            "function e(x) { if (x) { while (1); } return x; }\n" +
+            "e(0), typeof a");
+    }
+
+    public void testLabels() {
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8,
+            "0,1,0,2,0,3",
+            "var r = [];\n" +
+            "outer: for (var i = 1; i < 4; i++) {\n" +
+            "  inner: for (var j = 0; j < 4; j++) {\n" +
+            "    if (j == 1) continue outer;\n" +
+            "    if (j == 2) break inner;\n" +
+            "    r.push(j, i);\n" +
+            "  }\n" +
+            "}\n" +
+            "r.join()");
+    }
+
+    public void testReturns() {
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8,
+            "a,b,c,undefined",
+            "function f(x) {\n" +
+            "  if (x == 1) { return 'a'; } else if (x == 2) { return 'b'; }\n" +
+            "  else { if (x == 3) { return 'c'; } }\n" +
+            "}\n" +
+            "[f(1), f(2), f(3), String(f(4))].join()");
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8,
+            "1",
+            "function g() { return 1; return 2; throw 3; }\n" +
+            "g()");
+    }
+
+    public void testSwitch() {
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8,
+            "one,two,many,many",
+            "function h(x) {\n" +
+            "  var r;\n" +
+            "  switch (x) {\n" +
+            "    case 1: r = 'one'; break;\n" +
+            "    case 2: r = 'two'; break;\n" +
+            "    default: r = 'many';\n" +
+            "  }\n" +
+            "  return r;\n" +
+            "}\n" +
+            "[h(1), h(2), h(3), h(4)].join()");
+    }
+
+    public void testTryFinally() {
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8,
+            "r1,c:2,f3,r4",
+            "var log = [];\n" +
+            "function t(x) {\n" +
+            "  for (;;) {\n" +
+            "    try {\n" +
+            "      if (x == 1) return 'r1';\n" +
+            "      if (x == 2) throw 2;\n" +
+            "      if (x == 3) break;\n" +
+            "      return 'r' + x;\n" +
+            "    } catch (e) {\n" +
+            "      return 'c:' + e;\n" +
+            "    } finally {\n" +
+            "      log.push(x);\n" +
+            "    }\n" +
+            "  }\n" +
+            "  return 'f' + x;\n" +
+            "}\n" +
+            "[t(1), t(2), t(3), t(4)].join()");
+    }
+
+    public void testWithoutDebugInfo() {
+        Utils.assertWithAllOptimizationLevels(NO_DEBUG_INFO,
+            Context.VERSION_1_8, "7|4",
+            "var n = 0;\n" +
+            "while (true) {\n" +
+            "  if (++n > 6) break;\n" +
+            "  else continue;\n" +
+            "  n = 100;\n" +
+            "}\n" +
+            "function f(x) {\n" +
+            "  try {\n" +
+            "    if (x) { return x; }\n" +
+            "  } finally {\n" +
+            "    ;\n" +
+            "  }\n" +
+            "}\n" +
+            "n + '|' + f(4)");
+    }
+
+    public void testErrorLine() {
+        // The first line of the script is line 0
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8,
+            "4",
+            "var e;\n" +
+            "try {\n" +
+            "  var a;\n" +
+            "  ;\n" +
+            "  a.b;\n" +
+            "} catch (x) { e = x; }\n" +
+            "e.lineNumber");
+    }
+}
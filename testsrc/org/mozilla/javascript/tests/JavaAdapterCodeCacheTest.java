@@ -0,0 +1,92 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.*;
+
+/**
+ * Tests for persisting generated JavaAdapter classes with
+ * {@link ClassCache#setAdapterCodeDirectory(File)}.
+ */
+public class JavaAdapterCodeCacheTest extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("adapters", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    public void testReloadFromDirectory() {
+        String first = createAdapter(0);
+        assertEquals(1, dir.listFiles().length);
+        // A fresh ClassCache would name a newly generated class differently
+        // after the serial bumps, so an equal name means the code was loaded
+        // from the directory.
+        String second = createAdapter(5);
+        assertEquals(first, second);
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    public void testDifferentSignatures() {
+        createAdapter(0);
+        Context cx = ContextFactory.getGlobal().enterContext();
+        try {
+            ScriptableObject scope = cx.initStandardObjects();
+            ClassCache.get(scope).setAdapterCodeDirectory(dir);
+            Object result = cx.evaluateString(scope,
+                "var r = new JavaAdapter(java.lang.Runnable,"
+                + " { run: function() {}, other: function(a) { return a; } });"
+                + "r.other(3)",
+                "source", 1, null);
+            assertEquals(3, ((Number) Context.jsToJava(result, Number.class))
+                             .intValue());
+        } finally {
+            Context.exit();
+        }
+        assertEquals(2, dir.listFiles().length);
+    }
+
+    private String createAdapter(int serialBump) {
+        Context cx = ContextFactory.getGlobal().enterContext();
+        try {
+            ScriptableObject scope = cx.initStandardObjects();
+            ClassCache cache = ClassCache.get(scope);
+            cache.setAdapterCodeDirectory(dir);
+            for (int i = 0; i < serialBump; i++) {
+                cache.newClassSerialNumber();
+            }
+            Object result = cx.evaluateString(scope,
+                "var count = 0;\n"
+                + "var r = new JavaAdapter(java.lang.Runnable,"
+                + " { run: function() { count++; } });\n"
+                + "r.run();\n"
+                + "count + ':' + r.getClass().getName()",
+                "source", 1, null);
+            String s = Context.toString(result);
+            assertTrue(s, s.startsWith("1:"));
+            return s;
+        } finally {
+            Context.exit();
+        }
+    }
+}
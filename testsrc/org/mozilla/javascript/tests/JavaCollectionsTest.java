@@ -0,0 +1,156 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.NativeJavaList;
+import org.mozilla.javascript.NativeJavaMap;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * Tests for java.util.List, java.util.Map and java.lang.Iterable used
+ * with JS array, object and iteration protocols.
+ */
+public class JavaCollectionsTest extends TestCase {
+
+    private static final ContextFactory MAP_ACCESS = new ContextFactory() {
+        @Override
+        protected boolean hasFeature(Context cx, int featureIndex) {
+            if (featureIndex == Context.FEATURE_ENABLE_JAVA_MAP_ACCESS) {
+                return true;
+            }
+            return super.hasFeature(cx, featureIndex);
+        }
+    };
+
+    public void testListIndexAndLength() {
+        List<Object> list = new ArrayList<Object>(Arrays.asList("a", "b", "c"));
+        assertEquals("3:a:c:undefined",
+            eval("list.length + ':' + list[0] + ':' + list[2] + ':' + list[3]",
+                 list, ContextFactory.getGlobal()));
+    }
+
+    public void testListWrite() {
+        List<Object> list = new ArrayList<Object>(Arrays.asList("a", "b"));
+        eval("list[0] = 'x'; list[3] = 'y'; ''", list,
+             ContextFactory.getGlobal());
+        assertEquals(Arrays.asList("x", "b", null, "y"), list);
+        eval("list.length = 1; ''", list, ContextFactory.getGlobal());
+        assertEquals(Arrays.asList("x"), list);
+    }
+
+    public void testFixedSizeListWrite() {
+        List<Object> list = Arrays.<Object>asList("a", "b");
+        assertEquals("x:UnsupportedOperationException:2",
+            eval("list[0] = 'x';\n"
+                 + "var r;\n"
+                 + "try { list[2] = 'y'; r = 'no error'; }\n"
+                 + "catch (e) { r = e.javaException.getClass().getSimpleName(); }\n"
+                 + "list[0] + ':' + r + ':' + list.length",
+                 list, ContextFactory.getGlobal()));
+        assertEquals("UnsupportedOperationException:b",
+            eval("var r;\n"
+                 + "try { list.length = 0; r = 'no error'; }\n"
+                 + "catch (e) { r = e.javaException.getClass().getSimpleName(); }\n"
+                 + "r + ':' + list[1]",
+                 Collections.unmodifiableList(list),
+                 ContextFactory.getGlobal()));
+    }
+
+    public void testListJavaMethodsStillWork() {
+        List<Object> list = new ArrayList<Object>(Arrays.asList("a", "b"));
+        assertEquals("2:b",
+            eval("list.size() + ':' + list.get(1)", list,
+                 ContextFactory.getGlobal()));
+    }
+
+    public void testListForOfAndForIn() {
+        List<Object> list = new ArrayList<Object>(Arrays.asList("a", "b"));
+        assertEquals("a,b|0,1",
+            eval("var v = [], k = [];\n"
+                 + "for (var x of list) v.push(x);\n"
+                 + "for (var i in list) k.push(i);\n"
+                 + "v.join() + '|' + k.join()",
+                 list, ContextFactory.getGlobal()));
+    }
+
+    public void testListJson() {
+        List<Object> list = new ArrayList<Object>(Arrays.asList("a", 1, true));
+        assertEquals("[\"a\",1,true]",
+            eval("JSON.stringify(list)", list, ContextFactory.getGlobal()));
+    }
+
+    public void testIterable() {
+        LinkedHashSet<Object> set = new LinkedHashSet<Object>(
+            Arrays.asList("x", "y", "z"));
+        assertEquals("x-y-z",
+            eval("var r = []; for (var e of list) r.push(e); r.join('-')",
+                 set, ContextFactory.getGlobal()));
+    }
+
+    public void testMapDisabledByDefault() {
+        Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+        map.put("a", "1");
+        assertEquals("undefined:1",
+            eval("list.a + ':' + list.get('a')", map,
+                 ContextFactory.getGlobal()));
+    }
+
+    public void testMapAccess() {
+        Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+        map.put("a", "1");
+        map.put(2, "two");
+        assertEquals("1:two:a,2:1",
+            eval("var keys = []; for (var k in list) keys.push(k);\n"
+                 + "list.b = 'new';\n"
+                 + "list.a + ':' + list[2] + ':' + keys.join() + ':'"
+                 + " + list.get('a')",
+                 map, MAP_ACCESS));
+        assertEquals("new", map.get("b"));
+        assertEquals("{\"a\":\"1\",\"2\":\"two\",\"b\":\"new\"}",
+            eval("JSON.stringify(list)", map, MAP_ACCESS));
+    }
+
+    public void testWrapperTypes() {
+        Context cx = Context.enter();
+        try {
+            Scriptable scope = cx.initStandardObjects();
+            assertTrue(cx.getWrapFactory().wrapAsJavaObject(cx, scope,
+                new ArrayList<Object>(), null) instanceof NativeJavaList);
+            assertFalse(cx.getWrapFactory().wrapAsJavaObject(cx, scope,
+                new LinkedHashMap<Object, Object>(), null)
+                instanceof NativeJavaMap);
+        } finally {
+            Context.exit();
+        }
+    }
+
+    private String eval(String source, Object value,
+                        ContextFactory factory) {
+        Context cx = factory.enterContext();
+        try {
+            cx.setLanguageVersion(Context.VERSION_ES6);
+            Scriptable scope = cx.initStandardObjects();
+            ScriptableObject.putProperty(scope, "list",
+                Context.javaToJS(value, scope));
+            return Context.toString(cx.evaluateString(scope, source,
+                                                      "test.js", 1, null));
+        } finally {
+            Context.exit();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextAction;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.EcmaError;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Tests for {@link Context#FEATURE_LAZY_FUNCTION_COMPILATION}.
+ */
+public class LazyFunctionCompilationTest extends TestCase {
+
+    private static final ContextFactory LAZY = new ContextFactory() {
+        @Override
+        protected boolean hasFeature(Context cx, int featureIndex) {
+            if (featureIndex == Context.FEATURE_LAZY_FUNCTION_COMPILATION) {
+                return true;
+            }
+            return super.hasFeature(cx, featureIndex);
+        }
+    };
+
+    public void testClosures() {
+        assertEquals("3:5:7",
+            eval("var n = 1;\n"
+                 + "function counter(step) {\n"
+                 + "  var total = n;\n"
+                 + "  return function() { total += step; return total; };\n"
+                 + "}\n"
+                 + "var c = counter(2);\n"
+                 + "c() + ':' + c() + ':' + counter(6)()"));
+    }
+
+    public void testNamedFunctionExpression() {
+        assertEquals("120:undefined",
+            eval("var f = function fact(n) {\n"
+                 + "  return n < 2 ? 1 : n * fact(n - 1);\n"
+                 + "};\n"
+                 + "f(5) + ':' + typeof fact"));
+    }
+
+    public void testFunctionStatementAssignment() {
+        assertEquals("1",
+            eval("function f() { f = 1; }\n"
+                 + "f(); String(f)"));
+    }
+
+    public void testStrictModeIsInherited() {
+        assertEquals("TypeError:function",
+            eval("function s() {\n"
+                 + "  'use strict';\n"
+                 + "  return function() {\n"
+                 + "    try { arguments.callee; } catch (e) { return e.name; }\n"
+                 + "  };\n"
+                 + "}\n"
+                 + "function l() { return typeof arguments.callee; }\n"
+                 + "s()() + ':' + l()"));
+    }
+
+    public void testLengthBeforeCall() {
+        assertEquals("3:0",
+            eval("function f(a, b, c) { var x, y; }\n"
+                 + "f.length + ':' + (function() {}).length"));
+    }
+
+    public void testToStringReturnsSourceText() {
+        String fn = "function  f(a) { /* body */ return a; }";
+        assertEquals(fn + "|(function(){ })",
+            eval(fn + "\n"
+                 + "String(f) + '|' + uneval(function(){ })"));
+    }
+
+    public void testNestedFunctions() {
+        assertEquals("abc",
+            eval("function a() {\n"
+                 + "  function b() {\n"
+                 + "    function c() { return 'c'; }\n"
+                 + "    return 'b' + c();\n"
+                 + "  }\n"
+                 + "  return 'a' + b();\n"
+                 + "}\n"
+                 + "a()"));
+    }
+
+    public void testSyntaxErrorsAreReportedAtCompileTime() {
+        try {
+            eval("function f() { function g() { return ) } }\n'ok'");
+            fail();
+        } catch (EvaluatorException e) {
+            assertEquals(1, e.lineNumber());
+        }
+    }
+
+    public void testRuntimeErrorLineNumbers() {
+        try {
+            eval("var x = 1;\n"
+                 + "function f() {\n"
+                 + "  var y = 2;\n"
+                 + "  return y.foo.bar;\n"
+                 + "}\n"
+                 + "f()");
+            fail();
+        } catch (EcmaError e) {
+            assertEquals(4, e.lineNumber());
+        }
+    }
+
+    private String eval(final String source) {
+        // Run on a thread of its own so that no Context left entered on
+        // the test thread hides the feature of LAZY
+        final Object[] result = new Object[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    result[0] = LAZY.call(new ContextAction() {
+                        public Object run(Context cx) {
+                            cx.setOptimizationLevel(-1);
+                            Scriptable scope = cx.initStandardObjects();
+                            return Context.toString(cx.evaluateString(
+                                scope, source, "test.js", 1, null));
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    result[0] = e;
+                }
+            }
+        };
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        if (result[0] instanceof RuntimeException) {
+            throw (RuntimeException) result[0];
+        }
+        return (String) result[0];
+    }
+}
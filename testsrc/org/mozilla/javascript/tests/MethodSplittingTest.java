@@ -0,0 +1,144 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.EcmaError;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.ScriptStackElement;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Tests that compiled scripts and functions too large for a single JVM
+ * method are split into several methods.
+ */
+public class MethodSplittingTest extends TestCase {
+
+    public void testLargeArrayLiteral() {
+        StringBuilder sb = new StringBuilder("var a = [");
+        for (int i = 0; i < 10000; i++) {
+            sb.append(i).append(", 'x").append(i).append("', ");
+        }
+        sb.append("];\na.length + ':' + a[19999] + ':' + a[10000]");
+        assertEquals("20000:x9999:5000", eval(sb.toString()));
+    }
+
+    public void testLargeObjectLiteral() {
+        StringBuilder sb = new StringBuilder("var n = 7; var o = {");
+        for (int i = 0; i < 10000; i++) {
+            sb.append("p").append(i).append(": n + ").append(i).append(", ");
+        }
+        sb.append("get q() { return this.p9999; } };\n"
+                  + "o.p0 + ':' + o.p5000 + ':' + o.q");
+        assertEquals("7:5007:10006", eval(sb.toString()));
+    }
+
+    public void testManyStatements() {
+        StringBuilder sb = new StringBuilder("var s = 0, o = {k: 0};\n");
+        for (int i = 0; i < 5000; i++) {
+            sb.append("s += ").append(i).append(";\n");
+            if (i % 1000 == 0) {
+                sb.append("try { null.x; } catch (e) { s += 1; }\n")
+                  .append("for (var j = 0; j < 3; j++) { if (j == 1) continue; s++; }\n")
+                  .append("with (o) { k++; }\n");
+            }
+        }
+        sb.append("s + ':' + o.k");
+        assertEquals((4999 * 5000 / 2 + 15) + ":5", eval(sb.toString()));
+    }
+
+    public void testLargeFunction() {
+        StringBuilder sb = new StringBuilder("function f(a) {\n  var s = a;\n");
+        for (int i = 0; i < 5000; i++) {
+            sb.append("  s = s + ").append(i % 7).append(";\n");
+        }
+        sb.append("  return s;\n}\nf(1) + f(2)");
+        int sum = 0;
+        for (int i = 0; i < 5000; i++) {
+            sum += i % 7;
+        }
+        assertEquals(String.valueOf(2 * sum + 3), eval(sb.toString()));
+    }
+
+    public void testNestedStatementLists() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            body.append("  x = x + ").append(i).append("; o.p")
+                .append(i % 50).append(" = x;\n");
+        }
+        String sum = String.valueOf(1999 * 2000 / 2);
+        assertEquals(sum, eval(
+            "var o = {};\n{ let x = 0;\n" + body + "  o.r = x; }\no.r"));
+        assertEquals(sum + ":" + (1999 * 2000), eval(
+            "var o = {}, x = 0;\nif (o) {\n" + body + "}\n"
+            + "with (o) {\n" + body.toString().replace("o.p", "p")
+            + "}\nx - " + sum + " + ':' + o.p49"));
+        assertEquals("2:" + sum, eval(
+            "var o = {}, x, n = 0;\n"
+            + "for (var i = 0; i < 5; i++) {\n"
+            + "  x = 0;\n  if (i == 1) continue;\n  if (i == 3) break;\n"
+            + body + "  n++;\n}\nn + ':' + o.p49"));
+        assertEquals(sum + ":f", eval(
+            "function f(k) { var o = {}; let x = 0;\n"
+            + "  try {\n    switch (k) {\n      case 1: {\n" + body
+            + "      }\n      break;\n    }\n"
+            + "  } finally {\n    o.f = 'f';\n  }\n"
+            + "  return x + ':' + o.f;\n}\nf(1)"));
+    }
+
+    public void testErrorInSplitPart() {
+        StringBuilder sb = new StringBuilder();
+        int lines = 6000;
+        for (int i = 0; i < lines; i++) {
+            sb.append("var v").append(i).append(" = ").append(i).append(";\n");
+        }
+        sb.append("undefined.foo;\n");
+        try {
+            eval(sb.toString());
+            fail();
+        } catch (EcmaError e) {
+            assertEquals(lines + 1, e.lineNumber());
+            ScriptStackElement[] stack = e.getScriptStack();
+            assertEquals(1, stack.length);
+            assertEquals(lines + 1, stack[0].lineNumber);
+            assertNull(stack[0].functionName);
+        }
+    }
+
+    public void testTooManyConstants() {
+        // Splitting methods does not help once the constant pool of the
+        // class is full, which has to be reported as a compilation error.
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 40000; i += 100) {
+            sb.append("function g").append(i).append("() { return [");
+            for (int j = i; j < i + 100; j++) {
+                sb.append(j).append(".25, ");
+            }
+            sb.append("]; }\n");
+        }
+        try {
+            eval(sb.toString());
+            fail();
+        } catch (EvaluatorException e) {
+            assertTrue(e.getMessage(),
+                       e.getMessage().contains("too many constants"));
+        }
+    }
+
+    private static String eval(String source) {
+        Context cx = Context.enter();
+        try {
+            cx.setLanguageVersion(Context.VERSION_1_8);
+            cx.setOptimizationLevel(9);
+            Scriptable scope = cx.initStandardObjects();
+            return Context.toString(
+                cx.evaluateString(scope, source, "split.js", 1, null));
+        } finally {
+            Context.exit();
+        }
+    }
+}
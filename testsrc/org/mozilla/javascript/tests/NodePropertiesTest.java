@@ -0,0 +1,61 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Node;
+import org.mozilla.javascript.Token;
+
+/**
+ * Tests for the property storage of {@link Node}.
+ */
+public class NodePropertiesTest extends TestCase {
+
+    public void testSingleProperty() {
+        Node n = new Node(Token.EXPR_VOID);
+        assertNull(n.getProp(Node.NAME_PROP));
+        assertEquals(-1, n.getIntProp(Node.ISNUMBER_PROP, -1));
+        n.putIntProp(Node.ISNUMBER_PROP, Node.BOTH);
+        assertEquals(Node.BOTH, n.getExistingIntProp(Node.ISNUMBER_PROP));
+        n.putIntProp(Node.ISNUMBER_PROP, Node.RIGHT);
+        assertEquals(Node.RIGHT, n.getIntProp(Node.ISNUMBER_PROP, -1));
+        n.removeProp(Node.ISNUMBER_PROP);
+        assertEquals(-1, n.getIntProp(Node.ISNUMBER_PROP, -1));
+        n.removeProp(Node.ISNUMBER_PROP);
+    }
+
+    public void testManyProperties() {
+        Node n = new Node(Token.EXPR_VOID);
+        int[] types = { Node.LABEL_ID_PROP, Node.FUNCTION_PROP,
+                        Node.ARROW_FUNCTION_PROP, Node.NAME_PROP,
+                        Node.LOCAL_PROP };
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == Node.NAME_PROP) {
+                n.putProp(types[i], "name");
+            } else {
+                n.putIntProp(types[i], 1000 + i);
+            }
+        }
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == Node.NAME_PROP) {
+                assertEquals("name", n.getProp(types[i]));
+            } else {
+                assertEquals(1000 + i, n.getExistingIntProp(types[i]));
+            }
+        }
+
+        n.putProp(Node.NAME_PROP, null);
+        assertNull(n.getProp(Node.NAME_PROP));
+        n.removeProp(Node.LABEL_ID_PROP);
+        n.removeProp(Node.ARROW_FUNCTION_PROP);
+        n.removeProp(Node.LOCAL_PROP);
+        assertEquals(-1, n.getIntProp(Node.LABEL_ID_PROP, -1));
+        assertEquals(1001, n.getExistingIntProp(Node.FUNCTION_PROP));
+        n.putIntProp(Node.LOCAL_PROP, 7);
+        assertEquals(7, n.getExistingIntProp(Node.LOCAL_PROP));
+        assertEquals(1001, n.getExistingIntProp(Node.FUNCTION_PROP));
+    }
+}
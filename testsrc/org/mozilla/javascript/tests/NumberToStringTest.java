@@ -0,0 +1,54 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptRuntime;
+
+/**
+ * Checks the conversion of integral numbers, which skips dtoa, and of
+ * numbers taken from the conversion cache of the Context.
+ */
+public class NumberToStringTest extends TestCase {
+
+    public void testIntegers() {
+        assertEquals("0", ScriptRuntime.toString(-0.0));
+        assertEquals("42", ScriptRuntime.toString(42.0));
+        assertEquals("-5", ScriptRuntime.toString(-5.0));
+        assertEquals("-2147483648", ScriptRuntime.toString(-2147483648.0));
+        assertEquals("4294967296", ScriptRuntime.toString(4294967296.0));
+        assertEquals("9007199254740991",
+                     ScriptRuntime.toString(9007199254740991.0));
+        assertEquals("9007199254740992",
+                     ScriptRuntime.toString(9007199254740992.0));
+        assertEquals("1152921504606847000",
+                     ScriptRuntime.toString(1152921504606846976.0));
+        assertEquals("1e+21", ScriptRuntime.toString(1e21));
+        assertSame(ScriptRuntime.toString(7.0), ScriptRuntime.toString(7.0));
+    }
+
+    public void testCachedConversions() {
+        Context cx = Context.enter();
+        try {
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < 1000; i++) {
+                    double d = i + 0.5;
+                    assertEquals(i + ".5", ScriptRuntime.toString(d));
+                    assertEquals("-" + i + ".5", ScriptRuntime.toString(-d));
+                }
+            }
+            assertEquals("0.1", ScriptRuntime.toString(0.1));
+            assertEquals("1e-7", ScriptRuntime.toString(1e-7));
+            assertEquals("1.5e+300", ScriptRuntime.toString(1.5e300));
+            assertEquals("NaN", ScriptRuntime.toString(Double.NaN));
+            assertEquals("-Infinity",
+                         ScriptRuntime.toString(Double.NEGATIVE_INFINITY));
+        } finally {
+            Context.exit();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+
+/**
+ * Runs code whose local constants the optimizer propagates and whose
+ * small direct call targets it inlines, compiled and interpreted.
+ */
+public class OptimizerInliningTest extends TestCase {
+
+    private static final String ACCESSORS =
+        "function getX(p) { return p.x; }\n" +
+        "function sq(a) { return a * a + 1; }\n" +
+        "function f(o, n) {\n" +
+        "  var k = 10; var s = 0;\n" +
+        "  for (var i = 0; i < n; i++) s += getX(o) + sq(i) + k;\n" +
+        "  return s;\n" +
+        "}\n";
+
+    public void testInlinedCalls() {
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8, "95",
+            ACCESSORS + "f({x: 2}, 5)");
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8, "1a",
+            ACCESSORS +
+            "function g(o) { var s = 'a'; return getX(o) + s; }\n" +
+            "g({x: 1})");
+    }
+
+    public void testReassignedTarget() {
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8,
+            "0other110other210",
+            ACCESSORS +
+            "getX = function(p) { return 'other'; };\n" +
+            "f({x: 2}, 2)");
+    }
+
+    public void testArgumentCount() {
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8, "NaN,3",
+            "function add(a, b) { return a + b; }\n" +
+            "function f() { var x = 1; return [add(x), add(x, 2, 3)]; }\n" +
+            "f().join()");
+    }
+
+    public void testErrorInInlinedCall() {
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8, "TypeError",
+            "function getX(p) { return p.x; }\n" +
+            "function f(o) { return getX(o); }\n" +
+            "try { f(undefined); } catch (e) { e.name }");
+    }
+
+    public void testConstants() {
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8, "v62",
+            "function g() { var a = 2, b = a * 3; var t = 'v' + b;\n" +
+            "  return t + a; }\n" +
+            "g()");
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8, "7,5",
+            "function h(x) { var q = 5; if (x) { q = 7; } return q; }\n" +
+            "[h(true), h(false)].join()");
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8,
+            "undefinedundefined",
+            "function u() { return typeof w + w; var w = 1; }\n" +
+            "u()");
+        Utils.assertWithAllOptimizationLevels(Context.VERSION_1_8, "s3",
+            "function c() { const s = 's'; var n = 1;\n" +
+            "  for (var i = 0; i < 2; i++) n++;\n" +
+            "  return s + n; }\n" +
+            "c()");
+    }
+}
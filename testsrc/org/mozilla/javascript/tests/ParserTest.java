@@ -10,6 +10,7 @@ import org.mozilla.javascript.ast.*;
 import org.mozilla.javascript.CompilerEnvirons;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Node;
 import org.mozilla.javascript.Parser;
 import org.mozilla.javascript.Token;
 import org.mozilla.javascript.testing.TestErrorReporter;
@@ -18,6 +19,9 @@ import junit.framework.TestCase;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
 import java.util.List;
 
 public class ParserTest extends TestCase {
@@ -1109,6 +1113,36 @@ public class ParserTest extends TestCase {
         assertEquals(3, comments[1].getLineno());
     }
 
+    public void testParseCharBuffer() {
+        String js = "/** a */var aé = 'x';\nfunction f($b, _c2) { return $b + aé; }";
+        CharBuffer chars = Charset.forName("UTF-8").decode(
+            ByteBuffer.wrap(js.getBytes(Charset.forName("UTF-8"))));
+        environment.setRecordingComments(true);
+        AstRoot root = new Parser(environment).parse(chars, null, 0);
+        assertEquals(parse(js).toSource(), root.toSource());
+        assertEquals(1, root.getComments().size());
+        assertEquals("/** a */", root.getComments().first().getValue());
+
+        root = new Parser(environment).parse(
+            CharBuffer.wrap(("x" + js + "x").toCharArray(), 1, js.length()),
+            null, 0);
+        assertEquals(parse(js).toSource(), root.toSource());
+    }
+
+    public void testParseNamesAreShared() {
+        AstRoot root = parse("abc; 'abc'; abc\\u0064; abcd;");
+        AstNode[] expressions = new AstNode[4];
+        int i = 0;
+        for (Node n = root.getFirstChild(); n != null; n = n.getNext()) {
+            expressions[i++] = ((ExpressionStatement) n).getExpression();
+        }
+        String name = ((Name) expressions[0]).getIdentifier();
+        assertEquals("abc", name);
+        assertSame(name, ((StringLiteral) expressions[1]).getValue());
+        assertSame(((Name) expressions[2]).getIdentifier(),
+                   ((Name) expressions[3]).getIdentifier());
+    }
+
     public void testParseUnicodeFormatStringLiteral() {
         AstRoot root = parse("'A\u200DB'");
         ExpressionStatement st = (ExpressionStatement) root.getFirstChild();
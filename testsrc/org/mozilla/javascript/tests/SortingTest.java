@@ -63,6 +63,64 @@ public class SortingTest {
         hybridSort(randomArray(10000));
     }
 
+    private void mergeSort(Object[] expected)
+    {
+        Object[] after = Arrays.copyOf(expected, expected.length);
+        Sorting.mergeSort(after, new IntComparator());
+        Arrays.sort(expected, new IntComparator());
+        assertArrayEquals(expected, after);
+    }
+
+    @Test
+    public void testMergeSort()
+    {
+        mergeSort(randomArray(10));
+        mergeSort(forwardArray(100));
+        mergeSort(reverseArray(100));
+        mergeSort(randomArray(100));
+        mergeSort(sameArray(100));
+        mergeSort(new Object[] {});
+        mergeSort(randomArray(10000));
+        mergeSort(randomArray(100000));
+    }
+
+    @Test
+    public void testMergeSortIsStable()
+    {
+        // Sort pairs by their first half only
+        Integer[] a = randomArray(20000);
+        for (int i = 0; i < a.length; i++) {
+            a[i] = ((a[i] & 0xff) << 16) | i;
+        }
+        Comparator<Object> byKey = new Comparator<Object>() {
+            @Override
+            public int compare(Object x, Object y) {
+                return Integer.compare((Integer) x >> 16, (Integer) y >> 16);
+            }
+        };
+        Object[] after = Arrays.copyOf(a, a.length);
+        Sorting.mergeSort(after, byKey);
+        // Integers are ordered by key, then by their original position
+        Arrays.sort(a);
+        assertArrayEquals(a, after);
+    }
+
+    @Test
+    public void testMergeSortInconsistentComparator()
+    {
+        Integer[] a = randomArray(10000);
+        Object[] after = Arrays.copyOf(a, a.length);
+        Sorting.mergeSort(after, new Comparator<Object>() {
+            @Override
+            public int compare(Object x, Object y) {
+                return rand.nextInt(3) - 1;
+            }
+        });
+        Arrays.sort(a);
+        Arrays.sort(after);
+        assertArrayEquals(a, after);
+    }
+
     @Test
     public void testMedian()
     {
@@ -94,6 +152,15 @@ public class SortingTest {
         }
     }
 
+    @Test
+    public void testBenchRandomMerge()
+    {
+        for (int i = 0; i < ITERATIONS; i++) {
+            Object[] a = Arrays.copyOf(bigRandom, bigRandom.length);
+            Sorting.mergeSort(a, new IntComparator());
+        }
+    }
+
     @Test
     public void testBenchRandomJavaUtil()
     {
@@ -0,0 +1,67 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks arrays that are no longer dense, whose elements are kept out of
+ * the property slots, keyed by index.
+ */
+public class SparseArrayTest extends TestCase {
+
+    public void testEnumerationOrder() {
+        Utils.assertWithAllOptimizationLevels("3,5,50000,100000,p|100001",
+            "var a = [];\n" +
+            "a[5] = 'x'; a[100000] = 'y'; a[3] = 'z'; a[50000] = null;\n" +
+            "a.p = 1;\n" +
+            "Object.keys(a).join() + '|' + a.length");
+    }
+
+    public void testTruncateAndDelete() {
+        Utils.assertWithAllOptimizationLevels("3,5|60000|false|3",
+            "var a = [];\n" +
+            "a[5] = 'x'; a[100000] = 'y'; a[3] = 'z'; a[50000] = null;\n" +
+            "a.length = 60000;\n" +
+            "delete a[50000];\n" +
+            "[Object.keys(a).join(), a.length, 100000 in a,\n" +
+            " a.indexOf('z')].join('|')");
+    }
+
+    public void testAttributes() {
+        Utils.assertWithAllOptimizationLevels("ro|3,5,7,p|g|z,undefined,true",
+            "var a = [];\n" +
+            "a[100000] = 'y'; a[3] = 'z'; a[5] = 'x'; a.p = 1;\n" +
+            "Object.defineProperty(a, 5, {value: 'ro', writable: false});\n" +
+            "a[5] = 'changed';\n" +
+            "Object.defineProperty(a, 7, {get: function () { return 'g'; },\n" +
+            "                             enumerable: true});\n" +
+            "a.length = 10;\n" +
+            "var r = [a[5], Object.keys(a).join(), a[7]];\n" +
+            "Object.freeze(a);\n" +
+            "a[3] = 'no'; a[70000] = 'no';\n" +
+            "r.concat([[a[3], String(a[70000]), Object.isFrozen(a)].join()])\n" +
+            "  .join('|')");
+    }
+
+    public void testNegativeIndex() {
+        Utils.assertWithAllOptimizationLevels(
+            "undefined,false,5,true,-1,100000|100001,false",
+            "var a = []; a[100000] = 1;\n" +
+            "var r = [String(a[-1]), -1 in a];\n" +
+            "a[-1] = 5;\n" +
+            "r.push(a[-1], -1 in a, Object.keys(a).reverse().join());\n" +
+            "delete a[-1];\n" +
+            "r.join() + '|' + a.length + ',' + (-1 in a)");
+    }
+
+    public void testNotExtensible() {
+        Utils.assertWithAllOptimizationLevels("3,false",
+            "var s = []; s[1e6] = 1;\n" +
+            "Object.preventExtensions(s);\n" +
+            "s[1e6] = 3;\n" +
+            "[s[1e6], Object.isExtensible(s)].join()");
+    }
+}
@@ -0,0 +1,40 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks join, toString and replace, which reuse the StringBuilder of the
+ * Context, when they are called again while building their result.
+ */
+public class StringBuilderReuseTest extends TestCase {
+
+    public void testNestedJoin() {
+        Utils.assertWithAllOptimizationLevels("1;2,3,4;x|1,2,3|a-b",
+            "var o = { toString: function () { return ['a', 'b'].join('-'); } };\n" +
+            "[[1, [2, [3, 4]], 'x'].join(';'), String([[1, 2], [3]]),\n" +
+            " String(o)].join('|')");
+    }
+
+    public void testNestedReplace() {
+        Utils.assertWithAllOptimizationLevels("azbzc|a--b--c|a[a|c|$]c",
+            "['aXbXc'.replace(/X/g, function () {\n" +
+            "   return 'y'.replace(/y/, 'z');\n" +
+            " }),\n" +
+            " 'a-b-c'.replace(/-/g, '$&$&'),\n" +
+            " 'abc'.replace('b', \"[$`|$'|$$]\")].join('|')");
+    }
+
+    public void testThrowWhileBuilding() {
+        Utils.assertWithAllOptimizationLevels("E,a.b",
+            "var r = [];\n" +
+            "try {\n" +
+            "  'aXb'.replace(/X/, function () { throw 'E'; });\n" +
+            "} catch (e) { r.push(e); }\n" +
+            "r.push('aXb'.replace(/X/, '.'));\n" +
+            "r.join()");
+    }
+}
@@ -0,0 +1,54 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks split and replace with plain string patterns, which do not go
+ * through the regular expression implementation.
+ */
+public class StringLiteralPatternTest extends TestCase {
+
+    public void testSplit() {
+        Utils.assertWithAllOptimizationLevels(
+            "4:a|b||c/1:/0:/3:a|b|c/2:ab|/2:a|b/0:/3:a|b|/2:|/2:a|c/2:a|b",
+            "[ 'a,b,,c'.split(','), ''.split(','), ''.split(''),\n" +
+            "  'abc'.split(''), 'ab,'.split(','), 'a,b,c'.split(',', 2),\n" +
+            "  'a,b'.split(',', 0), 'a--b--'.split('--'), 'abc'.split('abc'),\n" +
+            "  'abc'.split(new String('b')), 'a1b'.split(1)\n" +
+            "].map(function (a) { return a.length + ':' + a.join('|'); })\n" +
+            " .join('/')");
+    }
+
+    public void testSplitMatchesRegExp() {
+        Utils.assertWithAllOptimizationLevels("true",
+            "var ok = true;\n" +
+            "var strs = ['', ',', 'a,b', ',a,,b,', 'abc'];\n" +
+            "for (var i = 0; i < strs.length; i++) {\n" +
+            "  for (var limit = 0; limit < 4; limit++) {\n" +
+            "    ok = ok && String(strs[i].split(',', limit)) ==\n" +
+            "                 String(strs[i].split(/,/, limit));\n" +
+            "  }\n" +
+            "}\n" +
+            "ok");
+    }
+
+    public void testReplace() {
+        Utils.assertWithAllOptimizationLevels(
+            "axc|a[b]cb|a[a|c|$]c|abc|-abc|a$c|a$x$c|abcc",
+            "['abc'.replace('b', 'x'), 'abcb'.replace('b', '[$&]'),\n" +
+            " 'abc'.replace('b', \"[$`|$'|$$]\"), 'abc'.replace('x', 'y'),\n" +
+            " 'abc'.replace('', '-'), 'abc'.replace('b', '$'),\n" +
+            " 'abc'.replace('b', '$x$'), 'abc'.replace('c', '$&$&')\n" +
+            "].join('|')");
+    }
+
+    public void testReplaceSetsRegExpStatics() {
+        Utils.assertWithAllOptimizationLevels("b,a,c",
+            "'abc'.replace('b', 'x');\n" +
+            "[RegExp.lastMatch, RegExp.leftContext, RegExp.rightContext].join()");
+    }
+}
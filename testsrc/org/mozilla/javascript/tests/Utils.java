@@ -4,6 +4,8 @@
 
 package org.mozilla.javascript.tests;
 
+import junit.framework.Assert;
+
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextAction;
 import org.mozilla.javascript.ContextFactory;
@@ -36,6 +38,45 @@ public class Utils
 		runWithOptimizationLevel(contextFactory, action, 1);
 	}
 
+	/**
+	 * Evaluates the script with all available optimization levels and
+	 * checks that its result converts to the expected string.
+	 */
+	public static void assertWithAllOptimizationLevels(final String expected, final String script)
+	{
+		assertWithAllOptimizationLevels(Context.VERSION_DEFAULT, expected, script);
+	}
+
+	/**
+	 * Evaluates the script with the given language version and all
+	 * available optimization levels and checks that its result converts
+	 * to the expected string.
+	 */
+	public static void assertWithAllOptimizationLevels(final int languageVersion, final String expected, final String script)
+	{
+		assertWithAllOptimizationLevels(new ContextFactory(), languageVersion, expected, script);
+	}
+
+	/**
+	 * Evaluates the script in contexts of the given factory with the given
+	 * language version and all available optimization levels and checks
+	 * that its result converts to the expected string.
+	 */
+	public static void assertWithAllOptimizationLevels(final ContextFactory contextFactory, final int languageVersion,
+			final String expected, final String script)
+	{
+		runWithAllOptimizationLevels(contextFactory, new ContextAction()
+		{
+			public Object run(final Context cx) {
+				cx.setLanguageVersion(languageVersion);
+				final Scriptable scope = cx.initStandardObjects();
+				final Object result = cx.evaluateString(scope, script, "test script", 0, null);
+				Assert.assertEquals(expected, Context.toString(result));
+				return null;
+			}
+		});
+	}
+
 	/**
 	 * Runs the provided action at the given optimization level
 	 */
@@ -1,6 +1,7 @@
 package org.mozilla.javascript.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -11,8 +12,10 @@ import java.util.Optional;
 import org.junit.Test;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ImporterTopLevel;
+import org.mozilla.javascript.NativeObject;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.WrapFactory;
 
 /**
  *
@@ -57,6 +60,72 @@ public class WrapFactoryTest {
     //test(false, new BigDecimal("4.0"), "object", "object", "object");
   }
 
+  /**
+   * javaObjectCacheEnabled = true returns the same wrapper for the same
+   * Java object.
+   */
+  @Test
+  public void javaObjectCache() {
+    Context cx = Context.enter();
+    try {
+      cx.getWrapFactory().setJavaObjectCacheEnabled(true);
+      Scriptable scope = cx.initStandardObjects(new ImporterTopLevel(cx));
+      ScriptableObject.putProperty(scope, "object",
+          Optional.of(new StringBuilder("x")));
+      Object same = cx.evaluateString(scope,
+          "var a = object.get(); a.append('y');"
+          + "var same = true;"
+          + "for (var i = 0; i < 10; i++) same = same && object.get() === a;"
+          + "same + ':' + object.get()", "", 1, null);
+      assertEquals("true:xy", Context.toString(same));
+      long hits = cx.getWrapFactory().getJavaObjectCacheHits();
+      long misses = cx.getWrapFactory().getJavaObjectCacheMisses();
+      assertTrue(hits >= 10);
+      assertTrue(misses < hits);
+
+      cx.getWrapFactory().setJavaObjectCacheEnabled(false);
+      cx.evaluateString(scope, "object.get()", "", 1, null);
+      assertEquals(0, cx.getWrapFactory().getJavaObjectCacheHits());
+    } finally {
+      Context.exit();
+    }
+  }
+
+  /**
+   * Wrappers that do not implement Wrapper are not cached.
+   */
+  @Test
+  public void javaObjectCacheCustomWrapper() {
+    Context cx = Context.enter();
+    WrapFactory oldFactory = cx.getWrapFactory();
+    try {
+      WrapFactory wf = new WrapFactory() {
+        @Override
+        public Scriptable wrapAsJavaObject(Context cx, Scriptable scope,
+            Object javaObject, Class<?> staticType) {
+          if (javaObject instanceof StringBuilder) {
+            NativeObject obj = new NativeObject();
+            obj.put("text", obj, javaObject.toString());
+            return obj;
+          }
+          return super.wrapAsJavaObject(cx, scope, javaObject, staticType);
+        }
+      };
+      wf.setJavaObjectCacheEnabled(true);
+      cx.setWrapFactory(wf);
+      Scriptable scope = cx.initStandardObjects(new ImporterTopLevel(cx));
+      ScriptableObject.putProperty(scope, "object",
+          Optional.of(new StringBuilder("x")));
+      Object result = cx.evaluateString(scope,
+          "var a = object.get(); a.text + ':' + (object.get() === a)",
+          "", 1, null);
+      assertEquals("x:false", Context.toString(result));
+    } finally {
+      cx.setWrapFactory(oldFactory);
+      Context.exit();
+    }
+  }
+
   /**
    * @param javaPrimitiveWrap
    * @param object